@@ -3,13 +3,27 @@ package com.chang1o.controller;
 import com.chang1o.model.User;
 import com.chang1o.model.Recipe;
 import com.chang1o.model.PantryItem;
+import com.chang1o.model.RecipeRecommendation;
+import com.chang1o.service.AiProvider;
 import com.chang1o.service.ApiService;
+import com.chang1o.service.DataExportService;
 import com.chang1o.service.RecipeService;
 import com.chang1o.service.PantryService;
 import com.chang1o.ui.MenuManager;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class AIController extends BaseController {
 
@@ -42,10 +56,13 @@ public class AIController extends BaseController {
             case "4":
                 handleNutritionAnalysis(currentUser);
                 break;
+            case "5":
+                showProviderStatus();
+                break;
             case "0":
                 return;
             default:
-                System.out.println("无效的选择，请输入0-4之间的数字！");
+                System.out.println("无效的选择，请输入0-5之间的数字！");
                 break;
         }
     }
@@ -58,8 +75,15 @@ public class AIController extends BaseController {
         System.out.println();
         System.out.println("[处理中] 正在基于您的健康数据生成个性化建议...");
 
+        if (ApiService.isStreamEnabled()) {
+            streamToConsole("[AI健康建议]", "health_advice", currentUser,
+                onDelta -> apiService.streamPersonalizedHealthAdvice(currentUser.getId(), onDelta),
+                "[建议] 建议您先完善健康数据后再试");
+            return;
+        }
+
         try {
-            String advice = apiService.generatePersonalizedHealthAdvice(currentUser.getId());
+            String advice = awaitWithProgress(apiService.generatePersonalizedHealthAdviceAsync(currentUser.getId()));
             System.out.println();
             System.out.println("[AI健康建议]");
             System.out.println("━".repeat(50));
@@ -80,21 +104,56 @@ public class AIController extends BaseController {
         System.out.println("[处理中] 正在分析您的健康状况和偏好...");
 
         try {
-            List<String> recommendations = apiService.generateSmartRecipeRecommendations(currentUser.getId());
+            List<RecipeRecommendation> recommendations =
+                awaitWithProgress(apiService.generateSmartRecipeRecommendationsAsync(currentUser.getId()));
             System.out.println();
             System.out.println("[AI食谱推荐]");
             System.out.println("━".repeat(50));
+            List<Integer> recipeIds = new ArrayList<>();
             for (int i = 0; i < recommendations.size(); i++) {
-                System.out.println((i + 1) + ". " + recommendations.get(i));
+                RecipeRecommendation recommendation = recommendations.get(i);
+                System.out.println((i + 1) + ". " + recommendation);
+                if (!recommendation.getIngredients().isEmpty()) {
+                    System.out.println("   主要食材：" + String.join("、", recommendation.getIngredients()));
+                }
                 System.out.println();
+                if (recommendation.isInLibrary() && !recipeIds.contains(recommendation.getRecipeId())) {
+                    recipeIds.add(recommendation.getRecipeId());
+                }
             }
             System.out.println("━".repeat(50));
+            printPromptUsage();
+
+            if (!recipeIds.isEmpty()) {
+                System.out.print("\n有 " + recipeIds.size() + " 个推荐已在食谱库中，是否为它们生成购物清单？(y/n)：");
+                String answer = sessionManager.getScanner().nextLine().trim();
+                if (answer.equalsIgnoreCase("y")) {
+                    generateShoppingListFor(currentUser, recipeIds);
+                }
+            }
         } catch (Exception e) {
             System.out.println("[错误] 获取食谱推荐时出错：" + e.getMessage());
             System.out.println("[建议] 建议您先添加一些食谱数据后再试");
         }
     }
 
+    private void generateShoppingListFor(User currentUser, List<Integer> recipeIds)
+            throws ExecutionException, InterruptedException {
+        System.out.println("\n正在基于选中的 " + recipeIds.size() + " 个食谱生成智能购物清单...");
+        if (ApiService.isStreamEnabled()) {
+            streamShoppingList(currentUser, recipeIds);
+            return;
+        }
+
+        String shoppingList = awaitWithProgress(apiService.generateSmartShoppingListAsync(currentUser.getId(), recipeIds));
+        System.out.println();
+        System.out.println("[AI智能购物建议]");
+        System.out.println("━".repeat(50));
+        System.out.println(shoppingList);
+        System.out.println("━".repeat(50));
+        printPromptUsage();
+    }
+
     private void handleSmartShoppingList(User currentUser) {
         System.out.println();
         System.out.println("┌──────────────────────────────────────────────────┐");
@@ -114,7 +173,11 @@ public class AIController extends BaseController {
 
             if (choice.equals("1")) {
                 System.out.println("正在基于您的库存情况生成智能购物清单...");
-                shoppingList = apiService.generateSmartShoppingList(currentUser.getId(), recipeIds);
+                if (ApiService.isStreamEnabled()) {
+                    streamShoppingList(currentUser, recipeIds);
+                    return;
+                }
+                shoppingList = awaitWithProgress(apiService.generateSmartShoppingListAsync(currentUser.getId(), recipeIds));
             } else if (choice.equals("2")) {
                 List<Recipe> userRecipes = recipeService.getRecipesByUser(currentUser.getId());
 
@@ -154,7 +217,11 @@ public class AIController extends BaseController {
                 }
 
                 System.out.println("\n正在基于您选择的 " + recipeIds.size() + " 个食谱生成智能购物清单...");
-                shoppingList = apiService.generateSmartShoppingList(currentUser.getId(), recipeIds);
+                if (ApiService.isStreamEnabled()) {
+                    streamShoppingList(currentUser, recipeIds);
+                    return;
+                }
+                shoppingList = awaitWithProgress(apiService.generateSmartShoppingListAsync(currentUser.getId(), recipeIds));
             } else {
                 System.out.println("[错误] 无效的选择");
                 return;
@@ -165,6 +232,7 @@ public class AIController extends BaseController {
             System.out.println("━".repeat(50));
             System.out.println(shoppingList);
             System.out.println("━".repeat(50));
+            printPromptUsage();
 
         } catch (Exception e) {
             System.out.println("[错误] 生成购物清单时出错：" + e.getMessage());
@@ -193,8 +261,16 @@ public class AIController extends BaseController {
 
         System.out.println("正在分析您最近" + days + "天的营养状况...");
 
+        if (ApiService.isStreamEnabled()) {
+            int analysisDays = days;
+            streamToConsole("[AI营养分析报告]", "nutrition_analysis", currentUser,
+                onDelta -> apiService.streamNutritionAnalysisReport(currentUser.getId(), analysisDays, onDelta),
+                "[建议] 建议您先进行每日打卡后再试");
+            return;
+        }
+
         try {
-            String report = apiService.generateNutritionAnalysisReport(currentUser.getId(), days);
+            String report = awaitWithProgress(apiService.generateNutritionAnalysisReportAsync(currentUser.getId(), days));
             System.out.println();
             System.out.println("[AI营养分析报告]");
             System.out.println("━".repeat(50));
@@ -205,4 +281,106 @@ public class AIController extends BaseController {
             System.out.println("[建议] 建议您先进行每日打卡后再试");
         }
     }
+
+    private void showProviderStatus() {
+        System.out.println();
+        System.out.println("[AI服务商状态]（按当前路由优先级排列）");
+        System.out.println("─".repeat(50));
+        for (AiProvider provider : ApiService.getProviders()) {
+            System.out.println((provider.isHealthy() ? "[正常] " : "[异常] ") + provider);
+        }
+        System.out.println("─".repeat(50));
+        System.out.println(ApiService.getCacheStats());
+    }
+
+    private <T> T awaitWithProgress(CompletableFuture<T> future) throws ExecutionException, InterruptedException {
+        boolean printed = false;
+        while (true) {
+            try {
+                T result = future.get(1, TimeUnit.SECONDS);
+                if (printed) {
+                    System.out.println();
+                }
+                return result;
+            } catch (TimeoutException e) {
+                System.out.print(".");
+                System.out.flush();
+                printed = true;
+            }
+        }
+    }
+
+    private void streamShoppingList(User currentUser, List<Integer> recipeIds) {
+        streamToConsole("[AI智能购物建议]", "shopping_list", currentUser,
+            onDelta -> apiService.streamSmartShoppingList(currentUser.getId(), recipeIds, onDelta),
+            "[建议] 建议您先完善库存数据后再试");
+    }
+
+    private void streamToConsole(String title, String exportKind, User currentUser,
+                                 Function<Consumer<String>, CompletableFuture<Boolean>> request, String hint) {
+        BufferedWriter exportWriter = null;
+        String exportPath = null;
+        if (ApiService.isStreamExportEnabled()) {
+            exportPath = new DataExportService().createAiExportPath(exportKind, currentUser.getId());
+            try {
+                exportWriter = new BufferedWriter(new FileWriter(exportPath, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.out.println("[警告] 无法创建导出文件，仅输出到控制台：" + e.getMessage());
+                exportPath = null;
+            }
+        }
+
+        System.out.println();
+        System.out.println(title);
+        System.out.println("━".repeat(50));
+
+        BufferedWriter writer = exportWriter;
+        AtomicBoolean printed = new AtomicBoolean();
+        Consumer<String> onDelta = delta -> {
+            printed.set(true);
+            System.out.print(delta);
+            System.out.flush();
+            if (writer != null) {
+                try {
+                    writer.write(delta);
+                } catch (IOException e) {
+                    System.err.println("写入导出文件失败：" + e.getMessage());
+                }
+            }
+        };
+
+        boolean success;
+        try {
+            success = request.apply(onDelta).get();
+        } catch (Exception e) {
+            success = false;
+        } finally {
+            if (exportWriter != null) {
+                try {
+                    exportWriter.close();
+                } catch (IOException e) {
+                    System.err.println("关闭导出文件失败：" + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("━".repeat(50));
+        if (!success && printed.get()) {
+            System.out.println("[中断] AI输出未完成（连接中断或长时间没有新内容），以上内容不完整，请稍后重新生成");
+        } else if (!success) {
+            System.out.println("[错误] AI服务暂时不可用，请稍后再试");
+            System.out.println(hint);
+        } else if (exportPath != null) {
+            System.out.println("[导出] 内容已同步保存到：" + exportPath);
+        }
+        printPromptUsage();
+    }
+
+    private void printPromptUsage() {
+        String usage = apiService.getLastPromptUsage();
+        if (usage != null) {
+            System.out.println("[统计] " + usage);
+        }
+    }
 }
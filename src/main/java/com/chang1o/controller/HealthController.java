@@ -1,25 +1,40 @@
 
 package com.chang1o.controller;
 
+import com.chang1o.model.CheckInBitmap;
+import com.chang1o.model.CheckInStreak;
+import com.chang1o.model.HealthAlert;
 import com.chang1o.model.User;
 import com.chang1o.model.UserHealthData;
+import com.chang1o.model.CheckInSeries;
+import com.chang1o.service.CheckInAnalyticsService;
+import com.chang1o.service.CheckInImportService;
+import com.chang1o.service.CheckInWriteBuffer;
 import com.chang1o.service.HealthDataService;
+import com.chang1o.dao.CheckInSketchDao;
 import com.chang1o.dao.DailyCheckInDao;
 import com.chang1o.ui.ConsoleUI;
 import com.chang1o.ui.InputValidator;
 import com.chang1o.ui.MenuManager;
+import com.chang1o.util.TDigest;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
 import java.util.Scanner;
 
 public class HealthController extends BaseController {
 
     private final HealthDataService healthDataService;
+    private final CheckInAnalyticsService analyticsService;
 
     public HealthController() {
         this.healthDataService = new HealthDataService();
+        this.analyticsService = new CheckInAnalyticsService();
     }
 
     public void showMenu(User currentUser) {
         boolean inHealthMenu = true;
+        showHealthAlerts(currentUser);
 
         while (inHealthMenu) {
             MenuManager.showHealthMenu();
@@ -40,11 +55,23 @@ public class HealthController extends BaseController {
                 case "4":
                     showHealthStatistics(currentUser);
                     break;
+                case "5":
+                    showCheckInCalendar(currentUser);
+                    break;
+                case "6":
+                    showTrendAnalysis(currentUser);
+                    break;
+                case "7":
+                    quickRecord(currentUser);
+                    break;
+                case "8":
+                    importCheckIns(currentUser);
+                    break;
                 case "0":
                     inHealthMenu = false;
                     break;
                 default:
-                    System.out.println("[错误] 无效的选择，请输入 0-4 之间的数字！");
+                    System.out.println("[错误] 无效的选择，请输入 0-8 之间的数字！");
                     break;
             }
 
@@ -54,6 +81,20 @@ public class HealthController extends BaseController {
         }
     }
 
+    private void showHealthAlerts(User currentUser) {
+        List<HealthAlert> alerts = healthDataService.getUnreadHealthAlerts(currentUser.getId());
+        if (alerts.isEmpty()) {
+            return;
+        }
+
+        System.out.println();
+        ConsoleUI.showWarning("检测到 " + alerts.size() + " 条健康异常：");
+        for (HealthAlert alert : alerts) {
+            System.out.println("   - " + alert.getAlertDate() + " " + alert.getMessage());
+        }
+        healthDataService.markHealthAlertsRead(currentUser.getId());
+    }
+
     public void manageHealthData(User currentUser) {
         ConsoleUI.showTitleBox("管理健康数据");
 
@@ -109,6 +150,7 @@ public class HealthController extends BaseController {
             if (result.isSuccess()) {
                 ConsoleUI.showSuccess("打卡成功！");
                 System.out.println("消息：" + result.getMessage());
+                showHealthAlerts(currentUser);
 
                 int healthScore = calculateHealthScore(sleepHoursNum, waterIntakeNum, exerciseMinutesNum, mood);
                 System.out.println("\n今日健康评分：" + healthScore + "/100");
@@ -128,6 +170,79 @@ public class HealthController extends BaseController {
         }
     }
 
+    public void quickRecord(User currentUser) {
+        ConsoleUI.showTitleBox("快速记录");
+
+        // 快速记录只累加到今日已有的打卡上，不单独生成缺少心情和睡眠的打卡
+        if (!healthDataService.hasCheckedInToday(currentUser.getId())) {
+            ConsoleUI.showError("请先完成今日打卡，再快速记录饮水或运动");
+            return;
+        }
+
+        System.out.println("1. 饮水");
+        System.out.println("2. 运动");
+        System.out.print("请选择记录类型：");
+        String type = sessionManager.getScanner().nextLine().trim();
+        if (!"1".equals(type) && !"2".equals(type)) {
+            ConsoleUI.showError("无效的选择");
+            return;
+        }
+
+        System.out.print("1".equals(type) ? "本次饮水量（毫升）：" : "本次运动时长（分钟）：");
+        int amount;
+        try {
+            amount = Integer.parseInt(sessionManager.getScanner().nextLine().trim());
+        } catch (NumberFormatException e) {
+            ConsoleUI.showError("请输入有效的数字");
+            return;
+        }
+
+        int limit = "1".equals(type) ? 10000 : 1440;
+        if (amount <= 0 || amount > limit) {
+            ConsoleUI.showError("数值应在1-" + limit + "之间");
+            return;
+        }
+
+        CheckInWriteBuffer buffer = CheckInWriteBuffer.getInstance();
+        boolean recorded = "1".equals(type)
+            ? buffer.recordWaterIntake(currentUser.getId(), amount)
+            : buffer.recordExercise(currentUser.getId(), amount);
+
+        if (recorded) {
+            ConsoleUI.showSuccess("已记录，将累加到今日打卡");
+        } else {
+            ConsoleUI.showError("记录失败，请稍后重试");
+        }
+    }
+
+    public void importCheckIns(User currentUser) {
+        ConsoleUI.showTitleBox("导入历史打卡");
+
+        System.out.println("支持 CSV（首行为表头）和 JSON Lines（每行一个对象）格式");
+        System.out.println("字段：date, mood, sleep_hours, water_intake, exercise_minutes（必填），notes（可选）");
+        System.out.print("请输入文件路径：");
+        String filePath = sessionManager.getScanner().nextLine().trim();
+        if (filePath.isEmpty()) {
+            ConsoleUI.showInfo("已取消导入");
+            return;
+        }
+
+        CheckInImportService.ImportResult result = new CheckInImportService().importCheckIns(currentUser.getId(), filePath);
+        if (result.isFailed()) {
+            ConsoleUI.showError(result.getErrorMessage());
+        } else {
+            ConsoleUI.showSuccess("导入完成");
+        }
+        System.out.println(result);
+
+        if (!result.getRejectSamples().isEmpty()) {
+            System.out.println("\n被拒绝的记录（最多显示" + result.getRejectSamples().size() + "条）：");
+            for (String reject : result.getRejectSamples()) {
+                System.out.println("   - " + reject);
+            }
+        }
+    }
+
     public void showHealthReport(User currentUser) {
         ConsoleUI.clearScreen();
         ConsoleUI.showTitleBox("健康报告");
@@ -180,10 +295,131 @@ public class HealthController extends BaseController {
         System.out.println("\n【过去" + days + "天的健康统计】");
         System.out.println("平均健康评分：" + String.format("%.1f", stats.getAvgHealthScore()) + "/100");
         System.out.println("连续打卡天数：" + stats.getConsecutiveDays() + "天");
+        CheckInStreak streak = healthDataService.getCheckInStreak(currentUser.getId());
+        if (streak != null) {
+            System.out.println("最长连续打卡：" + streak.getLongestStreak() + "天");
+        }
         System.out.println("平均睡眠时长：" + String.format("%.1f", stats.getAvgSleepHours()) + "小时");
         System.out.println("平均饮水量：" + stats.getAvgWaterIntake() + "毫升");
         System.out.println("平均运动时长：" + stats.getAvgExerciseMinutes() + "分钟");
         System.out.println("平均心情评分：" + String.format("%.1f", stats.getAvgMoodScore()) + "/5");
+
+        System.out.println("\n【多周期对比】");
+        System.out.println("周期      评分    睡眠(小时)  饮水(毫升)  运动(分钟)");
+        for (int window : new int[]{7, 30, 365}) {
+            DailyCheckInDao.HealthStatistics windowStats = healthDataService.getHealthStatistics(currentUser.getId(), window);
+            System.out.printf("%-6s  %6.1f  %10.1f  %10.0f  %10.0f\n", window + "天",
+                windowStats.getAvgHealthScore(), windowStats.getAvgSleepHours(),
+                windowStats.getAvgWaterIntake(), windowStats.getAvgExerciseMinutes());
+        }
+
+        showDistribution(currentUser);
+    }
+
+    private void showDistribution(User currentUser) {
+        String[] metrics = CheckInSketchDao.METRICS;
+        String[] labels = {"睡眠(小时)", "饮水(毫升)", "运动(分钟)"};
+
+        System.out.println("\n【全部历史分布】        P10      中位数       P90    全体用户中位数");
+        for (int i = 0; i < metrics.length; i++) {
+            TDigest mine = healthDataService.getCheckInDistribution(currentUser.getId(), metrics[i]);
+            if (mine == null || mine.isEmpty()) {
+                System.out.println("暂无足够的打卡数据");
+                return;
+            }
+            TDigest population = healthDataService.getPopulationDistribution(metrics[i]);
+            System.out.printf("%-12s  %10.1f  %10.1f  %10.1f  %12.1f\n", labels[i],
+                mine.quantile(0.1), mine.quantile(0.5), mine.quantile(0.9), population.quantile(0.5));
+        }
+    }
+
+    public void showCheckInCalendar(User currentUser) {
+        ConsoleUI.showTitleBox("年度打卡日历");
+
+        LocalDate today = LocalDate.now();
+        System.out.print("请输入年份(默认" + today.getYear() + ")：");
+        String yearStr = sessionManager.getScanner().nextLine().trim();
+
+        int year = today.getYear();
+        if (!yearStr.isEmpty()) {
+            try {
+                year = Integer.parseInt(yearStr);
+            } catch (NumberFormatException e) {
+                ConsoleUI.showWarning("输入无效，使用今年");
+            }
+        }
+
+        CheckInBitmap bitmap = healthDataService.getCheckInBitmap(currentUser.getId());
+        if (bitmap == null) {
+            ConsoleUI.showError("获取打卡记录失败，请稍后重试");
+            return;
+        }
+
+        System.out.println("\n【" + year + "年打卡日历】 ■ 已打卡  · 未打卡");
+        System.out.println("       1        10        20        30");
+
+        int yearTotal = 0;
+        int elapsedDays = 0;
+        for (int month = 1; month <= 12; month++) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            StringBuilder row = new StringBuilder(String.format("%2d月  ", month));
+
+            LocalDate lastDay = yearMonth.atEndOfMonth().isAfter(today) ? today : yearMonth.atEndOfMonth();
+            for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+                LocalDate date = yearMonth.atDay(day);
+                if (date.isAfter(today)) {
+                    row.append(' ');
+                } else {
+                    row.append(bitmap.contains(date) ? '■' : '·');
+                }
+            }
+
+            if (!yearMonth.atDay(1).isAfter(today)) {
+                int monthCount = bitmap.countInRange(yearMonth.atDay(1), lastDay);
+                int monthDays = lastDay.getDayOfMonth();
+                yearTotal += monthCount;
+                elapsedDays += monthDays;
+                row.append(String.format("  %2d/%-2d", monthCount, monthDays));
+            }
+            System.out.println(row);
+        }
+
+        System.out.println();
+        if (elapsedDays > 0) {
+            System.out.printf("全年打卡：%d天，打卡率：%.1f%%，漏打卡：%d天\n",
+                yearTotal, yearTotal * 100.0 / elapsedDays, elapsedDays - yearTotal);
+        }
+        System.out.println("当前连续打卡：" + bitmap.getStreakEndingOn(today) + "天");
+        System.out.println("历史最长连续：" + bitmap.getLongestStreak() + "天");
+    }
+
+    public void showTrendAnalysis(User currentUser) {
+        ConsoleUI.showTitleBox("趋势与相关性分析");
+
+        CheckInAnalyticsService.TrendReport report = analyticsService.getTrendReport(currentUser.getId(), 30);
+        if (report == null) {
+            ConsoleUI.showInfo("至少需要两次打卡记录才能分析趋势");
+            return;
+        }
+
+        System.out.println("共分析 " + report.getSampleCount() + " 条打卡记录");
+        System.out.println("\n【近30次打卡趋势（每周变化）】");
+        System.out.printf("睡眠时长：%+.2f 小时/周\n", report.getSleepTrendPerWeek());
+        System.out.printf("饮水量：%+.0f 毫升/周\n", report.getWaterTrendPerWeek());
+        System.out.printf("运动时长：%+.1f 分钟/周\n", report.getExerciseTrendPerWeek());
+
+        System.out.println("\n【与心情的相关系数（-1 ~ 1）】");
+        System.out.printf("睡眠 vs 心情：%.2f\n", report.getSleepMoodCorrelation());
+        System.out.printf("运动 vs 心情：%.2f\n", report.getExerciseMoodCorrelation());
+        System.out.printf("饮水 vs 心情：%.2f\n", report.getWaterMoodCorrelation());
+
+        CheckInSeries series = analyticsService.getSeries(currentUser.getId());
+        double[] rollingSleep = series.rollingAverage(CheckInSeries.Metric.SLEEP, 7);
+        int from = Math.max(0, series.size() - 7);
+        System.out.println("\n【睡眠7次滚动平均】");
+        for (int i = from; i < series.size(); i++) {
+            System.out.printf("%s  %.1f 小时\n", series.getDate(i), rollingSleep[i]);
+        }
     }
 
     private int calculateHealthScore(double sleepHours, int waterIntake, int exerciseMinutes, String mood) {
@@ -3,6 +3,8 @@ package com.chang1o.controller;
 
 import com.chang1o.model.User;
 import com.chang1o.model.PantryItem;
+import com.chang1o.model.ExpiryNotice;
+import com.chang1o.service.ExpirySweepService;
 import com.chang1o.service.PantryService;
 import com.chang1o.ui.ConsoleUI;
 import com.chang1o.ui.MenuManager;
@@ -13,14 +15,18 @@ import java.time.LocalDate;
 public class PantryController extends BaseController {
 
     private final PantryService pantryService;
+    private final ExpirySweepService expirySweepService;
 
     public PantryController() {
         this.pantryService = new PantryService();
+        this.expirySweepService = new ExpirySweepService();
     }
 
     public void showMenu(User currentUser) {
         boolean inPantryMenu = true;
 
+        showExpiryNotices(currentUser);
+
         while (inPantryMenu) {
             MenuManager.showPantryMenu();
 
@@ -46,6 +52,9 @@ public class PantryController extends BaseController {
                 case "6":
                     viewExpiredItems(currentUser);
                     break;
+                case "7":
+                    consolidatePantry(currentUser);
+                    break;
                 case "0":
                     inPantryMenu = false;
                     break;
@@ -60,6 +69,22 @@ public class PantryController extends BaseController {
         }
     }
 
+    private void showExpiryNotices(User currentUser) {
+        List<ExpiryNotice> notices = expirySweepService.getUnreadNotices(currentUser.getId());
+        if (notices.isEmpty()) {
+            return;
+        }
+
+        System.out.println();
+        System.out.println("[提醒] 后台巡检发现 " + notices.size() + " 件食品即将过期：");
+        for (ExpiryNotice notice : notices) {
+            PantryItem item = pantryService.getPantryItemById(notice.getPantryId());
+            String name = item != null && item.getIngredient() != null ? item.getIngredient().getName() : "未知食材";
+            System.out.println("   - " + name + " (保质期：" + notice.getExpiryDate() + ")");
+        }
+        expirySweepService.markNoticesRead(currentUser.getId());
+    }
+
     private void addPantryItem(User currentUser) {
         System.out.println("\n添加食品到库存");
         System.out.println("-".repeat(30));
@@ -323,4 +348,20 @@ public class PantryController extends BaseController {
             System.out.println("[建议] 建议及时清理已过期的食品，确保食品安全！");
         }
     }
+
+    private void consolidatePantry(User currentUser) {
+        System.out.println("\n合并重复库存");
+        System.out.println("-".repeat(30));
+        System.out.println("将同一食材、相同保质期且单位一致的库存合并为一条记录（如 200g + 300g = 500g）");
+
+        int removed = pantryService.consolidatePantry(currentUser.getId());
+
+        if (removed < 0) {
+            System.out.println("[错误] 合并失败，请稍后重试");
+        } else if (removed == 0) {
+            System.out.println("[正常] 没有可以合并的重复库存");
+        } else {
+            System.out.println("[成功] 已合并 " + removed + " 条重复库存记录");
+        }
+    }
 }
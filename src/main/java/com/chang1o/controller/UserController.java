@@ -2,18 +2,22 @@
 package com.chang1o.controller;
 
 import com.chang1o.model.User;
+import com.chang1o.dao.AiPrecomputedResultDao;
 import com.chang1o.service.UserService;
 import com.chang1o.ui.ConsoleUI;
 import com.chang1o.ui.InputValidator;
+import java.time.LocalDate;
 import java.util.Scanner;
 
 public class UserController extends BaseController {
 
     private final UserService userService;
+    private final AiPrecomputedResultDao precomputedResultDao;
     private User currentUser;
 
     public UserController() {
         this.userService = new UserService();
+        this.precomputedResultDao = new AiPrecomputedResultDao();
         this.currentUser = null;
     }
 
@@ -48,6 +52,9 @@ public class UserController extends BaseController {
             sessionManager.setCurrentUser(currentUser);  // 同步到SessionManager
             ConsoleUI.showSuccess(result.getMessage());
             System.out.println("欢迎回来，" + currentUser.getUsername() + "！");
+            if (precomputedResultDao.hasResultsFor(currentUser.getId(), LocalDate.now())) {
+                System.out.println("[提示] 今日AI健康建议已提前生成，进入AI助手即可立即查看");
+            }
         } else {
             ConsoleUI.showError(result.getMessage());
         }
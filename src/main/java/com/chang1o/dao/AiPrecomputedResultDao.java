@@ -0,0 +1,111 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.AiPrecomputedResult;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+import java.time.LocalDate;
+
+public class AiPrecomputedResultDao {
+
+    public AiPrecomputedResult getResult(int userId, String feature) {
+        String sql = "SELECT user_id, feature, prompt_hash, content, generated_for, updated_at " +
+                     "FROM ai_precomputed_result WHERE user_id = ? AND feature = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, feature);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    AiPrecomputedResult result = new AiPrecomputedResult();
+                    result.setUserId(rs.getInt("user_id"));
+                    result.setFeature(rs.getString("feature"));
+                    result.setPromptHash(rs.getString("prompt_hash"));
+                    result.setContent(rs.getString("content"));
+                    result.setGeneratedFor(rs.getDate("generated_for").toLocalDate());
+
+                    Timestamp updatedAt = rs.getTimestamp("updated_at");
+                    if (updatedAt != null) {
+                        result.setUpdatedAt(updatedAt.toLocalDateTime());
+                    }
+                    return result;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("查询预生成AI结果时发生错误: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    // 同一用户同一功能只保留最新一份，重跑批处理时覆盖
+    public boolean saveResult(AiPrecomputedResult result) {
+        String sql = "INSERT INTO ai_precomputed_result (user_id, feature, prompt_hash, content, generated_for) " +
+                     "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE prompt_hash = VALUES(prompt_hash), " +
+                     "content = VALUES(content), generated_for = VALUES(generated_for)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, result.getUserId());
+            pstmt.setString(2, result.getFeature());
+            pstmt.setString(3, result.getPromptHash());
+            pstmt.setString(4, result.getContent());
+            pstmt.setDate(5, Date.valueOf(result.getGeneratedFor()));
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存预生成AI结果时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    // 提示词未变、内容仍然有效时只把结果顺延到本次批处理日期，不重写内容
+    public boolean markGeneratedFor(int userId, String feature, String promptHash, LocalDate date) {
+        String sql = "UPDATE ai_precomputed_result SET generated_for = ? " +
+                     "WHERE user_id = ? AND feature = ? AND prompt_hash = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(date));
+            pstmt.setInt(2, userId);
+            pstmt.setString(3, feature);
+            pstmt.setString(4, promptHash);
+
+            pstmt.executeUpdate();
+            return true;
+
+        } catch (SQLException e) {
+            System.err.println("更新预生成AI结果日期时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public boolean hasResultsFor(int userId, LocalDate date) {
+        String sql = "SELECT 1 FROM ai_precomputed_result WHERE user_id = ? AND generated_for = ? LIMIT 1";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setDate(2, Date.valueOf(date));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            System.err.println("查询预生成AI结果时发生错误: " + e.getMessage());
+        }
+
+        return false;
+    }
+}
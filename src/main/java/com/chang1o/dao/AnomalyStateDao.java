@@ -0,0 +1,103 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.AnomalyState;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnomalyStateDao {
+
+    public Map<String, AnomalyState> getStatesByUserId(int userId) {
+        Map<String, AnomalyState> states = new HashMap<>();
+        String sql = "SELECT user_id, metric, ewma_mean, ewma_variance, cusum_low, cusum_high, sample_count, last_check_in_date, " +
+                     "prev_ewma_mean, prev_ewma_variance, prev_cusum_low, prev_cusum_high FROM check_in_anomaly_state WHERE user_id = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    AnomalyState state = new AnomalyState(rs.getInt("user_id"), rs.getString("metric"));
+                    state.setMean(rs.getDouble("ewma_mean"));
+                    state.setVariance(rs.getDouble("ewma_variance"));
+                    state.setCusumLow(rs.getDouble("cusum_low"));
+                    state.setCusumHigh(rs.getDouble("cusum_high"));
+                    state.setSampleCount(rs.getInt("sample_count"));
+                    Date lastDate = rs.getDate("last_check_in_date");
+                    if (lastDate != null) {
+                        state.setLastCheckInDate(lastDate.toLocalDate());
+                    }
+                    state.setPrevMean(rs.getDouble("prev_ewma_mean"));
+                    state.setPrevVariance(rs.getDouble("prev_ewma_variance"));
+                    state.setPrevCusumLow(rs.getDouble("prev_cusum_low"));
+                    state.setPrevCusumHigh(rs.getDouble("prev_cusum_high"));
+                    states.put(state.getMetric(), state);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取异常检测状态时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return states;
+    }
+
+    public boolean saveStates(Collection<AnomalyState> states) {
+        if (states.isEmpty()) {
+            return true;
+        }
+
+        String sql = "INSERT INTO check_in_anomaly_state (user_id, metric, ewma_mean, ewma_variance, cusum_low, cusum_high, " +
+                     "sample_count, last_check_in_date, prev_ewma_mean, prev_ewma_variance, prev_cusum_low, prev_cusum_high) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE ewma_mean = VALUES(ewma_mean), ewma_variance = VALUES(ewma_variance), " +
+                     "cusum_low = VALUES(cusum_low), cusum_high = VALUES(cusum_high), sample_count = VALUES(sample_count), " +
+                     "last_check_in_date = VALUES(last_check_in_date), prev_ewma_mean = VALUES(prev_ewma_mean), " +
+                     "prev_ewma_variance = VALUES(prev_ewma_variance), prev_cusum_low = VALUES(prev_cusum_low), " +
+                     "prev_cusum_high = VALUES(prev_cusum_high)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (AnomalyState state : states) {
+                    pstmt.setInt(1, state.getUserId());
+                    pstmt.setString(2, state.getMetric());
+                    pstmt.setDouble(3, state.getMean());
+                    pstmt.setDouble(4, state.getVariance());
+                    pstmt.setDouble(5, state.getCusumLow());
+                    pstmt.setDouble(6, state.getCusumHigh());
+                    pstmt.setInt(7, state.getSampleCount());
+                    if (state.getLastCheckInDate() != null) {
+                        pstmt.setDate(8, Date.valueOf(state.getLastCheckInDate()));
+                    } else {
+                        pstmt.setNull(8, Types.DATE);
+                    }
+                    pstmt.setDouble(9, state.getPrevMean());
+                    pstmt.setDouble(10, state.getPrevVariance());
+                    pstmt.setDouble(11, state.getPrevCusumLow());
+                    pstmt.setDouble(12, state.getPrevCusumHigh());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("保存异常检测状态时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.CheckInBitmap;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+
+public class CheckInBitmapDao {
+
+    public CheckInBitmap getBitmapByUserId(int userId) {
+        String sql = "SELECT base_day, bits FROM check_in_bitmap WHERE user_id = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return CheckInBitmap.fromBytes(userId, rs.getInt("base_day"), rs.getBytes("bits"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取打卡日历时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public boolean saveBitmap(CheckInBitmap bitmap) {
+        String sql = "INSERT INTO check_in_bitmap (user_id, base_day, bits) VALUES (?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE base_day = VALUES(base_day), bits = VALUES(bits)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, bitmap.getUserId());
+            pstmt.setInt(2, (int) bitmap.getBaseDay());
+            pstmt.setBytes(3, bitmap.toBytes());
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存打卡日历时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,120 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.CheckInRollup;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+import java.time.LocalDate;
+
+public class CheckInRollupDao {
+
+    private static final LocalDate EPOCH = LocalDate.of(1970, 1, 1);
+
+    public CheckInRollup getLatestRollup(int userId) {
+        String sql = "SELECT * FROM check_in_rollup WHERE user_id = ? ORDER BY check_in_date DESC LIMIT 1";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return extractRollupFromResultSet(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取打卡汇总时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public CheckInRollup getRollupBefore(int userId, LocalDate date) {
+        String sql = "SELECT * FROM check_in_rollup WHERE user_id = ? AND check_in_date < ? ORDER BY check_in_date DESC LIMIT 1";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setDate(2, Date.valueOf(date));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // 该日期之前没有打卡时下界为零；查询失败返回 null，不能当成零下界
+                return rs.next() ? extractRollupFromResultSet(rs) : CheckInRollup.empty(userId);
+            }
+        } catch (SQLException e) {
+            System.err.println("获取打卡汇总时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public boolean rebuildRollup(int userId) {
+        return rebuildRollupFrom(userId, EPOCH);
+    }
+
+    public boolean rebuildRollupFrom(int userId, LocalDate fromDate) {
+        String deleteSql = "DELETE FROM check_in_rollup WHERE user_id = ? AND check_in_date >= ?";
+        String insertSql = "INSERT INTO check_in_rollup " +
+                "(user_id, check_in_date, cum_count, cum_sleep, cum_water, cum_exercise, cum_mood, cum_score) " +
+                "SELECT d.user_id, d.check_in_date, " +
+                "COALESCE(b.cum_count, 0) + COUNT(*) OVER w, " +
+                "COALESCE(b.cum_sleep, 0) + SUM(COALESCE(d.sleep_hours, 0)) OVER w, " +
+                "COALESCE(b.cum_water, 0) + SUM(COALESCE(d.water_intake, 0)) OVER w, " +
+                "COALESCE(b.cum_exercise, 0) + SUM(COALESCE(d.exercise_minutes, 0)) OVER w, " +
+                "COALESCE(b.cum_mood, 0) + SUM(d.mood_score) OVER w, " +
+                "COALESCE(b.cum_score, 0) + SUM(d.health_score) OVER w " +
+                "FROM (SELECT user_id, check_in_date, sleep_hours, water_intake, exercise_minutes, " +
+                DailyCheckInDao.MOOD_SCORE_SQL + " AS mood_score, " +
+                DailyCheckInDao.HEALTH_SCORE_SQL + " AS health_score " +
+                "FROM daily_check_in WHERE user_id = ? AND check_in_date >= ?) d " +
+                "LEFT JOIN (SELECT cum_count, cum_sleep, cum_water, cum_exercise, cum_mood, cum_score " +
+                "FROM check_in_rollup WHERE user_id = ? AND check_in_date < ? " +
+                "ORDER BY check_in_date DESC LIMIT 1) b ON TRUE " +
+                "WINDOW w AS (ORDER BY d.check_in_date ROWS UNBOUNDED PRECEDING)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
+                 PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+
+                deleteStmt.setInt(1, userId);
+                deleteStmt.setDate(2, Date.valueOf(fromDate));
+                deleteStmt.executeUpdate();
+
+                insertStmt.setInt(1, userId);
+                insertStmt.setDate(2, Date.valueOf(fromDate));
+                insertStmt.setInt(3, userId);
+                insertStmt.setDate(4, Date.valueOf(fromDate));
+                insertStmt.executeUpdate();
+
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("重建打卡汇总时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    private CheckInRollup extractRollupFromResultSet(ResultSet rs) throws SQLException {
+        return new CheckInRollup(
+            rs.getInt("user_id"),
+            rs.getDate("check_in_date").toLocalDate(),
+            rs.getInt("cum_count"),
+            rs.getBigDecimal("cum_sleep"),
+            rs.getLong("cum_water"),
+            rs.getLong("cum_exercise"),
+            rs.getLong("cum_mood"),
+            rs.getLong("cum_score")
+        );
+    }
+}
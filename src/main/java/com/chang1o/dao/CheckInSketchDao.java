@@ -0,0 +1,80 @@
+package com.chang1o.dao;
+
+import com.chang1o.util.DBUtil;
+import com.chang1o.util.TDigest;
+
+import java.sql.*;
+
+public class CheckInSketchDao {
+
+    public static final String METRIC_SLEEP = "sleep";
+    public static final String METRIC_WATER = "water";
+    public static final String METRIC_EXERCISE = "exercise";
+
+    public static final String[] METRICS = {METRIC_SLEEP, METRIC_WATER, METRIC_EXERCISE};
+
+    public TDigest getSketch(int userId, String metric) {
+        String sql = "SELECT sketch FROM check_in_sketch WHERE user_id = ? AND metric = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, metric);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return TDigest.fromBytes(rs.getBytes("sketch"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取分布统计时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public boolean saveSketch(int userId, String metric, TDigest sketch) {
+        String sql = "INSERT INTO check_in_sketch (user_id, metric, sketch) VALUES (?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE sketch = VALUES(sketch)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, metric);
+            pstmt.setBytes(3, sketch.toBytes());
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存分布统计时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public TDigest mergeAllSketches(String metric) {
+        TDigest merged = new TDigest();
+        String sql = "SELECT sketch FROM check_in_sketch WHERE metric = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, metric);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    merged.merge(TDigest.fromBytes(rs.getBytes("sketch")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("合并分布统计时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return merged;
+    }
+}
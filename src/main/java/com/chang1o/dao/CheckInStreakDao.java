@@ -0,0 +1,63 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.CheckInStreak;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+
+public class CheckInStreakDao {
+
+    public CheckInStreak getStreakByUserId(int userId) {
+        String sql = "SELECT user_id, current_streak, longest_streak, last_check_in_date FROM check_in_streak WHERE user_id = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    Date lastDate = rs.getDate("last_check_in_date");
+                    return new CheckInStreak(
+                        rs.getInt("user_id"),
+                        rs.getInt("current_streak"),
+                        rs.getInt("longest_streak"),
+                        lastDate != null ? lastDate.toLocalDate() : null
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取打卡连续记录时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public boolean saveStreak(CheckInStreak streak) {
+        String sql = "INSERT INTO check_in_streak (user_id, current_streak, longest_streak, last_check_in_date) VALUES (?, ?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE current_streak = VALUES(current_streak), longest_streak = VALUES(longest_streak), " +
+                     "last_check_in_date = VALUES(last_check_in_date)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, streak.getUserId());
+            pstmt.setInt(2, streak.getCurrentStreak());
+            pstmt.setInt(3, streak.getLongestStreak());
+            if (streak.getLastCheckInDate() != null) {
+                pstmt.setDate(4, Date.valueOf(streak.getLastCheckInDate()));
+            } else {
+                pstmt.setNull(4, Types.DATE);
+            }
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存打卡连续记录时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+}
@@ -1,16 +1,60 @@
 package com.chang1o.dao;
 
+import com.chang1o.model.CheckInBitmap;
+import com.chang1o.model.CheckInDelta;
+import com.chang1o.model.CheckInRollup;
+import com.chang1o.model.CheckInSeries;
+import com.chang1o.model.CheckInStreak;
 import com.chang1o.model.DailyCheckIn;
+import com.chang1o.model.PopulationStats;
 import com.chang1o.util.DBUtil;
+import com.chang1o.util.TDigest;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DailyCheckInDao {
 
+    // 与 DailyCheckIn.getMoodScore / getHealthScore 的分段规则保持一致
+    static final String MOOD_SCORE_SQL =
+        "CASE mood WHEN 'great' THEN 5 WHEN 'good' THEN 4 WHEN 'normal' THEN 3 " +
+        "WHEN 'bad' THEN 2 WHEN 'terrible' THEN 1 ELSE 3 END";
+
+    static final String HEALTH_SCORE_SQL =
+        "LEAST(" + MOOD_SCORE_SQL + " * 4" +
+        " + CASE WHEN COALESCE(sleep_hours, 0) >= 8 THEN 30 WHEN COALESCE(sleep_hours, 0) >= 7 THEN 25" +
+        " WHEN COALESCE(sleep_hours, 0) >= 6 THEN 20 WHEN COALESCE(sleep_hours, 0) >= 5 THEN 10 ELSE 5 END" +
+        " + CASE WHEN COALESCE(water_intake, 0) >= 2000 THEN 25 WHEN COALESCE(water_intake, 0) >= 1500 THEN 20" +
+        " WHEN COALESCE(water_intake, 0) >= 1000 THEN 15 WHEN COALESCE(water_intake, 0) >= 500 THEN 10 ELSE 5 END" +
+        " + CASE WHEN COALESCE(exercise_minutes, 0) >= 60 THEN 25 WHEN COALESCE(exercise_minutes, 0) >= 30 THEN 20" +
+        " WHEN COALESCE(exercise_minutes, 0) >= 15 THEN 15 WHEN COALESCE(exercise_minutes, 0) > 0 THEN 10 ELSE 0 END" +
+        ", 100)";
+
+    public static final int UPSERT_FAILED = -1;
+    public static final int UPSERT_UNCHANGED = 0;
+    public static final int UPSERT_INSERTED = 1;
+    public static final int UPSERT_UPDATED = 2;
+
+    public static final int DELTAS_FAILED = -1;
+    public static final int DELTAS_ALREADY_APPLIED = 0;
+    public static final int DELTAS_APPLIED = 1;
+
+    // 已提交批次号的保留天数，远长于缓冲日志可能滞留的时间
+    private static final int FLUSH_BATCH_RETENTION_DAYS = 30;
+    private static final int MYSQL_DUPLICATE_KEY = 1062;
+
+    private final CheckInStreakDao streakDao = new CheckInStreakDao();
+    private final CheckInBitmapDao bitmapDao = new CheckInBitmapDao();
+    private final CheckInRollupDao rollupDao = new CheckInRollupDao();
+    private final CheckInSketchDao sketchDao = new CheckInSketchDao();
+
     public boolean addCheckIn(DailyCheckIn checkIn) {
         String sql = "INSERT INTO daily_check_in (user_id, check_in_date, mood, sleep_hours, water_intake, exercise_minutes, notes) VALUES (?, ?, ?, ?, ?, ?, ?)";
 
@@ -33,6 +77,7 @@ public class DailyCheckInDao {
                         checkIn.setId(generatedKeys.getInt(1));
                     }
                 }
+                onCheckInInserted(checkIn);
                 return true;
             }
         } catch (SQLException e) {
@@ -157,7 +202,333 @@ public class DailyCheckInDao {
         return checkInList;
     }
 
+    public CheckInSeries loadCheckInSeries(int userId) {
+        CheckInSeries series = new CheckInSeries(userId);
+        String sql = "SELECT check_in_date, " + MOOD_SCORE_SQL + " AS mood_score, sleep_hours, water_intake, exercise_minutes " +
+                     "FROM daily_check_in WHERE user_id = ? ORDER BY check_in_date";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    series.append(
+                        rs.getDate("check_in_date").toLocalDate(),
+                        rs.getInt("mood_score"),
+                        rs.getDouble("sleep_hours"),
+                        rs.getInt("water_intake"),
+                        rs.getInt("exercise_minutes")
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("加载打卡时间序列时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return series;
+    }
+
+    /**
+     * 在同一事务里写入增量并记录这些增量所属的缓冲日志批次号。增量只累加到当天已有的打卡记录上，没有打卡记录的日期被丢弃。
+     * 任一批次号已存在说明这批增量此前已经提交过（例如提交后、清理日志前崩溃），整批回滚并返回 DELTAS_ALREADY_APPLIED，
+     * 由调用方按数据库记录重新整理日志，避免饮水量、运动时长被重复累加。
+     */
+    public int applyCheckInDeltas(List<CheckInDelta> deltas, Collection<String> batchIds) {
+        if (deltas.isEmpty()) {
+            return DELTAS_APPLIED;
+        }
+
+        try (Connection conn = DBUtil.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!batchIds.isEmpty()) {
+                    String sql = "INSERT INTO check_in_flush_batch (batch_id) VALUES " +
+                                 String.join(", ", Collections.nCopies(batchIds.size(), "(?)"));
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        int index = 1;
+                        for (String batchId : batchIds) {
+                            pstmt.setString(index++, batchId);
+                        }
+                        pstmt.executeUpdate();
+                    } catch (SQLException e) {
+                        if (e.getErrorCode() == MYSQL_DUPLICATE_KEY) {
+                            conn.rollback();
+                            return DELTAS_ALREADY_APPLIED;
+                        }
+                        throw e;
+                    }
+                }
+
+                // 增量只累加到已有的打卡记录上，不凭空生成缺少心情、睡眠的打卡行
+                String sql = "UPDATE daily_check_in SET mood = COALESCE(?, mood), sleep_hours = COALESCE(?, sleep_hours), " +
+                             "water_intake = LEAST(COALESCE(water_intake, 0) + ?, 10000), " +
+                             "exercise_minutes = LEAST(COALESCE(exercise_minutes, 0) + ?, 1440) " +
+                             "WHERE user_id = ? AND check_in_date = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (CheckInDelta delta : deltas) {
+                        pstmt.setString(1, delta.getMood());
+                        if (delta.getSleepHours() != null) {
+                            pstmt.setDouble(2, delta.getSleepHours());
+                        } else {
+                            pstmt.setNull(2, Types.DECIMAL);
+                        }
+                        pstmt.setInt(3, Math.min(delta.getWaterIntake(), 10000));
+                        pstmt.setInt(4, Math.min(delta.getExerciseMinutes(), 1440));
+                        pstmt.setInt(5, delta.getUserId());
+                        pstmt.setDate(6, Date.valueOf(delta.getCheckInDate()));
+                        pstmt.addBatch();
+                    }
+
+                    int dropped = 0;
+                    for (int count : pstmt.executeBatch()) {
+                        if (count == 0) {
+                            dropped++;
+                        }
+                    }
+                    if (dropped > 0) {
+                        System.err.println("有 " + dropped + " 条快速记录对应的日期没有打卡记录，已丢弃");
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "DELETE FROM check_in_flush_batch WHERE applied_at < ?")) {
+                    pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minusDays(FLUSH_BATCH_RETENTION_DAYS)));
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+                return DELTAS_APPLIED;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("批量写入打卡增量时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return DELTAS_FAILED;
+    }
+
+    // 返回其中已提交的批次号；查询失败返回 null，调用方据此无法判断是否可以重放
+    public Set<String> getAppliedFlushBatches(Collection<String> batchIds) {
+        Set<String> applied = new HashSet<>();
+        if (batchIds.isEmpty()) {
+            return applied;
+        }
+
+        String sql = "SELECT batch_id FROM check_in_flush_batch WHERE batch_id IN (" +
+                     String.join(", ", Collections.nCopies(batchIds.size(), "?")) + ")";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            for (String batchId : batchIds) {
+                pstmt.setString(index++, batchId);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    applied.add(rs.getString("batch_id"));
+                }
+            }
+            return applied;
+        } catch (SQLException e) {
+            System.err.println("查询已提交的打卡缓冲批次时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    // 批量导入专用：不触发逐行的派生状态维护，调用方在全部导入后统一 rebuildDerivedState
+    public int upsertCheckInsBatch(List<DailyCheckIn> checkIns) {
+        if (checkIns.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "INSERT INTO daily_check_in (user_id, check_in_date, mood, sleep_hours, water_intake, exercise_minutes, notes) VALUES " +
+                     String.join(", ", Collections.nCopies(checkIns.size(), "(?, ?, ?, ?, ?, ?, ?)")) +
+                     " ON DUPLICATE KEY UPDATE mood = VALUES(mood), sleep_hours = VALUES(sleep_hours), " +
+                     "water_intake = VALUES(water_intake), exercise_minutes = VALUES(exercise_minutes), notes = COALESCE(VALUES(notes), notes)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            try {
+                int index = 1;
+                for (DailyCheckIn checkIn : checkIns) {
+                    pstmt.setInt(index++, checkIn.getUserId());
+                    pstmt.setDate(index++, Date.valueOf(checkIn.getCheckInDate()));
+                    pstmt.setString(index++, checkIn.getMood());
+                    pstmt.setDouble(index++, checkIn.getSleepHours());
+                    pstmt.setInt(index++, checkIn.getWaterIntake());
+                    pstmt.setInt(index++, checkIn.getExerciseMinutes());
+                    pstmt.setString(index++, checkIn.getNotes());
+                }
+                pstmt.executeUpdate();
+                conn.commit();
+                return checkIns.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("批量导入打卡记录时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return -1;
+    }
+
+    // 增量只修改已有记录的数值，打卡天数不变，连续打卡与日历位图无需重建
+    public void refreshDerivedState(int userId, Collection<LocalDate> dates) {
+        if (dates.isEmpty()) {
+            return;
+        }
+
+        rollupDao.rebuildRollupFrom(userId, Collections.min(dates));
+        rebuildSketches(userId);
+    }
+
+    public int[] getCheckInUserIdRange() {
+        String sql = "SELECT MIN(user_id), MAX(user_id) FROM daily_check_in";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            if (rs.next() && rs.getObject(1) != null) {
+                return new int[]{rs.getInt(1), rs.getInt(2)};
+            }
+        } catch (SQLException e) {
+            System.err.println("获取打卡用户范围时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    // 按用户ID游标分页，返回指定日期以来有打卡的用户；查询失败返回 null
+    public List<Integer> getUserIdsWithCheckInsSince(LocalDate since, int afterUserId, int limit) {
+        String sql = "SELECT DISTINCT user_id FROM daily_check_in WHERE check_in_date >= ? AND user_id > ? " +
+                     "ORDER BY user_id LIMIT ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(since));
+            pstmt.setInt(2, afterUserId);
+            pstmt.setInt(3, limit);
+
+            List<Integer> userIds = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    userIds.add(rs.getInt(1));
+                }
+            }
+            return userIds;
+
+        } catch (SQLException e) {
+            System.err.println("查询近期打卡用户时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public boolean accumulatePopulationStats(int startUserId, int endUserId, PopulationStats stats) {
+        String sql = "SELECT user_id, check_in_date, " + MOOD_SCORE_SQL + " AS mood_score, sleep_hours, water_intake, " +
+                     "exercise_minutes, " + HEALTH_SCORE_SQL + " AS health_score " +
+                     "FROM daily_check_in WHERE user_id BETWEEN ? AND ? AND check_in_date <= ? " +
+                     "ORDER BY user_id, check_in_date";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setInt(1, startUserId);
+            pstmt.setInt(2, endUserId);
+            pstmt.setDate(3, Date.valueOf(stats.getAsOfDate()));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    stats.accept(
+                        rs.getInt("user_id"),
+                        rs.getDate("check_in_date").toLocalDate(),
+                        rs.getInt("mood_score"),
+                        rs.getDouble("sleep_hours"),
+                        rs.getInt("water_intake"),
+                        rs.getInt("exercise_minutes"),
+                        rs.getInt("health_score")
+                    );
+                }
+            }
+            stats.finishUser();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("汇总全站打卡数据时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public int upsertCheckIn(DailyCheckIn checkIn) {
+        String sql = "INSERT INTO daily_check_in (user_id, check_in_date, mood, sleep_hours, water_intake, exercise_minutes, notes) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id), mood = VALUES(mood), sleep_hours = VALUES(sleep_hours), " +
+                     "water_intake = VALUES(water_intake), exercise_minutes = VALUES(exercise_minutes), notes = COALESCE(VALUES(notes), notes)";
+
+        try (Connection conn = DBUtil.getInstance().getAffectedRowsConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            pstmt.setInt(1, checkIn.getUserId());
+            pstmt.setDate(2, Date.valueOf(checkIn.getCheckInDate()));
+            pstmt.setString(3, checkIn.getMood());
+            pstmt.setDouble(4, checkIn.getSleepHours());
+            pstmt.setInt(5, checkIn.getWaterIntake());
+            pstmt.setInt(6, checkIn.getExerciseMinutes());
+            pstmt.setString(7, checkIn.getNotes());
+
+            int affectedRows = pstmt.executeUpdate();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    checkIn.setId(generatedKeys.getInt(1));
+                }
+            }
+
+            if (affectedRows == UPSERT_INSERTED) {
+                onCheckInInserted(checkIn);
+            } else if (affectedRows == UPSERT_UPDATED) {
+                onCheckInUpdated(checkIn.getUserId(), checkIn.getCheckInDate());
+            }
+            return affectedRows;
+
+        } catch (SQLException e) {
+            System.err.println("保存每日打卡记录时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return UPSERT_FAILED;
+    }
+
     public boolean updateCheckIn(DailyCheckIn checkIn) {
+        if (checkIn.getCheckInDate() == null) {
+            DailyCheckIn existing = getCheckInById(checkIn.getId());
+            if (existing == null) {
+                return false;
+            }
+            checkIn.setUserId(existing.getUserId());
+            checkIn.setCheckInDate(existing.getCheckInDate());
+        }
+
         String sql = "UPDATE daily_check_in SET mood = ?, sleep_hours = ?, water_intake = ?, exercise_minutes = ?, notes = ? WHERE id = ?";
 
         try (Connection conn = DBUtil.getInstance().getConnection();
@@ -171,6 +542,9 @@ public class DailyCheckInDao {
             pstmt.setInt(6, checkIn.getId());
 
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                onCheckInUpdated(checkIn.getUserId(), checkIn.getCheckInDate());
+            }
             return affectedRows > 0;
 
         } catch (SQLException e) {
@@ -182,6 +556,11 @@ public class DailyCheckInDao {
     }
 
     public boolean deleteCheckIn(int id) {
+        DailyCheckIn existing = getCheckInById(id);
+        if (existing == null) {
+            return false;
+        }
+
         String sql = "DELETE FROM daily_check_in WHERE id = ?";
 
         try (Connection conn = DBUtil.getInstance().getConnection();
@@ -190,6 +569,9 @@ public class DailyCheckInDao {
             pstmt.setInt(1, id);
 
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                onCheckInDeleted(existing.getUserId(), existing.getCheckInDate());
+            }
             return affectedRows > 0;
 
         } catch (SQLException e) {
@@ -201,7 +583,20 @@ public class DailyCheckInDao {
     }
 
     public int getConsecutiveCheckInDays(int userId) {
-        String sql = "SELECT check_in_date FROM daily_check_in WHERE user_id = ? ORDER BY check_in_date DESC";
+        CheckInStreak streak = getCheckInStreak(userId);
+        return streak != null ? streak.getStreakEndingOn(LocalDate.now()) : 0;
+    }
+
+    public CheckInStreak getCheckInStreak(int userId) {
+        CheckInStreak streak = streakDao.getStreakByUserId(userId);
+        if (streak == null) {
+            streak = rebuildStreak(userId);
+        }
+        return streak;
+    }
+
+    public CheckInStreak rebuildStreak(int userId) {
+        String sql = "SELECT check_in_date FROM daily_check_in WHERE user_id = ? ORDER BY check_in_date";
 
         try (Connection conn = DBUtil.getInstance().getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -209,37 +604,197 @@ public class DailyCheckInDao {
             pstmt.setInt(1, userId);
 
             try (ResultSet rs = pstmt.executeQuery()) {
-                List<LocalDate> checkInDates = new ArrayList<>();
+                CheckInStreak streak = new CheckInStreak(userId, 0, 0, null);
                 while (rs.next()) {
-                    checkInDates.add(rs.getDate("check_in_date").toLocalDate());
+                    advanceStreak(streak, rs.getDate("check_in_date").toLocalDate());
                 }
 
-                return calculateConsecutiveDays(checkInDates);
+                streakDao.saveStreak(streak);
+                return streak;
             }
         } catch (SQLException e) {
-            System.err.println("获取连续打卡天数时发生错误: " + e.getMessage());
+            System.err.println("重建连续打卡记录时发生错误: " + e.getMessage());
             e.printStackTrace();
         }
 
-        return 0;
+        return null;
+    }
+
+    public CheckInBitmap getCheckInBitmap(int userId) {
+        CheckInBitmap bitmap = bitmapDao.getBitmapByUserId(userId);
+        if (bitmap == null) {
+            bitmap = rebuildBitmap(userId);
+        }
+        return bitmap;
     }
 
-    private int calculateConsecutiveDays(List<LocalDate> dates) {
-        if (dates.isEmpty()) return 0;
+    public CheckInBitmap rebuildBitmap(int userId) {
+        String sql = "SELECT check_in_date FROM daily_check_in WHERE user_id = ?";
 
-        int consecutiveDays = 0;
-        LocalDate today = LocalDate.now();
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
 
-        for (int i = 0; i < dates.size(); i++) {
-            LocalDate expectedDate = today.minusDays(i);
-            if (dates.get(i).equals(expectedDate)) {
-                consecutiveDays++;
-            } else {
-                break;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                CheckInBitmap bitmap = new CheckInBitmap(userId);
+                while (rs.next()) {
+                    bitmap.set(rs.getDate("check_in_date").toLocalDate());
+                }
+
+                bitmapDao.saveBitmap(bitmap);
+                return bitmap;
+            }
+        } catch (SQLException e) {
+            System.err.println("重建打卡日历时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public TDigest getCheckInSketch(int userId, String metric) {
+        TDigest sketch = sketchDao.getSketch(userId, metric);
+        if (sketch == null && rebuildSketches(userId)) {
+            sketch = sketchDao.getSketch(userId, metric);
+        }
+        return sketch;
+    }
+
+    public TDigest getPopulationSketch(String metric) {
+        return sketchDao.mergeAllSketches(metric);
+    }
+
+    public boolean rebuildSketches(int userId) {
+        String sql = "SELECT sleep_hours, water_intake, exercise_minutes FROM daily_check_in WHERE user_id = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                TDigest sleep = new TDigest();
+                TDigest water = new TDigest();
+                TDigest exercise = new TDigest();
+                while (rs.next()) {
+                    sleep.add(rs.getDouble("sleep_hours"));
+                    water.add(rs.getInt("water_intake"));
+                    exercise.add(rs.getInt("exercise_minutes"));
+                }
+
+                return sketchDao.saveSketch(userId, CheckInSketchDao.METRIC_SLEEP, sleep)
+                    && sketchDao.saveSketch(userId, CheckInSketchDao.METRIC_WATER, water)
+                    && sketchDao.saveSketch(userId, CheckInSketchDao.METRIC_EXERCISE, exercise);
             }
+        } catch (SQLException e) {
+            System.err.println("重建分布统计时发生错误: " + e.getMessage());
+            e.printStackTrace();
         }
 
-        return consecutiveDays;
+        return false;
+    }
+
+    private void updateSketches(DailyCheckIn checkIn) {
+        int userId = checkIn.getUserId();
+        TDigest sleep = sketchDao.getSketch(userId, CheckInSketchDao.METRIC_SLEEP);
+        TDigest water = sketchDao.getSketch(userId, CheckInSketchDao.METRIC_WATER);
+        TDigest exercise = sketchDao.getSketch(userId, CheckInSketchDao.METRIC_EXERCISE);
+
+        if (sleep == null || water == null || exercise == null) {
+            rebuildSketches(userId);
+            return;
+        }
+
+        sleep.add(checkIn.getSleepHours());
+        water.add(checkIn.getWaterIntake());
+        exercise.add(checkIn.getExerciseMinutes());
+        sketchDao.saveSketch(userId, CheckInSketchDao.METRIC_SLEEP, sleep);
+        sketchDao.saveSketch(userId, CheckInSketchDao.METRIC_WATER, water);
+        sketchDao.saveSketch(userId, CheckInSketchDao.METRIC_EXERCISE, exercise);
+    }
+
+    public void rebuildDerivedState(int userId) {
+        rebuildStreak(userId);
+        rebuildBitmap(userId);
+        rollupDao.rebuildRollup(userId);
+        rebuildSketches(userId);
+    }
+
+    private void onCheckInInserted(DailyCheckIn checkIn) {
+        updateStreakOnInsert(checkIn.getUserId(), checkIn.getCheckInDate());
+        updateBitmap(checkIn.getUserId(), checkIn.getCheckInDate(), true);
+        rollupDao.rebuildRollupFrom(checkIn.getUserId(), checkIn.getCheckInDate());
+        updateSketches(checkIn);
+    }
+
+    private void onCheckInUpdated(int userId, LocalDate date) {
+        rollupDao.rebuildRollupFrom(userId, date);
+        rebuildSketches(userId);
+    }
+
+    private void onCheckInDeleted(int userId, LocalDate date) {
+        rebuildStreak(userId);
+        updateBitmap(userId, date, false);
+        rollupDao.rebuildRollupFrom(userId, date);
+        rebuildSketches(userId);
+    }
+
+    private void updateBitmap(int userId, LocalDate date, boolean checkedIn) {
+        CheckInBitmap bitmap = bitmapDao.getBitmapByUserId(userId);
+        if (bitmap == null) {
+            rebuildBitmap(userId);
+            return;
+        }
+
+        if (checkedIn) {
+            bitmap.set(date);
+        } else {
+            bitmap.clear(date);
+        }
+        bitmapDao.saveBitmap(bitmap);
+    }
+
+    private void updateStreakOnInsert(int userId, LocalDate date) {
+        CheckInStreak streak = streakDao.getStreakByUserId(userId);
+
+        if (streak == null || streak.getLastCheckInDate() == null || !date.isAfter(streak.getLastCheckInDate())) {
+            rebuildStreak(userId);
+            return;
+        }
+
+        advanceStreak(streak, date);
+        streakDao.saveStreak(streak);
+    }
+
+    private void advanceStreak(CheckInStreak streak, LocalDate date) {
+        LocalDate last = streak.getLastCheckInDate();
+        if (last != null && date.equals(last.plusDays(1))) {
+            streak.setCurrentStreak(streak.getCurrentStreak() + 1);
+        } else {
+            streak.setCurrentStreak(1);
+        }
+        streak.setLongestStreak(Math.max(streak.getLongestStreak(), streak.getCurrentStreak()));
+        streak.setLastCheckInDate(date);
+    }
+
+    public boolean hasAnyCheckIn(int userId) {
+        String sql = "SELECT 1 FROM daily_check_in WHERE user_id = ? LIMIT 1";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            System.err.println("检查用户打卡记录时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
     }
 
     public boolean hasCheckedInToday(int userId) {
@@ -248,37 +803,75 @@ public class DailyCheckInDao {
     }
 
     public HealthStatistics getHealthStatistics(int userId, int days) {
-        List<DailyCheckIn> recentCheckIns = getRecentCheckIns(userId, days);
+        LocalDate startDate = LocalDate.now().minusDays(days - 1);
 
-        if (recentCheckIns.isEmpty()) {
-            return new HealthStatistics(0, 0, 0, 0, 0, 0);
+        CheckInRollup upper = rollupDao.getLatestRollup(userId);
+        if (upper == null) {
+            if (!hasAnyCheckIn(userId)) {
+                return new HealthStatistics(0, 0, 0, 0, 0, 0);
+            }
+            if (!rollupDao.rebuildRollup(userId) || (upper = rollupDao.getLatestRollup(userId)) == null) {
+                return aggregateHealthStatistics(userId, startDate);
+            }
         }
 
-        int totalScore = 0;
-        double totalSleep = 0;
-        int totalWater = 0;
-        int totalExercise = 0;
-        int moodScoreTotal = 0;
-
-        for (DailyCheckIn checkIn : recentCheckIns) {
-            totalScore += checkIn.getHealthScore();
-            totalSleep += checkIn.getSleepHours();
-            totalWater += checkIn.getWaterIntake();
-            totalExercise += checkIn.getExerciseMinutes();
-            moodScoreTotal += checkIn.getMoodScore();
+        CheckInRollup lower = rollupDao.getRollupBefore(userId, startDate);
+        if (lower == null) {
+            return aggregateHealthStatistics(userId, startDate);
+        }
+        int count = upper.getCumCount() - lower.getCumCount();
+        if (count <= 0) {
+            return new HealthStatistics(0, 0, 0, 0, 0, 0);
         }
 
-        int count = recentCheckIns.size();
         return new HealthStatistics(
-            totalScore / count,
-            totalSleep / count,
-            totalWater / count,
-            totalExercise / count,
-            (double) moodScoreTotal / count,
+            (upper.getCumScore() - lower.getCumScore()) / count,
+            upper.getCumSleep().subtract(lower.getCumSleep()).doubleValue() / count,
+            (upper.getCumWater() - lower.getCumWater()) / count,
+            (upper.getCumExercise() - lower.getCumExercise()) / count,
+            (double) (upper.getCumMood() - lower.getCumMood()) / count,
             getConsecutiveCheckInDays(userId)
         );
     }
 
+    private HealthStatistics aggregateHealthStatistics(int userId, LocalDate startDate) {
+        String sql = "SELECT COUNT(*) AS check_in_count, " +
+                     "SUM(" + HEALTH_SCORE_SQL + ") AS total_score, " +
+                     "SUM(COALESCE(sleep_hours, 0)) AS total_sleep, " +
+                     "SUM(COALESCE(water_intake, 0)) AS total_water, " +
+                     "SUM(COALESCE(exercise_minutes, 0)) AS total_exercise, " +
+                     "SUM(" + MOOD_SCORE_SQL + ") AS total_mood " +
+                     "FROM daily_check_in WHERE user_id = ? AND check_in_date >= ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setDate(2, Date.valueOf(startDate));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    int count = rs.getInt("check_in_count");
+                    if (count > 0) {
+                        return new HealthStatistics(
+                            rs.getLong("total_score") / count,
+                            rs.getDouble("total_sleep") / count,
+                            rs.getLong("total_water") / count,
+                            rs.getLong("total_exercise") / count,
+                            (double) rs.getLong("total_mood") / count,
+                            getConsecutiveCheckInDays(userId)
+                        );
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("统计用户健康数据时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return new HealthStatistics(0, 0, 0, 0, 0, 0);
+    }
+
     private DailyCheckIn extractCheckInFromResultSet(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         int userId = rs.getInt("user_id");
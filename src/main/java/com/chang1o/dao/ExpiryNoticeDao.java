@@ -0,0 +1,103 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.ExpiryNotice;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExpiryNoticeDao {
+
+    public int addNoticesBatch(List<ExpiryNotice> notices) {
+        if (notices.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "INSERT IGNORE INTO pantry_expiry_notice (user_id, pantry_id, ingredient_id, expiry_date, days_left) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (ExpiryNotice notice : notices) {
+                    stmt.setInt(1, notice.getUserId());
+                    stmt.setInt(2, notice.getPantryId());
+                    stmt.setInt(3, notice.getIngredientId());
+                    stmt.setDate(4, Date.valueOf(notice.getExpiryDate()));
+                    stmt.setInt(5, notice.getDaysLeft());
+                    stmt.addBatch();
+                }
+
+                int inserted = 0;
+                for (int count : stmt.executeBatch()) {
+                    if (count > 0) {
+                        inserted += count;
+                    }
+                }
+                conn.commit();
+                return inserted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("批量写入过期提醒失败：" + e.getMessage());
+            return -1;
+        }
+    }
+
+    public List<ExpiryNotice> getUnreadNotices(int userId) {
+        List<ExpiryNotice> notices = new ArrayList<>();
+        String sql = "SELECT id, user_id, pantry_id, ingredient_id, expiry_date, days_left, is_read, created_at " +
+                    "FROM pantry_expiry_notice WHERE user_id = ? AND is_read = FALSE ORDER BY expiry_date";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ExpiryNotice notice = new ExpiryNotice();
+                    notice.setId(rs.getInt("id"));
+                    notice.setUserId(rs.getInt("user_id"));
+                    notice.setPantryId(rs.getInt("pantry_id"));
+                    notice.setIngredientId(rs.getInt("ingredient_id"));
+                    notice.setExpiryDate(rs.getDate("expiry_date").toLocalDate());
+                    notice.setDaysLeft(rs.getInt("days_left"));
+                    notice.setRead(rs.getBoolean("is_read"));
+
+                    Timestamp createdAt = rs.getTimestamp("created_at");
+                    if (createdAt != null) {
+                        notice.setCreatedAt(createdAt.toLocalDateTime());
+                    }
+
+                    notices.add(notice);
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("获取过期提醒失败：" + e.getMessage());
+        }
+
+        return notices;
+    }
+
+    public boolean markAllRead(int userId) {
+        String sql = "UPDATE pantry_expiry_notice SET is_read = TRUE WHERE user_id = ? AND is_read = FALSE";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            return stmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("更新过期提醒状态失败：" + e.getMessage());
+            return false;
+        }
+    }
+}
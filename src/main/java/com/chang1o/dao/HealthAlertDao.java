@@ -0,0 +1,169 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.HealthAlert;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class HealthAlertDao {
+
+    public boolean addAlert(HealthAlert alert) {
+        String sql = "INSERT IGNORE INTO health_alert (user_id, metric, alert_date, direction, observed_value, baseline_value, message) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, alert.getUserId());
+            pstmt.setString(2, alert.getMetric());
+            pstmt.setDate(3, Date.valueOf(alert.getAlertDate()));
+            pstmt.setString(4, alert.getDirection());
+            pstmt.setDouble(5, alert.getObservedValue());
+            pstmt.setDouble(6, alert.getBaselineValue());
+            pstmt.setString(7, alert.getMessage());
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存健康提醒时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * 用重新计算的结果替换该用户 fromDate 及之后的提醒。与原提醒同指标、同日期、同方向的沿用原来的已读状态，
+     * 其余新出现的提醒按 markRead 决定是否直接标为已读。
+     */
+    public boolean replaceAlertsFrom(int userId, LocalDate fromDate, List<HealthAlert> alerts, boolean markRead) {
+        String selectSql = "SELECT metric, alert_date, direction FROM health_alert " +
+                           "WHERE user_id = ? AND alert_date >= ? AND is_read = TRUE";
+        String deleteSql = "DELETE FROM health_alert WHERE user_id = ? AND alert_date >= ?";
+        String insertSql = "INSERT INTO health_alert (user_id, metric, alert_date, direction, observed_value, baseline_value, message, is_read) " +
+                           "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement selectStmt = conn.prepareStatement(selectSql);
+                 PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
+                 PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+
+                Set<String> readKeys = new HashSet<>();
+                selectStmt.setInt(1, userId);
+                selectStmt.setDate(2, Date.valueOf(fromDate));
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    while (rs.next()) {
+                        readKeys.add(rs.getString("metric") + "@" + rs.getDate("alert_date").toLocalDate() + "@" + rs.getString("direction"));
+                    }
+                }
+
+                deleteStmt.setInt(1, userId);
+                deleteStmt.setDate(2, Date.valueOf(fromDate));
+                deleteStmt.executeUpdate();
+
+                for (HealthAlert alert : alerts) {
+                    boolean read = markRead || readKeys.contains(alert.getMetric() + "@" + alert.getAlertDate() + "@" + alert.getDirection());
+                    alert.setRead(read);
+                    insertStmt.setInt(1, alert.getUserId());
+                    insertStmt.setString(2, alert.getMetric());
+                    insertStmt.setDate(3, Date.valueOf(alert.getAlertDate()));
+                    insertStmt.setString(4, alert.getDirection());
+                    insertStmt.setDouble(5, alert.getObservedValue());
+                    insertStmt.setDouble(6, alert.getBaselineValue());
+                    insertStmt.setString(7, alert.getMessage());
+                    insertStmt.setBoolean(8, read);
+                    insertStmt.addBatch();
+                }
+                insertStmt.executeBatch();
+
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("重新计算健康提醒时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public List<HealthAlert> getUnreadAlerts(int userId) {
+        String sql = "SELECT * FROM health_alert WHERE user_id = ? AND is_read = FALSE ORDER BY alert_date DESC, id DESC";
+        return queryAlerts(sql, userId, null);
+    }
+
+    public List<HealthAlert> getRecentAlerts(int userId, int days) {
+        String sql = "SELECT * FROM health_alert WHERE user_id = ? AND alert_date >= ? ORDER BY alert_date DESC, id DESC";
+        return queryAlerts(sql, userId, LocalDate.now().minusDays(days - 1));
+    }
+
+    public boolean markAllRead(int userId) {
+        String sql = "UPDATE health_alert SET is_read = TRUE WHERE user_id = ? AND is_read = FALSE";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("更新健康提醒状态时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    private List<HealthAlert> queryAlerts(String sql, int userId, LocalDate startDate) {
+        List<HealthAlert> alerts = new ArrayList<>();
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            if (startDate != null) {
+                pstmt.setDate(2, Date.valueOf(startDate));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    alerts.add(mapResultSetToAlert(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取健康提醒时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return alerts;
+    }
+
+    private HealthAlert mapResultSetToAlert(ResultSet rs) throws SQLException {
+        HealthAlert alert = new HealthAlert();
+        alert.setId(rs.getInt("id"));
+        alert.setUserId(rs.getInt("user_id"));
+        alert.setMetric(rs.getString("metric"));
+        alert.setAlertDate(rs.getDate("alert_date").toLocalDate());
+        alert.setDirection(rs.getString("direction"));
+        alert.setObservedValue(rs.getDouble("observed_value"));
+        alert.setBaselineValue(rs.getDouble("baseline_value"));
+        alert.setMessage(rs.getString("message"));
+        alert.setRead(rs.getBoolean("is_read"));
+
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            alert.setCreatedAt(createdAt.toLocalDateTime());
+        }
+        return alert;
+    }
+}
@@ -0,0 +1,73 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.JobWatermark;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+
+public class JobWatermarkDao {
+
+    public JobWatermark getWatermark(String jobName) {
+        String sql = "SELECT job_name, run_date, last_date, last_id FROM job_watermark WHERE job_name = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    JobWatermark watermark = new JobWatermark();
+                    watermark.setJobName(rs.getString("job_name"));
+
+                    Date runDate = rs.getDate("run_date");
+                    if (runDate != null) {
+                        watermark.setRunDate(runDate.toLocalDate());
+                    }
+
+                    Date lastDate = rs.getDate("last_date");
+                    if (lastDate != null) {
+                        watermark.setLastDate(lastDate.toLocalDate());
+                    }
+
+                    watermark.setLastId(rs.getInt("last_id"));
+                    return watermark;
+                }
+            }
+            return null;
+
+        } catch (SQLException e) {
+            System.err.println("查询任务水位失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean saveWatermark(JobWatermark watermark) {
+        String sql = "INSERT INTO job_watermark (job_name, run_date, last_date, last_id) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE run_date = VALUES(run_date), last_date = VALUES(last_date), last_id = VALUES(last_id)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, watermark.getJobName());
+
+            if (watermark.getRunDate() != null) {
+                stmt.setDate(2, Date.valueOf(watermark.getRunDate()));
+            } else {
+                stmt.setNull(2, Types.DATE);
+            }
+
+            if (watermark.getLastDate() != null) {
+                stmt.setDate(3, Date.valueOf(watermark.getLastDate()));
+            } else {
+                stmt.setNull(3, Types.DATE);
+            }
+
+            stmt.setInt(4, watermark.getLastId());
+            return stmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存任务水位失败：" + e.getMessage());
+            return false;
+        }
+    }
+}
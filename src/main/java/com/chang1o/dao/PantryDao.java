@@ -10,6 +10,11 @@ import java.util.List;
 
 public class PantryDao {
 
+    // 整数与小数部分都限制在 30 位以内，按 DECIMAL(65,30) 求和不会截断小数，也留有进位余量
+    private static final String MERGEABLE_QUANTITY = "^[0-9]{1,30}([.][0-9]{1,30})?[[:space:]]*[^0-9.[:space:]]*$";
+    private static final String QUANTITY_NUMBER = "CAST(REGEXP_SUBSTR(quantity, '^[0-9]+([.][0-9]+)?') AS DECIMAL(65,30))";
+    private static final String QUANTITY_UNIT = "LOWER(TRIM(REGEXP_REPLACE(quantity, '^[0-9]+([.][0-9]+)?', '')))";
+
     public boolean addPantryItem(PantryItem item) {
         String sql = "INSERT INTO pantry (user_id, ingredient_id, quantity, expiry_date) VALUES (?, ?, ?, ?)";
 
@@ -75,6 +80,48 @@ public class PantryDao {
         }
     }
 
+    // 合并后保留的是同一原料、保质期和单位中 id 最小的那一行
+    public PantryItem getMergeTarget(PantryItem item) {
+        String sql = "SELECT id, user_id, ingredient_id, quantity, expiry_date FROM pantry " +
+                    "WHERE user_id = ? AND ingredient_id = ? AND expiry_date <=> ? " +
+                    "AND " + QUANTITY_UNIT + " = " + QUANTITY_UNIT.replace("quantity", "?") + " ORDER BY id LIMIT 1";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, item.getUserId());
+            stmt.setInt(2, item.getIngredientId());
+            if (item.getExpiryDate() != null) {
+                stmt.setDate(3, Date.valueOf(item.getExpiryDate()));
+            } else {
+                stmt.setNull(3, Types.DATE);
+            }
+            stmt.setString(4, item.getQuantity());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    PantryItem target = new PantryItem();
+                    target.setId(rs.getInt("id"));
+                    target.setUserId(rs.getInt("user_id"));
+                    target.setIngredientId(rs.getInt("ingredient_id"));
+                    target.setQuantity(rs.getString("quantity"));
+
+                    Date expiryDate = rs.getDate("expiry_date");
+                    if (expiryDate != null) {
+                        target.setExpiryDate(expiryDate.toLocalDate());
+                    }
+
+                    return target;
+                }
+            }
+            return null;
+
+        } catch (SQLException e) {
+            System.err.println("查询合并后的库存物品失败：" + e.getMessage());
+            return null;
+        }
+    }
+
     public List<PantryItem> getPantryItemsByUser(int userId) {
         List<PantryItem> items = new ArrayList<>();
         String sql = "SELECT id, user_id, ingredient_id, quantity, expiry_date FROM pantry WHERE user_id = ? ORDER BY expiry_date";
@@ -179,6 +226,43 @@ public class PantryDao {
         return items;
     }
 
+    public List<PantryItem> getItemsByExpiryRange(LocalDate startDate, LocalDate endDate,
+                                                  LocalDate afterDate, int afterId, int limit) {
+        List<PantryItem> items = new ArrayList<>();
+        String sql = "SELECT id, user_id, ingredient_id, quantity, expiry_date FROM pantry " +
+                    "WHERE expiry_date BETWEEN ? AND ? " +
+                    "AND (expiry_date > ? OR (expiry_date = ? AND id > ?)) " +
+                    "ORDER BY expiry_date, id LIMIT ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setDate(1, Date.valueOf(startDate));
+            stmt.setDate(2, Date.valueOf(endDate));
+            stmt.setDate(3, Date.valueOf(afterDate));
+            stmt.setDate(4, Date.valueOf(afterDate));
+            stmt.setInt(5, afterId);
+            stmt.setInt(6, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    PantryItem item = new PantryItem();
+                    item.setId(rs.getInt("id"));
+                    item.setUserId(rs.getInt("user_id"));
+                    item.setIngredientId(rs.getInt("ingredient_id"));
+                    item.setQuantity(rs.getString("quantity"));
+                    item.setExpiryDate(rs.getDate("expiry_date").toLocalDate());
+                    items.add(item);
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("按过期日期扫描库存失败：" + e.getMessage());
+            return null;
+        }
+
+        return items;
+    }
+
     public boolean updatePantryItem(PantryItem item) {
         String sql = "UPDATE pantry SET quantity = ?, expiry_date = ? WHERE id = ?";
 
@@ -221,4 +305,68 @@ public class PantryDao {
         }
     }
 
-}
\ No newline at end of file
+    public int consolidatePantry(int userId) {
+        String mergeSql = "UPDATE pantry p JOIN (" +
+                    "SELECT MIN(id) AS keep_id, SUM(" + QUANTITY_NUMBER + ") AS total, " + QUANTITY_UNIT + " AS unit " +
+                    "FROM pantry WHERE user_id = ? AND quantity REGEXP ? " +
+                    "GROUP BY ingredient_id, expiry_date, unit HAVING COUNT(*) > 1" +
+                    ") g ON p.id = g.keep_id " +
+                    "SET p.quantity = CONCAT(TRIM(TRAILING '.' FROM TRIM(TRAILING '0' FROM CAST(g.total AS CHAR))), g.unit)";
+
+        String deleteSql = "DELETE p FROM pantry p JOIN (" +
+                    "SELECT MIN(id) AS keep_id, ingredient_id, expiry_date, " + QUANTITY_UNIT + " AS unit " +
+                    "FROM pantry WHERE user_id = ? AND quantity REGEXP ? " +
+                    "GROUP BY ingredient_id, expiry_date, unit HAVING COUNT(*) > 1" +
+                    ") g ON p.ingredient_id = g.ingredient_id AND p.expiry_date <=> g.expiry_date " +
+                    "AND " + QUANTITY_UNIT.replace("quantity", "p.quantity") + " = g.unit AND p.id <> g.keep_id " +
+                    "WHERE p.user_id = ? AND p.quantity REGEXP ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement mergeStmt = conn.prepareStatement(mergeSql);
+                 PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
+
+                mergeStmt.setInt(1, userId);
+                mergeStmt.setString(2, MERGEABLE_QUANTITY);
+                mergeStmt.executeUpdate();
+
+                deleteStmt.setInt(1, userId);
+                deleteStmt.setString(2, MERGEABLE_QUANTITY);
+                deleteStmt.setInt(3, userId);
+                deleteStmt.setString(4, MERGEABLE_QUANTITY);
+                int removed = deleteStmt.executeUpdate();
+
+                conn.commit();
+                return removed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("合并重复库存失败：" + e.getMessage());
+            return -1;
+        }
+    }
+
+    public List<Integer> getUserIdsWithDuplicateItems() {
+        List<Integer> userIds = new ArrayList<>();
+        String sql = "SELECT DISTINCT user_id FROM pantry GROUP BY user_id, ingredient_id, expiry_date " +
+                    "HAVING COUNT(*) > 1 ORDER BY user_id";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                userIds.add(rs.getInt("user_id"));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("查询重复库存用户失败：" + e.getMessage());
+        }
+
+        return userIds;
+    }
+
+}
@@ -1,17 +1,25 @@
 package com.chang1o.dao;
 
 import com.chang1o.model.UserHealthData;
+import com.chang1o.model.WeightTrend;
 import com.chang1o.util.DBUtil;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class UserHealthDataDao {
 
+    private static final int DEFAULT_HISTORY_POINTS = 24;
+
+    private final WeightTrendDao trendDao = new WeightTrendDao();
+
     public boolean addHealthData(UserHealthData healthData) {
-        String sql = "INSERT INTO user_health_data (user_id, weight, height, age, gender, activity_level, target_weight) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO user_health_data (user_id, weight, height, age, gender, activity_level, target_weight, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        // 显式写入 created_at，趋势增量与按 created_at 重建使用同一个日期
+        LocalDateTime createdAt = LocalDateTime.now();
 
         try (Connection conn = DBUtil.getInstance().getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -23,6 +31,7 @@ public class UserHealthDataDao {
             pstmt.setString(5, healthData.getGender());
             pstmt.setString(6, healthData.getActivityLevel());
             pstmt.setDouble(7, healthData.getTargetWeight());
+            pstmt.setTimestamp(8, Timestamp.valueOf(createdAt));
 
             int affectedRows = pstmt.executeUpdate();
 
@@ -32,6 +41,10 @@ public class UserHealthDataDao {
                         healthData.setId(generatedKeys.getInt(1));
                     }
                 }
+                healthData.setCreatedAt(createdAt);
+                if (!trendDao.addSample(healthData.getUserId(), createdAt.toLocalDate(), healthData.getWeight())) {
+                    rebuildTrend(healthData.getUserId());
+                }
                 return true;
             }
         } catch (SQLException e) {
@@ -107,6 +120,7 @@ public class UserHealthDataDao {
     }
 
     public boolean updateHealthData(UserHealthData healthData) {
+        UserHealthData existing = getHealthDataById(healthData.getId());
         String sql = "UPDATE user_health_data SET weight = ?, height = ?, age = ?, gender = ?, activity_level = ?, target_weight = ? WHERE id = ?";
 
         try (Connection conn = DBUtil.getInstance().getConnection();
@@ -121,6 +135,13 @@ public class UserHealthDataDao {
             pstmt.setInt(7, healthData.getId());
 
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0 && existing != null) {
+                boolean adjusted = existing.getCreatedAt() != null && trendDao.adjustSample(existing.getUserId(),
+                    existing.getCreatedAt().toLocalDate(), existing.getWeight(), healthData.getWeight());
+                if (!adjusted) {
+                    rebuildTrend(existing.getUserId());
+                }
+            }
             return affectedRows > 0;
 
         } catch (SQLException e) {
@@ -132,6 +153,11 @@ public class UserHealthDataDao {
     }
 
     public boolean deleteHealthData(int id) {
+        UserHealthData existing = getHealthDataById(id);
+        if (existing == null) {
+            return false;
+        }
+
         String sql = "DELETE FROM user_health_data WHERE id = ?";
 
         try (Connection conn = DBUtil.getInstance().getConnection();
@@ -140,6 +166,9 @@ public class UserHealthDataDao {
             pstmt.setInt(1, id);
 
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                rebuildTrend(existing.getUserId());
+            }
             return affectedRows > 0;
 
         } catch (SQLException e) {
@@ -172,29 +201,36 @@ public class UserHealthDataDao {
     }
 
     public List<String> getBMIHistory(int userId) {
+        return getBMIHistory(userId, DEFAULT_HISTORY_POINTS);
+    }
+
+    public List<String> getBMIHistory(int userId, int maxPoints) {
         List<String> bmiHistory = new ArrayList<>();
-        String sql = "SELECT created_at, weight, height FROM user_health_data WHERE user_id = ? ORDER BY created_at DESC";
+        // 按时间等分成至多 maxPoints 个桶，每桶取平均，长历史只返回固定数量的点
+        String sql = "SELECT MIN(created_at) AS bucket_start, AVG(weight) AS weight, AVG(height) AS height FROM (" +
+                     "SELECT created_at, weight, height, NTILE(?) OVER (ORDER BY created_at) AS bucket " +
+                     "FROM user_health_data WHERE user_id = ? AND height > 0) t " +
+                     "GROUP BY bucket ORDER BY bucket DESC";
 
         try (Connection conn = DBUtil.getInstance().getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, userId);
+            pstmt.setInt(1, Math.max(1, maxPoints));
+            pstmt.setInt(2, userId);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     double weight = rs.getDouble("weight");
                     double height = rs.getDouble("height");
-                    LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
+                    LocalDateTime createdAt = rs.getTimestamp("bucket_start").toLocalDateTime();
 
-                    if (height > 0) {
-                        double heightInMeters = height / 100.0;
-                        double bmi = weight / (heightInMeters * heightInMeters);
-                        String bmiCategory = getBMICategory(bmi);
+                    double heightInMeters = height / 100.0;
+                    double bmi = weight / (heightInMeters * heightInMeters);
+                    String bmiCategory = getBMICategory(bmi);
 
-                        String record = String.format("%s - BMI: %.1f (%s)",
-                            createdAt.toLocalDate(), bmi, bmiCategory);
-                        bmiHistory.add(record);
-                    }
+                    String record = String.format("%s - BMI: %.1f (%s)",
+                        createdAt.toLocalDate(), bmi, bmiCategory);
+                    bmiHistory.add(record);
                 }
             }
         } catch (SQLException e) {
@@ -205,6 +241,46 @@ public class UserHealthDataDao {
         return bmiHistory;
     }
 
+    public WeightTrend getWeightTrend(int userId) {
+        WeightTrend trend = trendDao.getTrendByUserId(userId);
+        if (trend == null) {
+            trend = rebuildTrend(userId);
+        }
+        return trend;
+    }
+
+    public WeightTrend rebuildTrend(int userId) {
+        String sql = "SELECT created_at, weight FROM user_health_data WHERE user_id = ? ORDER BY created_at";
+        WeightTrend trend = null;
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    LocalDate date = rs.getTimestamp("created_at").toLocalDateTime().toLocalDate();
+                    if (trend == null) {
+                        trend = new WeightTrend(userId, date.toEpochDay());
+                    }
+                    trend.addSample(date, rs.getDouble("weight"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("重建体重趋势时发生错误: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+
+        if (trend != null) {
+            trendDao.saveTrend(trend);
+        } else {
+            trendDao.deleteTrend(userId);
+        }
+        return trend;
+    }
+
     private String getBMICategory(double bmi) {
         if (bmi < 18.5) return "偏瘦";
         if (bmi < 24) return "正常";
@@ -0,0 +1,139 @@
+package com.chang1o.dao;
+
+import com.chang1o.model.WeightTrend;
+import com.chang1o.util.DBUtil;
+
+import java.sql.*;
+import java.time.LocalDate;
+
+public class WeightTrendDao {
+
+    public WeightTrend getTrendByUserId(int userId) {
+        String sql = "SELECT * FROM weight_trend_stats WHERE user_id = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    WeightTrend trend = new WeightTrend(rs.getInt("user_id"), rs.getLong("origin_day"));
+                    trend.setLastDay(rs.getLong("last_day"));
+                    trend.setSampleCount(rs.getInt("sample_count"));
+                    trend.setSumX(rs.getDouble("sum_x"));
+                    trend.setSumY(rs.getDouble("sum_y"));
+                    trend.setSumXY(rs.getDouble("sum_xy"));
+                    trend.setSumXX(rs.getDouble("sum_xx"));
+                    return trend;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("获取体重趋势时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public boolean saveTrend(WeightTrend trend) {
+        String sql = "INSERT INTO weight_trend_stats (user_id, origin_day, last_day, sample_count, sum_x, sum_y, sum_xy, sum_xx) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE origin_day = VALUES(origin_day), last_day = VALUES(last_day), " +
+                     "sample_count = VALUES(sample_count), sum_x = VALUES(sum_x), sum_y = VALUES(sum_y), " +
+                     "sum_xy = VALUES(sum_xy), sum_xx = VALUES(sum_xx)";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, trend.getUserId());
+            pstmt.setLong(2, trend.getOriginDay());
+            pstmt.setLong(3, trend.getLastDay());
+            pstmt.setInt(4, trend.getSampleCount());
+            pstmt.setDouble(5, trend.getSumX());
+            pstmt.setDouble(6, trend.getSumY());
+            pstmt.setDouble(7, trend.getSumXY());
+            pstmt.setDouble(8, trend.getSumXX());
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("保存体重趋势时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public boolean addSample(int userId, LocalDate date, double weight) {
+        String sql = "UPDATE weight_trend_stats SET sample_count = sample_count + 1, " +
+                     "sum_x = sum_x + (? - origin_day), sum_y = sum_y + ?, " +
+                     "sum_xy = sum_xy + (? - origin_day) * ?, sum_xx = sum_xx + (? - origin_day) * (? - origin_day), " +
+                     "last_day = GREATEST(last_day, ?) WHERE user_id = ? AND origin_day <= ?";
+
+        long day = date.toEpochDay();
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, day);
+            pstmt.setDouble(2, weight);
+            pstmt.setLong(3, day);
+            pstmt.setDouble(4, weight);
+            pstmt.setLong(5, day);
+            pstmt.setLong(6, day);
+            pstmt.setLong(7, day);
+            pstmt.setInt(8, userId);
+            pstmt.setLong(9, day);
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("更新体重趋势时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public boolean adjustSample(int userId, LocalDate date, double oldWeight, double newWeight) {
+        String sql = "UPDATE weight_trend_stats SET sum_y = sum_y + ?, sum_xy = sum_xy + (? - origin_day) * ? " +
+                     "WHERE user_id = ? AND origin_day <= ?";
+
+        long day = date.toEpochDay();
+        double delta = newWeight - oldWeight;
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDouble(1, delta);
+            pstmt.setLong(2, day);
+            pstmt.setDouble(3, delta);
+            pstmt.setInt(4, userId);
+            pstmt.setLong(5, day);
+
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("更新体重趋势时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    public boolean deleteTrend(int userId) {
+        String sql = "DELETE FROM weight_trend_stats WHERE user_id = ?";
+
+        try (Connection conn = DBUtil.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            return pstmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("删除体重趋势时发生错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+}
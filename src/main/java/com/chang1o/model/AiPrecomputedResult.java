@@ -0,0 +1,73 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class AiPrecomputedResult {
+
+    private int userId;
+    private String feature;
+    private String promptHash;
+    private String content;
+    private LocalDate generatedFor;
+    private LocalDateTime updatedAt;
+
+    public AiPrecomputedResult() {
+    }
+
+    public AiPrecomputedResult(int userId, String feature, String promptHash, String content, LocalDate generatedFor) {
+        this.userId = userId;
+        this.feature = feature;
+        this.promptHash = promptHash;
+        this.content = content;
+        this.generatedFor = generatedFor;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getFeature() {
+        return feature;
+    }
+
+    public void setFeature(String feature) {
+        this.feature = feature;
+    }
+
+    public String getPromptHash() {
+        return promptHash;
+    }
+
+    public void setPromptHash(String promptHash) {
+        this.promptHash = promptHash;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public LocalDate getGeneratedFor() {
+        return generatedFor;
+    }
+
+    public void setGeneratedFor(LocalDate generatedFor) {
+        this.generatedFor = generatedFor;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,197 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+
+public class AnomalyState {
+
+    public static final int NORMAL = 0;
+    public static final int LOW = -1;
+    public static final int HIGH = 1;
+
+    private static final double ALPHA = 0.2;
+    private static final int WARMUP_SAMPLES = 5;
+    private static final double CUSUM_SLACK = 0.5;
+    private static final double CUSUM_LIMIT = 3.0;
+    private static final double SPIKE_Z = 3.0;
+
+    private int userId;
+    private String metric;
+    private double mean;
+    private double variance;
+    private double cusumLow;
+    private double cusumHigh;
+    private int sampleCount;
+    private LocalDate lastCheckInDate;
+    // 最近一次观测之前的统计量，同一天重新打卡时据此撤销旧观测，无需回看历史
+    private double prevMean;
+    private double prevVariance;
+    private double prevCusumLow;
+    private double prevCusumHigh;
+
+    public AnomalyState() {
+    }
+
+    public AnomalyState(int userId, String metric) {
+        this.userId = userId;
+        this.metric = metric;
+    }
+
+    public int observe(double value, double minStdDev) {
+        prevMean = mean;
+        prevVariance = variance;
+        prevCusumLow = cusumLow;
+        prevCusumHigh = cusumHigh;
+
+        if (sampleCount == 0) {
+            mean = value;
+            variance = 0;
+            sampleCount = 1;
+            return NORMAL;
+        }
+
+        double stdDev = Math.max(Math.sqrt(variance), minStdDev);
+        double z = (value - mean) / stdDev;
+
+        int result = NORMAL;
+        if (sampleCount >= WARMUP_SAMPLES) {
+            cusumLow = Math.max(0, cusumLow - z - CUSUM_SLACK);
+            cusumHigh = Math.max(0, cusumHigh + z - CUSUM_SLACK);
+
+            if (cusumLow > CUSUM_LIMIT || z < -SPIKE_Z) {
+                result = LOW;
+            } else if (cusumHigh > CUSUM_LIMIT || z > SPIKE_Z) {
+                result = HIGH;
+            }
+            if (result != NORMAL) {
+                cusumLow = 0;
+                cusumHigh = 0;
+            }
+        }
+
+        double diff = value - mean;
+        double increment = ALPHA * diff;
+        mean += increment;
+        variance = (1 - ALPHA) * (variance + diff * increment);
+        sampleCount++;
+        return result;
+    }
+
+    public void revertLastObservation() {
+        if (sampleCount == 0) {
+            return;
+        }
+        mean = prevMean;
+        variance = prevVariance;
+        cusumLow = prevCusumLow;
+        cusumHigh = prevCusumHigh;
+        sampleCount--;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public double getVariance() {
+        return variance;
+    }
+
+    public void setVariance(double variance) {
+        this.variance = variance;
+    }
+
+    public double getCusumLow() {
+        return cusumLow;
+    }
+
+    public void setCusumLow(double cusumLow) {
+        this.cusumLow = cusumLow;
+    }
+
+    public double getCusumHigh() {
+        return cusumHigh;
+    }
+
+    public void setCusumHigh(double cusumHigh) {
+        this.cusumHigh = cusumHigh;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public LocalDate getLastCheckInDate() {
+        return lastCheckInDate;
+    }
+
+    public void setLastCheckInDate(LocalDate lastCheckInDate) {
+        this.lastCheckInDate = lastCheckInDate;
+    }
+
+    public double getPrevMean() {
+        return prevMean;
+    }
+
+    public void setPrevMean(double prevMean) {
+        this.prevMean = prevMean;
+    }
+
+    public double getPrevVariance() {
+        return prevVariance;
+    }
+
+    public void setPrevVariance(double prevVariance) {
+        this.prevVariance = prevVariance;
+    }
+
+    public double getPrevCusumLow() {
+        return prevCusumLow;
+    }
+
+    public void setPrevCusumLow(double prevCusumLow) {
+        this.prevCusumLow = prevCusumLow;
+    }
+
+    public double getPrevCusumHigh() {
+        return prevCusumHigh;
+    }
+
+    public void setPrevCusumHigh(double prevCusumHigh) {
+        this.prevCusumHigh = prevCusumHigh;
+    }
+
+    @Override
+    public String toString() {
+        return "AnomalyState{" +
+                "userId=" + userId +
+                ", metric='" + metric + '\'' +
+                ", mean=" + mean +
+                ", variance=" + variance +
+                ", sampleCount=" + sampleCount +
+                ", lastCheckInDate=" + lastCheckInDate +
+                '}';
+    }
+}
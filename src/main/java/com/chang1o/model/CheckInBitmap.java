@@ -0,0 +1,193 @@
+package com.chang1o.model;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class CheckInBitmap {
+
+    private int userId;
+    private long baseDay;
+    private long[] words;
+
+    public CheckInBitmap(int userId) {
+        this.userId = userId;
+        this.baseDay = 0;
+        this.words = new long[0];
+    }
+
+    public CheckInBitmap(int userId, long baseDay, long[] words) {
+        this.userId = userId;
+        this.baseDay = baseDay;
+        this.words = words;
+    }
+
+    public void set(LocalDate date) {
+        long day = date.toEpochDay();
+        ensureCapacity(day);
+        int offset = (int) (day - baseDay);
+        words[offset >>> 6] |= 1L << (offset & 63);
+    }
+
+    public void clear(LocalDate date) {
+        long offset = date.toEpochDay() - baseDay;
+        if (offset >= 0 && (offset >>> 6) < words.length) {
+            words[(int) (offset >>> 6)] &= ~(1L << (offset & 63));
+        }
+    }
+
+    public boolean contains(LocalDate date) {
+        long offset = date.toEpochDay() - baseDay;
+        if (offset < 0 || (offset >>> 6) >= words.length) {
+            return false;
+        }
+        return (words[(int) (offset >>> 6)] & (1L << (offset & 63))) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int countInRange(LocalDate startDate, LocalDate endDate) {
+        long from = Math.max(startDate.toEpochDay() - baseDay, 0);
+        long to = Math.min(endDate.toEpochDay() - baseDay, (long) words.length * 64 - 1);
+        if (from > to) {
+            return 0;
+        }
+
+        int firstWord = (int) (from >>> 6);
+        int lastWord = (int) (to >>> 6);
+        long firstMask = -1L << (from & 63);
+        long lastMask = -1L >>> (63 - (to & 63));
+
+        if (firstWord == lastWord) {
+            return Long.bitCount(words[firstWord] & firstMask & lastMask);
+        }
+
+        int count = Long.bitCount(words[firstWord] & firstMask);
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        count += Long.bitCount(words[lastWord] & lastMask);
+        return count;
+    }
+
+    public int getStreakEndingOn(LocalDate date) {
+        long offset = date.toEpochDay() - baseDay;
+        if (offset < 0 || (offset >>> 6) >= words.length) {
+            return 0;
+        }
+
+        int wordIndex = (int) (offset >>> 6);
+        int bit = (int) (offset & 63);
+        long masked = ~words[wordIndex] & (-1L >>> (63 - bit));
+        if (masked != 0) {
+            return bit - (63 - Long.numberOfLeadingZeros(masked));
+        }
+
+        int streak = bit + 1;
+        for (int i = wordIndex - 1; i >= 0; i--) {
+            if (words[i] == -1L) {
+                streak += 64;
+            } else {
+                streak += Long.numberOfLeadingZeros(~words[i]);
+                break;
+            }
+        }
+        return streak;
+    }
+
+    public int getLongestStreak() {
+        int longest = 0;
+        int carry = 0;
+
+        for (long word : words) {
+            if (word == -1L) {
+                carry += 64;
+                continue;
+            }
+
+            int leading = Long.numberOfTrailingZeros(~word);
+            longest = Math.max(longest, carry + leading);
+            longest = Math.max(longest, longestRunInWord(word));
+            carry = Long.numberOfLeadingZeros(~word);
+        }
+
+        return Math.max(longest, carry);
+    }
+
+    private static int longestRunInWord(long word) {
+        int run = 0;
+        while (word != 0) {
+            word &= word << 1;
+            run++;
+        }
+        return run;
+    }
+
+    private void ensureCapacity(long day) {
+        if (words.length == 0) {
+            baseDay = day & ~63L;
+            words = new long[1];
+        }
+
+        if (day < baseDay) {
+            long newBase = day & ~63L;
+            int shiftWords = (int) ((baseDay - newBase) >>> 6);
+            long[] grown = new long[words.length + shiftWords];
+            System.arraycopy(words, 0, grown, shiftWords, words.length);
+            words = grown;
+            baseDay = newBase;
+        }
+
+        int wordIndex = (int) ((day - baseDay) >>> 6);
+        if (wordIndex >= words.length) {
+            words = Arrays.copyOf(words, Math.max(wordIndex + 1, words.length + words.length / 2));
+        }
+    }
+
+    public byte[] toBytes() {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) {
+            length--;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length * Long.BYTES);
+        for (int i = 0; i < length; i++) {
+            buffer.putLong(words[i]);
+        }
+        return buffer.array();
+    }
+
+    public static CheckInBitmap fromBytes(int userId, long baseDay, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] words = new long[bytes.length / Long.BYTES];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new CheckInBitmap(userId, baseDay, words);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public long getBaseDay() {
+        return baseDay;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckInBitmap{" +
+                "userId=" + userId +
+                ", baseDay=" + LocalDate.ofEpochDay(baseDay) +
+                ", words=" + words.length +
+                ", longestStreak=" + getLongestStreak() +
+                '}';
+    }
+}
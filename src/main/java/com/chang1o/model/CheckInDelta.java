@@ -0,0 +1,96 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+
+public class CheckInDelta {
+
+    private int userId;
+    private LocalDate checkInDate;
+    private int waterIntake;
+    private int exerciseMinutes;
+    private Double sleepHours;
+    private String mood;
+
+    public CheckInDelta(int userId, LocalDate checkInDate) {
+        this.userId = userId;
+        this.checkInDate = checkInDate;
+    }
+
+    public CheckInDelta(int userId, LocalDate checkInDate, int waterIntake, int exerciseMinutes,
+                        Double sleepHours, String mood) {
+        this.userId = userId;
+        this.checkInDate = checkInDate;
+        this.waterIntake = waterIntake;
+        this.exerciseMinutes = exerciseMinutes;
+        this.sleepHours = sleepHours;
+        this.mood = mood;
+    }
+
+    // 饮水、运动按增量累加；睡眠和心情以较新的一次为准
+    public void merge(CheckInDelta newer) {
+        waterIntake += newer.waterIntake;
+        exerciseMinutes += newer.exerciseMinutes;
+        if (newer.sleepHours != null) {
+            sleepHours = newer.sleepHours;
+        }
+        if (newer.mood != null) {
+            mood = newer.mood;
+        }
+    }
+
+    public String toLogLine() {
+        return userId + "\t" + checkInDate + "\t" + waterIntake + "\t" + exerciseMinutes + "\t" +
+               (sleepHours != null ? sleepHours : "") + "\t" + (mood != null ? mood : "");
+    }
+
+    public static CheckInDelta fromLogLine(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("无效的缓冲日志记录: " + line);
+        }
+        return new CheckInDelta(
+            Integer.parseInt(parts[0]),
+            LocalDate.parse(parts[1]),
+            Integer.parseInt(parts[2]),
+            Integer.parseInt(parts[3]),
+            parts[4].isEmpty() ? null : Double.valueOf(parts[4]),
+            parts[5].isEmpty() ? null : parts[5]
+        );
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public LocalDate getCheckInDate() {
+        return checkInDate;
+    }
+
+    public int getWaterIntake() {
+        return waterIntake;
+    }
+
+    public int getExerciseMinutes() {
+        return exerciseMinutes;
+    }
+
+    public Double getSleepHours() {
+        return sleepHours;
+    }
+
+    public String getMood() {
+        return mood;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckInDelta{" +
+                "userId=" + userId +
+                ", checkInDate=" + checkInDate +
+                ", waterIntake=" + waterIntake +
+                ", exerciseMinutes=" + exerciseMinutes +
+                ", sleepHours=" + sleepHours +
+                ", mood='" + mood + '\'' +
+                '}';
+    }
+}
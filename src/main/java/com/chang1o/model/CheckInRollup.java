@@ -0,0 +1,81 @@
+package com.chang1o.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public class CheckInRollup {
+
+    private int userId;
+    private LocalDate checkInDate;
+    private int cumCount;
+    private BigDecimal cumSleep;
+    private long cumWater;
+    private long cumExercise;
+    private long cumMood;
+    private long cumScore;
+
+    public CheckInRollup() {
+    }
+
+    public CheckInRollup(int userId, LocalDate checkInDate, int cumCount, BigDecimal cumSleep, long cumWater,
+                         long cumExercise, long cumMood, long cumScore) {
+        this.userId = userId;
+        this.checkInDate = checkInDate;
+        this.cumCount = cumCount;
+        this.cumSleep = cumSleep;
+        this.cumWater = cumWater;
+        this.cumExercise = cumExercise;
+        this.cumMood = cumMood;
+        this.cumScore = cumScore;
+    }
+
+    public static CheckInRollup empty(int userId) {
+        return new CheckInRollup(userId, null, 0, BigDecimal.ZERO, 0, 0, 0, 0);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public LocalDate getCheckInDate() {
+        return checkInDate;
+    }
+
+    public int getCumCount() {
+        return cumCount;
+    }
+
+    public BigDecimal getCumSleep() {
+        return cumSleep;
+    }
+
+    public long getCumWater() {
+        return cumWater;
+    }
+
+    public long getCumExercise() {
+        return cumExercise;
+    }
+
+    public long getCumMood() {
+        return cumMood;
+    }
+
+    public long getCumScore() {
+        return cumScore;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckInRollup{" +
+                "userId=" + userId +
+                ", checkInDate=" + checkInDate +
+                ", cumCount=" + cumCount +
+                ", cumSleep=" + cumSleep +
+                ", cumWater=" + cumWater +
+                ", cumExercise=" + cumExercise +
+                ", cumMood=" + cumMood +
+                ", cumScore=" + cumScore +
+                '}';
+    }
+}
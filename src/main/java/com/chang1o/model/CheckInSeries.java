@@ -0,0 +1,163 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class CheckInSeries {
+
+    public enum Metric {
+        SLEEP, WATER, EXERCISE, MOOD
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int userId;
+    private int size;
+    private int[] epochDays;
+    private byte[] moods;
+    private short[] sleepTenths;
+    private int[] waterIntakes;
+    private short[] exerciseMinutes;
+
+    public CheckInSeries(int userId) {
+        this.userId = userId;
+        this.epochDays = new int[INITIAL_CAPACITY];
+        this.moods = new byte[INITIAL_CAPACITY];
+        this.sleepTenths = new short[INITIAL_CAPACITY];
+        this.waterIntakes = new int[INITIAL_CAPACITY];
+        this.exerciseMinutes = new short[INITIAL_CAPACITY];
+    }
+
+    public void append(LocalDate date, int moodScore, double sleepHours, int waterIntake, int exercise) {
+        if (size == epochDays.length) {
+            int capacity = size + (size >> 1);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            moods = Arrays.copyOf(moods, capacity);
+            sleepTenths = Arrays.copyOf(sleepTenths, capacity);
+            waterIntakes = Arrays.copyOf(waterIntakes, capacity);
+            exerciseMinutes = Arrays.copyOf(exerciseMinutes, capacity);
+        }
+
+        epochDays[size] = (int) date.toEpochDay();
+        moods[size] = (byte) moodScore;
+        sleepTenths[size] = (short) Math.round(sleepHours * 10);
+        waterIntakes[size] = waterIntake;
+        exerciseMinutes[size] = (short) exercise;
+        size++;
+    }
+
+    public double[] rollingAverage(Metric metric, int window) {
+        double[] values = column(metric, 0, size);
+        double[] averages = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+            if (i >= window) {
+                sum -= values[i - window];
+            }
+            averages[i] = sum / Math.min(i + 1, window);
+        }
+        return averages;
+    }
+
+    public double trendPerDay(Metric metric, int lastN) {
+        int from = Math.max(0, size - lastN);
+        int n = size - from;
+        if (n < 2) {
+            return 0;
+        }
+
+        double[] values = column(metric, from, size);
+        double origin = epochDays[from];
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for (int i = 0; i < n; i++) {
+            double x = epochDays[from + i] - origin;
+            double y = values[i];
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+    }
+
+    public double correlation(Metric first, Metric second) {
+        if (size < 2) {
+            return 0;
+        }
+
+        double[] xs = column(first, 0, size);
+        double[] ys = column(second, 0, size);
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0, sumYY = 0;
+        for (int i = 0; i < size; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+            sumYY += y * y;
+        }
+
+        double covariance = size * sumXY - sumX * sumY;
+        double variance = (size * sumXX - sumX * sumX) * (size * sumYY - sumY * sumY);
+        return variance <= 0 ? 0 : covariance / Math.sqrt(variance);
+    }
+
+    /**
+     * 把 [from, to) 区间的一列转换成 double[]，每次聚合只调用一次。
+     * 按指标分支在循环外，循环体是对紧凑数组的逐元素拓宽转换，可被向量化；只复制需要的区间。
+     */
+    public double[] column(Metric metric, int from, int to) {
+        double[] values = new double[to - from];
+        switch (metric) {
+            case SLEEP:
+                for (int i = from; i < to; i++) {
+                    values[i - from] = sleepTenths[i] / 10.0;
+                }
+                break;
+            case WATER:
+                for (int i = from; i < to; i++) {
+                    values[i - from] = waterIntakes[i];
+                }
+                break;
+            case EXERCISE:
+                for (int i = from; i < to; i++) {
+                    values[i - from] = exerciseMinutes[i];
+                }
+                break;
+            case MOOD:
+                for (int i = from; i < to; i++) {
+                    values[i - from] = moods[i];
+                }
+                break;
+        }
+        return values;
+    }
+
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(epochDays[index]);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckInSeries{" +
+                "userId=" + userId +
+                ", size=" + size +
+                '}';
+    }
+}
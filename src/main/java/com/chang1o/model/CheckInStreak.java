@@ -0,0 +1,67 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+
+public class CheckInStreak {
+
+    private int userId;
+    private int currentStreak;
+    private int longestStreak;
+    private LocalDate lastCheckInDate;
+
+    public CheckInStreak() {
+    }
+
+    public CheckInStreak(int userId, int currentStreak, int longestStreak, LocalDate lastCheckInDate) {
+        this.userId = userId;
+        this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.lastCheckInDate = lastCheckInDate;
+    }
+
+    public int getStreakEndingOn(LocalDate date) {
+        return date.equals(lastCheckInDate) ? currentStreak : 0;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    public void setCurrentStreak(int currentStreak) {
+        this.currentStreak = currentStreak;
+    }
+
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+
+    public void setLongestStreak(int longestStreak) {
+        this.longestStreak = longestStreak;
+    }
+
+    public LocalDate getLastCheckInDate() {
+        return lastCheckInDate;
+    }
+
+    public void setLastCheckInDate(LocalDate lastCheckInDate) {
+        this.lastCheckInDate = lastCheckInDate;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckInStreak{" +
+                "userId=" + userId +
+                ", currentStreak=" + currentStreak +
+                ", longestStreak=" + longestStreak +
+                ", lastCheckInDate=" + lastCheckInDate +
+                '}';
+    }
+}
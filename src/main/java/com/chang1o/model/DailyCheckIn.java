@@ -42,7 +42,11 @@ public class DailyCheckIn {
     }
 
 
+    // 只记了饮水或运动的打卡行没有心情，按“未记录”处理，评分与 DailyCheckInDao.MOOD_SCORE_SQL 一致取 3
     public String getMoodDescription() {
+        if (mood == null) {
+            return "未记录";
+        }
         switch (mood) {
             case "great": return "非常好";
             case "good": return "好";
@@ -54,6 +58,9 @@ public class DailyCheckIn {
     }
 
     public int getMoodScore() {
+        if (mood == null) {
+            return 3;
+        }
         switch (mood) {
             case "great": return 5;
             case "good": return 4;
@@ -0,0 +1,103 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class ExpiryNotice {
+
+    private int id;
+    private int userId;
+    private int pantryId;
+    private int ingredientId;
+    private LocalDate expiryDate;
+    private int daysLeft;
+    private boolean read;
+    private LocalDateTime createdAt;
+
+    public ExpiryNotice() {
+    }
+
+    public ExpiryNotice(int userId, int pantryId, int ingredientId, LocalDate expiryDate, int daysLeft) {
+        this.userId = userId;
+        this.pantryId = pantryId;
+        this.ingredientId = ingredientId;
+        this.expiryDate = expiryDate;
+        this.daysLeft = daysLeft;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getPantryId() {
+        return pantryId;
+    }
+
+    public void setPantryId(int pantryId) {
+        this.pantryId = pantryId;
+    }
+
+    public int getIngredientId() {
+        return ingredientId;
+    }
+
+    public void setIngredientId(int ingredientId) {
+        this.ingredientId = ingredientId;
+    }
+
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(LocalDate expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    public int getDaysLeft() {
+        return daysLeft;
+    }
+
+    public void setDaysLeft(int daysLeft) {
+        this.daysLeft = daysLeft;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+    public void setRead(boolean read) {
+        this.read = read;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ExpiryNotice{" +
+                "id=" + id +
+                ", userId=" + userId +
+                ", pantryId=" + pantryId +
+                ", expiryDate=" + expiryDate +
+                ", daysLeft=" + daysLeft +
+                ", read=" + read +
+                '}';
+    }
+}
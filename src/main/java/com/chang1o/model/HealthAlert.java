@@ -0,0 +1,123 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class HealthAlert {
+
+    private int id;
+    private int userId;
+    private String metric;
+    private LocalDate alertDate;
+    private String direction;
+    private double observedValue;
+    private double baselineValue;
+    private String message;
+    private boolean read;
+    private LocalDateTime createdAt;
+
+    public HealthAlert() {
+    }
+
+    public HealthAlert(int userId, String metric, LocalDate alertDate, String direction,
+                       double observedValue, double baselineValue, String message) {
+        this.userId = userId;
+        this.metric = metric;
+        this.alertDate = alertDate;
+        this.direction = direction;
+        this.observedValue = observedValue;
+        this.baselineValue = baselineValue;
+        this.message = message;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public LocalDate getAlertDate() {
+        return alertDate;
+    }
+
+    public void setAlertDate(LocalDate alertDate) {
+        this.alertDate = alertDate;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+
+    public double getObservedValue() {
+        return observedValue;
+    }
+
+    public void setObservedValue(double observedValue) {
+        this.observedValue = observedValue;
+    }
+
+    public double getBaselineValue() {
+        return baselineValue;
+    }
+
+    public void setBaselineValue(double baselineValue) {
+        this.baselineValue = baselineValue;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+    public void setRead(boolean read) {
+        this.read = read;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "HealthAlert{" +
+                "userId=" + userId +
+                ", metric='" + metric + '\'' +
+                ", alertDate=" + alertDate +
+                ", direction='" + direction + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+
+public class JobWatermark {
+
+    private String jobName;
+    private LocalDate runDate;
+    private LocalDate lastDate;
+    private int lastId;
+
+    public JobWatermark() {
+    }
+
+    public JobWatermark(String jobName, LocalDate runDate, LocalDate lastDate, int lastId) {
+        this.jobName = jobName;
+        this.runDate = runDate;
+        this.lastDate = lastDate;
+        this.lastId = lastId;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public LocalDate getRunDate() {
+        return runDate;
+    }
+
+    public void setRunDate(LocalDate runDate) {
+        this.runDate = runDate;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public void setLastDate(LocalDate lastDate) {
+        this.lastDate = lastDate;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+
+    @Override
+    public String toString() {
+        return "JobWatermark{" +
+                "jobName='" + jobName + '\'' +
+                ", runDate=" + runDate +
+                ", lastDate=" + lastDate +
+                ", lastId=" + lastId +
+                '}';
+    }
+}
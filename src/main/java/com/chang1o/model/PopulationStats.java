@@ -0,0 +1,169 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PopulationStats {
+
+    private static final int ACTIVE_WINDOW_DAYS = 30;
+
+    private final LocalDate asOfDate;
+
+    private long userCount;
+    private long checkInCount;
+    private long sumHealthScore;
+    private double sumSleepHours;
+    private long sumWaterIntake;
+    private long sumExerciseMinutes;
+    private final long[] moodCounts = new long[5];
+    private final Map<YearMonth, CohortStats> cohorts = new TreeMap<>();
+
+    private int currentUserId = -1;
+    private LocalDate currentFirstDate;
+    private LocalDate currentLastDate;
+    private int currentCheckIns;
+    private long currentHealthScore;
+
+    public PopulationStats(LocalDate asOfDate) {
+        this.asOfDate = asOfDate;
+    }
+
+    // 行需按 user_id, check_in_date 排序传入，同一用户的行必须落在同一个分区
+    public void accept(int userId, LocalDate date, int moodScore, double sleepHours,
+                       int waterIntake, int exerciseMinutes, int healthScore) {
+        if (userId != currentUserId) {
+            finishUser();
+            currentUserId = userId;
+            currentFirstDate = date;
+            currentCheckIns = 0;
+            currentHealthScore = 0;
+        }
+
+        currentLastDate = date;
+        currentCheckIns++;
+        currentHealthScore += healthScore;
+
+        checkInCount++;
+        sumHealthScore += healthScore;
+        sumSleepHours += sleepHours;
+        sumWaterIntake += waterIntake;
+        sumExerciseMinutes += exerciseMinutes;
+        moodCounts[Math.min(5, Math.max(1, moodScore)) - 1]++;
+    }
+
+    public void finishUser() {
+        if (currentUserId < 0) {
+            return;
+        }
+
+        userCount++;
+        long span = Math.max(1, asOfDate.toEpochDay() - currentFirstDate.toEpochDay() + 1);
+        boolean active = currentLastDate.toEpochDay() > asOfDate.toEpochDay() - ACTIVE_WINDOW_DAYS;
+
+        CohortStats cohort = cohorts.computeIfAbsent(YearMonth.from(currentFirstDate), CohortStats::new);
+        cohort.users++;
+        cohort.checkIns += currentCheckIns;
+        cohort.sumHealthScore += currentHealthScore;
+        cohort.sumCheckInRate += (double) currentCheckIns / span;
+        if (active) {
+            cohort.activeUsers++;
+        }
+
+        currentUserId = -1;
+    }
+
+    public PopulationStats merge(PopulationStats other) {
+        finishUser();
+        other.finishUser();
+
+        userCount += other.userCount;
+        checkInCount += other.checkInCount;
+        sumHealthScore += other.sumHealthScore;
+        sumSleepHours += other.sumSleepHours;
+        sumWaterIntake += other.sumWaterIntake;
+        sumExerciseMinutes += other.sumExerciseMinutes;
+        for (int i = 0; i < moodCounts.length; i++) {
+            moodCounts[i] += other.moodCounts[i];
+        }
+        for (CohortStats cohort : other.cohorts.values()) {
+            cohorts.computeIfAbsent(cohort.month, CohortStats::new).merge(cohort);
+        }
+        return this;
+    }
+
+    public LocalDate getAsOfDate() {
+        return asOfDate;
+    }
+
+    public long getUserCount() {
+        return userCount;
+    }
+
+    public long getCheckInCount() {
+        return checkInCount;
+    }
+
+    public double getAvgHealthScore() {
+        return checkInCount > 0 ? (double) sumHealthScore / checkInCount : 0;
+    }
+
+    public double getAvgSleepHours() {
+        return checkInCount > 0 ? sumSleepHours / checkInCount : 0;
+    }
+
+    public double getAvgWaterIntake() {
+        return checkInCount > 0 ? (double) sumWaterIntake / checkInCount : 0;
+    }
+
+    public double getAvgExerciseMinutes() {
+        return checkInCount > 0 ? (double) sumExerciseMinutes / checkInCount : 0;
+    }
+
+    public long getMoodCount(int moodScore) {
+        return moodCounts[moodScore - 1];
+    }
+
+    public Map<YearMonth, CohortStats> getCohorts() {
+        return cohorts;
+    }
+
+    public static class CohortStats {
+        private final YearMonth month;
+        private long users;
+        private long activeUsers;
+        private long checkIns;
+        private long sumHealthScore;
+        private double sumCheckInRate;
+
+        public CohortStats(YearMonth month) {
+            this.month = month;
+        }
+
+        private void merge(CohortStats other) {
+            users += other.users;
+            activeUsers += other.activeUsers;
+            checkIns += other.checkIns;
+            sumHealthScore += other.sumHealthScore;
+            sumCheckInRate += other.sumCheckInRate;
+        }
+
+        public YearMonth getMonth() { return month; }
+        public long getUsers() { return users; }
+        public long getActiveUsers() { return activeUsers; }
+        public long getCheckIns() { return checkIns; }
+
+        public double getAvgHealthScore() {
+            return checkIns > 0 ? (double) sumHealthScore / checkIns : 0;
+        }
+
+        public double getAvgCheckInRate() {
+            return users > 0 ? sumCheckInRate / users : 0;
+        }
+
+        public double getRetentionRate() {
+            return users > 0 ? (double) activeUsers / users : 0;
+        }
+    }
+}
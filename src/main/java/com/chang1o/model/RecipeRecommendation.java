@@ -0,0 +1,86 @@
+package com.chang1o.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecipeRecommendation {
+
+    private String name;
+    private String reason;
+    private int calories;
+    private List<String> ingredients = new ArrayList<>();
+    private int recipeId;
+
+    public RecipeRecommendation() {
+    }
+
+    public RecipeRecommendation(String name, String reason, int calories) {
+        this.name = name;
+        this.reason = reason;
+        this.calories = calories;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public int getCalories() {
+        return calories;
+    }
+
+    public void setCalories(int calories) {
+        this.calories = calories;
+    }
+
+    public List<String> getIngredients() {
+        return ingredients;
+    }
+
+    public void setIngredients(List<String> ingredients) {
+        this.ingredients = ingredients;
+    }
+
+    public void addIngredient(String ingredient) {
+        ingredients.add(ingredient);
+    }
+
+    // 0 表示食谱库中没有同名食谱
+    public int getRecipeId() {
+        return recipeId;
+    }
+
+    public void setRecipeId(int recipeId) {
+        this.recipeId = recipeId;
+    }
+
+    public boolean isInLibrary() {
+        return recipeId > 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(name);
+        if (calories > 0) {
+            text.append("（约").append(calories).append("千卡）");
+        }
+        if (isInLibrary()) {
+            text.append(" [食谱库 #").append(recipeId).append("]");
+        }
+        if (reason != null && !reason.isEmpty()) {
+            text.append(" - ").append(reason);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,155 @@
+package com.chang1o.model;
+
+import java.time.LocalDate;
+
+public class WeightTrend {
+
+    private static final int MAX_PROJECTION_DAYS = 3650;
+
+    private int userId;
+    private long originDay;
+    private long lastDay;
+    private int sampleCount;
+    private double sumX;
+    private double sumY;
+    private double sumXY;
+    private double sumXX;
+
+    public WeightTrend() {
+    }
+
+    public WeightTrend(int userId, long originDay) {
+        this.userId = userId;
+        this.originDay = originDay;
+        this.lastDay = originDay;
+    }
+
+    public void addSample(LocalDate date, double weight) {
+        double x = date.toEpochDay() - originDay;
+        sampleCount++;
+        sumX += x;
+        sumY += weight;
+        sumXY += x * weight;
+        sumXX += x * x;
+        lastDay = Math.max(lastDay, date.toEpochDay());
+    }
+
+    public boolean hasTrend() {
+        return sampleCount >= 2 && sampleCount * sumXX - sumX * sumX > 0;
+    }
+
+    public double getSlopePerDay() {
+        if (!hasTrend()) {
+            return 0;
+        }
+        return (sampleCount * sumXY - sumX * sumY) / (sampleCount * sumXX - sumX * sumX);
+    }
+
+    public double getSlopePerWeek() {
+        return getSlopePerDay() * 7;
+    }
+
+    public double predictWeight(LocalDate date) {
+        if (sampleCount == 0) {
+            return 0;
+        }
+        double slope = getSlopePerDay();
+        double intercept = (sumY - slope * sumX) / sampleCount;
+        return intercept + slope * (date.toEpochDay() - originDay);
+    }
+
+    public LocalDate projectTargetDate(double targetWeight) {
+        if (!hasTrend() || targetWeight <= 0) {
+            return null;
+        }
+
+        LocalDate lastDate = getLastDate();
+        double current = predictWeight(lastDate);
+        double slope = getSlopePerDay();
+        double remaining = targetWeight - current;
+        if (remaining == 0 || Math.signum(remaining) != Math.signum(slope)) {
+            return remaining == 0 ? lastDate : null;
+        }
+
+        double days = Math.ceil(remaining / slope);
+        return days > MAX_PROJECTION_DAYS ? null : lastDate.plusDays((long) days);
+    }
+
+    public LocalDate getLastDate() {
+        return LocalDate.ofEpochDay(lastDay);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public long getOriginDay() {
+        return originDay;
+    }
+
+    public void setOriginDay(long originDay) {
+        this.originDay = originDay;
+    }
+
+    public long getLastDay() {
+        return lastDay;
+    }
+
+    public void setLastDay(long lastDay) {
+        this.lastDay = lastDay;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public double getSumX() {
+        return sumX;
+    }
+
+    public void setSumX(double sumX) {
+        this.sumX = sumX;
+    }
+
+    public double getSumY() {
+        return sumY;
+    }
+
+    public void setSumY(double sumY) {
+        this.sumY = sumY;
+    }
+
+    public double getSumXY() {
+        return sumXY;
+    }
+
+    public void setSumXY(double sumXY) {
+        this.sumXY = sumXY;
+    }
+
+    public double getSumXX() {
+        return sumXX;
+    }
+
+    public void setSumXX(double sumXX) {
+        this.sumXX = sumXX;
+    }
+
+    @Override
+    public String toString() {
+        return "WeightTrend{" +
+                "userId=" + userId +
+                ", sampleCount=" + sampleCount +
+                ", slopePerWeek=" + getSlopePerWeek() +
+                ", lastDate=" + getLastDate() +
+                '}';
+    }
+}
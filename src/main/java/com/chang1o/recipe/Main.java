@@ -6,6 +6,13 @@ import com.chang1o.controller.RecipeController;
 import com.chang1o.controller.PantryController;
 import com.chang1o.controller.AIController;
 import com.chang1o.controller.DataExportController;
+import com.chang1o.service.AiBenchmarkService;
+import com.chang1o.service.AiPrecomputeService;
+import com.chang1o.service.ApiService;
+import com.chang1o.service.CheckInWriteBuffer;
+import com.chang1o.service.ExpirySweepService;
+import com.chang1o.service.PantryService;
+import com.chang1o.service.PopulationAnalyticsService;
 import com.chang1o.ui.ConsoleUI;
 import com.chang1o.ui.MenuManager;
 import com.chang1o.session.SessionManager;
@@ -22,6 +29,12 @@ public class Main {
 
     public static void main(String[] args) {
         initializeSystemData();
+
+        if (args.length > 0 && runBackgroundJob(args[0])) {
+            return;
+        }
+
+        startBackgroundJobs();
         ConsoleUI.showWelcomeMessage();
 
         while (sessionManager.isRunning()) {
@@ -89,10 +102,68 @@ public class Main {
             }
         }
 
+        CheckInWriteBuffer.getInstance().stop();
         ConsoleUI.showExitMessage();
         sessionManager.close();
     }
 
+    private static boolean runBackgroundJob(String command) {
+        switch (command) {
+            case "--expiry-sweep":
+                System.out.println(new ExpirySweepService().runSweep());
+                return true;
+            case "--consolidate-pantry":
+                System.out.println("已合并重复库存记录：" + new PantryService().consolidateAllPantries() + "条");
+                return true;
+            case "--population-report":
+                System.out.println(new PopulationAnalyticsService().generateReport());
+                return true;
+            case "--precompute-ai":
+                System.out.println(new AiPrecomputeService().runPrecompute());
+                return true;
+            case "--ai-benchmark":
+                AiBenchmarkService benchmark = new AiBenchmarkService(
+                    readPositiveEnv("AI_BENCHMARK_REQUESTS", 100), readPositiveEnv("AI_BENCHMARK_CONCURRENCY", 8));
+                benchmark.runBenchmark(readPositiveEnv("AI_BENCHMARK_USER_ID", 1)).forEach(System.out::println);
+                ApiService.stopFakeServer();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int readPositiveEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            System.out.println("[警告] " + name + " 配置无效，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static void startBackgroundJobs() {
+        CheckInWriteBuffer.getInstance().start();
+
+        String interval = System.getenv("EXPIRY_SWEEP_INTERVAL_MINUTES");
+        if (interval == null || interval.isEmpty()) {
+            return;
+        }
+
+        try {
+            long minutes = Long.parseLong(interval.trim());
+            if (minutes > 0) {
+                new ExpirySweepService().startPeriodicSweep(minutes);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("[警告] EXPIRY_SWEEP_INTERVAL_MINUTES 配置无效，已跳过过期巡检");
+        }
+    }
+
     private static void initializeSystemData() {
         try {
             com.chang1o.util.DBUtil dbUtil = com.chang1o.util.DBUtil.getInstance();
@@ -0,0 +1,173 @@
+package com.chang1o.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 链路基准测试：对每个功能分别以非流式和流式（有流式入口的功能）发出固定数量的请求，限定并发，
+ * 统计吞吐、成功率与延迟分位数（流式另计首字延迟）。
+ * 提示词取指定用户的真实数据、由线上同一套构造器生成，食谱推荐走结构化输出并计入解析；
+ * 只在启用本地模拟服务（api.fake.enabled）时运行，避免压测真实服务商产生费用；
+ * 请求经过路由、限流与熔断，模拟服务商使用独立的 api.fake.rate.limit.* 限流（默认很宽松），
+ * 开始时打印实际生效的限流设置，结束时打印模拟服务端收到的请求数，便于区分重试、对冲带来的额外请求。
+ */
+public class AiBenchmarkService {
+
+    private static final int DEFAULT_REQUESTS = 100;
+    private static final int DEFAULT_CONCURRENCY = 8;
+
+    private final ApiService apiService;
+    private final int requests;
+    private final int concurrency;
+
+    public AiBenchmarkService() {
+        this(DEFAULT_REQUESTS, DEFAULT_CONCURRENCY);
+    }
+
+    public AiBenchmarkService(int requests, int concurrency) {
+        this.apiService = new ApiService();
+        this.requests = Math.max(1, requests);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public List<BenchmarkResult> runBenchmark(int userId) {
+        List<BenchmarkResult> results = new ArrayList<>();
+        if (!ApiService.isFakeProviderEnabled()) {
+            System.out.println("[警告] 未启用本地模拟AI服务（api.fake.enabled），为避免产生真实调用费用已跳过基准测试");
+            return results;
+        }
+
+        for (AiProvider provider : ApiService.getProviders()) {
+            System.out.println("[提示] " + provider.getName() + " 限流设置：" + provider.getRateLimiter());
+        }
+
+        long requestsBefore = ApiService.getFakeRequestCount();
+        for (AiResponseCache.Feature feature : AiResponseCache.Feature.values()) {
+            String prompt = apiService.buildBenchmarkPrompt(userId, feature);
+            if (prompt == null) {
+                System.out.println("[警告] 用户 " + userId + " 缺少健康档案或近期打卡，无法构造真实提示词，已跳过基准测试");
+                return results;
+            }
+
+            results.add(run(feature, prompt, false));
+            if (ApiService.isStreamingFeature(feature)) {
+                results.add(run(feature, prompt, true));
+            }
+        }
+        System.out.println("[提示] 模拟服务端共收到请求 " + (ApiService.getFakeRequestCount() - requestsBefore) + " 次");
+        return results;
+    }
+
+    private BenchmarkResult run(AiResponseCache.Feature feature, String prompt, boolean stream) {
+        BenchmarkResult result = new BenchmarkResult(feature.getDescription() + (stream ? "(流式)" : ""), requests);
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<?>> calls = new ArrayList<>(requests);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < requests; i++) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            long issued = System.nanoTime();
+            CompletableFuture<Void> call;
+            if (stream) {
+                AtomicLong firstDelta = new AtomicLong();
+                call = apiService.benchmarkStreamAsync(prompt, delta -> firstDelta.compareAndSet(0, System.nanoTime()))
+                        .handle((success, e) -> {
+                            result.record(e == null && Boolean.TRUE.equals(success), issued,
+                                    firstDelta.get() > 0 ? firstDelta.get() : 0);
+                            return null;
+                        });
+            } else {
+                call = apiService.benchmarkCallAsync(feature, prompt)
+                        .handle((response, e) -> {
+                            result.record(e == null && response != null, issued, 0);
+                            return null;
+                        });
+            }
+            calls.add(call.whenComplete((ignored, e) -> permits.release()));
+        }
+
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+        result.finish(System.nanoTime() - start);
+        return result;
+    }
+
+    public static class BenchmarkResult {
+        private final String name;
+        private final long[] latencies;
+        private final long[] firstDeltaLatencies;
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger firstDeltas = new AtomicInteger();
+        private long elapsedMillis;
+
+        private BenchmarkResult(String name, int requests) {
+            this.name = name;
+            this.latencies = new long[requests];
+            this.firstDeltaLatencies = new long[requests];
+        }
+
+        private void record(boolean success, long issuedNanos, long firstDeltaNanos) {
+            long now = System.nanoTime();
+            if (success) {
+                succeeded.incrementAndGet();
+            }
+            latencies[recorded.getAndIncrement()] = TimeUnit.NANOSECONDS.toMillis(now - issuedNanos);
+            if (firstDeltaNanos > 0) {
+                firstDeltaLatencies[firstDeltas.getAndIncrement()] = TimeUnit.NANOSECONDS.toMillis(firstDeltaNanos - issuedNanos);
+            }
+        }
+
+        private void finish(long elapsedNanos) {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            Arrays.sort(latencies, 0, recorded.get());
+            Arrays.sort(firstDeltaLatencies, 0, firstDeltas.get());
+        }
+
+        public String getName() { return name; }
+        public int getRequests() { return recorded.get(); }
+        public int getSucceeded() { return succeeded.get(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public double getThroughput() {
+            return elapsedMillis > 0 ? recorded.get() * 1000.0 / elapsedMillis : recorded.get();
+        }
+
+        public long getLatencyPercentile(double percentile) {
+            return percentile(latencies, recorded.get(), percentile);
+        }
+
+        public long getFirstDeltaPercentile(double percentile) {
+            return percentile(firstDeltaLatencies, firstDeltas.get(), percentile);
+        }
+
+        private static long percentile(long[] sorted, int count, double percentile) {
+            if (count == 0) {
+                return -1;
+            }
+            return sorted[Math.max(0, (int) Math.ceil(count * percentile) - 1)];
+        }
+
+        @Override
+        public String toString() {
+            String summary = String.format("%s - 请求: %d, 成功: %d, 吞吐: %.1f次/秒, p50: %dms, p95: %dms, p99: %dms, 最大: %dms",
+                name, getRequests(), getSucceeded(), getThroughput(), getLatencyPercentile(0.5),
+                getLatencyPercentile(0.95), getLatencyPercentile(0.99), getLatencyPercentile(1.0));
+            if (firstDeltas.get() > 0) {
+                summary += String.format(", 首字p50: %dms, 首字p95: %dms", getFirstDeltaPercentile(0.5), getFirstDeltaPercentile(0.95));
+            }
+            return summary;
+        }
+    }
+}
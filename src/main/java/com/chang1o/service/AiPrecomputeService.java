@@ -0,0 +1,218 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.AiPrecomputedResultDao;
+import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.dao.JobWatermarkDao;
+import com.chang1o.model.AiPrecomputedResult;
+import com.chang1o.model.JobWatermark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 夜间批量预生成 AI 健康建议与营养分析，用户登录后直接读取。
+ * 只处理上次完整运行以来有新打卡的用户，按用户ID分页并在每页后保存水位，中断后从水位继续；
+ * 提示词指纹与已保存结果一致的用户跳过模型调用，重复运行不会产生额外开销。
+ * 模型调用走与实时请求相同的限流与熔断，并发数由工作线程数限定。
+ */
+public class AiPrecomputeService {
+
+    public static final String JOB_NAME = "ai_precompute";
+
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int DEFAULT_WORKERS = 4;
+
+    private static final AiResponseCache.Feature[] FEATURES = {
+        AiResponseCache.Feature.HEALTH_ADVICE,
+        AiResponseCache.Feature.NUTRITION_ANALYSIS
+    };
+
+    private enum Outcome {
+        GENERATED, UNCHANGED, SKIPPED, FAILED
+    }
+
+    private final ApiService apiService;
+    private final DailyCheckInDao dailyCheckInDao;
+    private final AiPrecomputedResultDao precomputedResultDao;
+    private final JobWatermarkDao jobWatermarkDao;
+
+    private final int pageSize;
+    private final int workers;
+
+    public AiPrecomputeService() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_WORKERS);
+    }
+
+    public AiPrecomputeService(int pageSize, int workers) {
+        this.apiService = new ApiService();
+        this.dailyCheckInDao = new DailyCheckInDao();
+        this.precomputedResultDao = new AiPrecomputedResultDao();
+        this.jobWatermarkDao = new JobWatermarkDao();
+        this.pageSize = pageSize;
+        this.workers = Math.max(1, workers);
+    }
+
+    public PrecomputeMetrics runPrecompute() {
+        LocalDate today = LocalDate.now();
+
+        // last_date 记录本轮扫描的起始日期；当天未跑完时 last_id 是已处理到的用户
+        JobWatermark watermark = jobWatermarkDao.getWatermark(JOB_NAME);
+        LocalDate since = today.minusDays(1);
+        int cursor = 0;
+        if (watermark != null && watermark.getLastDate() != null) {
+            since = watermark.getLastDate();
+            cursor = today.equals(watermark.getRunDate()) ? watermark.getLastId() : 0;
+        }
+        watermark = new JobWatermark(JOB_NAME, today, since, cursor);
+
+        PrecomputeMetrics metrics = new PrecomputeMetrics();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "ai-precompute-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            while (true) {
+                List<Integer> page = dailyCheckInDao.getUserIdsWithCheckInsSince(since, watermark.getLastId(), pageSize);
+
+                if (page == null) {
+                    metrics.failed = true;
+                    break;
+                }
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                metrics.pages.incrementAndGet();
+                if (!processPage(pool, page, today, metrics)) {
+                    metrics.failed = true;
+                    break;
+                }
+
+                watermark.setLastId(page.get(page.size() - 1));
+                jobWatermarkDao.saveWatermark(watermark);
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 有用户失败时不推进起始日期，下次运行会重新覆盖他们，已成功的用户按指纹跳过
+        if (!metrics.failed) {
+            LocalDate nextSince = metrics.getFailedCalls() == 0 ? today : since;
+            jobWatermarkDao.saveWatermark(new JobWatermark(JOB_NAME, today, nextSince, 0));
+        }
+
+        metrics.finish();
+        return metrics;
+    }
+
+    private boolean processPage(ExecutorService pool, List<Integer> page, LocalDate today, PrecomputeMetrics metrics) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Integer userId : page) {
+            futures.add(pool.submit(() -> precomputeUser(userId, today, metrics)));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                System.err.println("AI预生成任务执行失败：" + e.getCause().getMessage());
+                metrics.failedCalls.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private void precomputeUser(int userId, LocalDate today, PrecomputeMetrics metrics) {
+        metrics.users.incrementAndGet();
+        for (AiResponseCache.Feature feature : FEATURES) {
+            switch (precompute(userId, feature, today)) {
+                case GENERATED:
+                    metrics.generated.incrementAndGet();
+                    break;
+                case UNCHANGED:
+                    metrics.unchanged.incrementAndGet();
+                    break;
+                case SKIPPED:
+                    metrics.skipped.incrementAndGet();
+                    break;
+                default:
+                    metrics.failedCalls.incrementAndGet();
+                    break;
+            }
+        }
+    }
+
+    private Outcome precompute(int userId, AiResponseCache.Feature feature, LocalDate today) {
+        String prompt = apiService.buildPrecomputePrompt(userId, feature);
+        if (prompt == null) {
+            return Outcome.SKIPPED;
+        }
+
+        String promptHash = ApiService.promptHash(feature, prompt);
+        AiPrecomputedResult existing = precomputedResultDao.getResult(userId, feature.name());
+        if (existing != null && promptHash.equals(existing.getPromptHash())) {
+            // 顺延日期，登录提示按 generated_for 判断今天是否有可用结果
+            if (!today.equals(existing.getGeneratedFor())
+                    && !precomputedResultDao.markGeneratedFor(userId, feature.name(), promptHash, today)) {
+                return Outcome.FAILED;
+            }
+            return Outcome.UNCHANGED;
+        }
+
+        String content = apiService.completePromptAsync(feature, prompt).join();
+        if (content == null) {
+            return Outcome.FAILED;
+        }
+
+        AiPrecomputedResult result = new AiPrecomputedResult(userId, feature.name(), promptHash, content, today);
+        return precomputedResultDao.saveResult(result) ? Outcome.GENERATED : Outcome.FAILED;
+    }
+
+    public static class PrecomputeMetrics {
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong generated = new AtomicLong();
+        private final AtomicLong unchanged = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failedCalls = new AtomicLong();
+        private final AtomicLong pages = new AtomicLong();
+        private volatile long elapsedMillis;
+        private volatile boolean failed;
+
+        private void finish() {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        public long getUsers() { return users.get(); }
+        public long getGenerated() { return generated.get(); }
+        public long getUnchanged() { return unchanged.get(); }
+        public long getSkipped() { return skipped.get(); }
+        public long getFailedCalls() { return failedCalls.get(); }
+        public long getPages() { return pages.get(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isFailed() { return failed; }
+
+        @Override
+        public String toString() {
+            return String.format("AI预生成 - 用户: %d, 新生成: %d, 未变化: %d, 数据不足: %d, 失败: %d, 分页: %d, 耗时: %dms%s",
+                getUsers(), getGenerated(), getUnchanged(), getSkipped(), getFailedCalls(), getPages(), elapsedMillis,
+                failed ? " (中断，下次从水位继续)" : "");
+        }
+    }
+}
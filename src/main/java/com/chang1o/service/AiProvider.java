@@ -0,0 +1,142 @@
+package com.chang1o.service;
+
+import com.chang1o.util.CircuitBreaker;
+import com.chang1o.util.TokenBucket;
+
+import java.util.Arrays;
+
+/**
+ * 一个已配置的大模型服务商及其运行时健康度统计。
+ * 延迟与错误率都用指数加权移动平均，p95 取最近若干次成功调用的延迟。
+ * 每个服务商各自持有限流令牌桶与熔断器。
+ */
+public class AiProvider {
+
+    public static final String RESPONSE_FORMAT_JSON_SCHEMA = "json_schema";
+    public static final String RESPONSE_FORMAT_JSON_OBJECT = "json_object";
+    public static final String RESPONSE_FORMAT_NONE = "none";
+
+    private static final double EWMA_ALPHA = 0.2;
+    private static final int LATENCY_WINDOW = 100;
+    private static final int MIN_SAMPLES_FOR_P95 = 20;
+
+    private final String name;
+    private final String url;
+    private final String apiKey;
+    private final String model;
+    private final String responseFormat;
+    private final TokenBucket rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+
+    private double latencyEwmaMillis;
+    private double errorRate;
+    private final long[] recentLatencies = new long[LATENCY_WINDOW];
+    private int latencySamples;
+    private long requestCount;
+    private long failureCount;
+
+    public AiProvider(String name, String url, String apiKey, String model, String responseFormat,
+                      TokenBucket rateLimiter, CircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.url = url;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.responseFormat = responseFormat;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public synchronized void recordSuccess(long latencyMillis) {
+        requestCount++;
+        latencyEwmaMillis = latencySamples == 0
+            ? latencyMillis
+            : EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * latencyEwmaMillis;
+        errorRate = (1 - EWMA_ALPHA) * errorRate;
+        recentLatencies[latencySamples % LATENCY_WINDOW] = latencyMillis;
+        latencySamples++;
+        circuitBreaker.recordSuccess();
+    }
+
+    public synchronized void recordFailure() {
+        requestCount++;
+        failureCount++;
+        errorRate = EWMA_ALPHA + (1 - EWMA_ALPHA) * errorRate;
+        circuitBreaker.recordFailure();
+    }
+
+    // HTTP 429：按 Retry-After 暂停该服务商的令牌发放；这次失败由路由器按调用结果统一记录，这里不重复计数
+    public void recordRateLimited(long retryAfterMillis) {
+        rateLimiter.pause(retryAfterMillis);
+    }
+
+    // 样本不足时返回 -1，调用方据此不做对冲
+    public synchronized long getP95LatencyMillis() {
+        if (latencySamples < MIN_SAMPLES_FOR_P95) {
+            return -1;
+        }
+        int count = Math.min(latencySamples, LATENCY_WINDOW);
+        long[] sorted = Arrays.copyOf(recentLatencies, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(count * 0.95) - 1];
+    }
+
+    /**
+     * 路由打分，越小越优先：延迟均值按错误率放大。
+     * 从未成功过的服务商没有延迟数据，排在已测得延迟的服务商之后，只在故障转移或对冲时被尝试。
+     */
+    public synchronized double getRoutingScore() {
+        if (latencySamples == 0) {
+            return Double.MAX_VALUE / 2 * (1 + errorRate);
+        }
+        return latencyEwmaMillis * (1 + 4 * errorRate);
+    }
+
+    public synchronized boolean isHealthy() {
+        return errorRate < 0.5;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    // 结构化输出方式：json_schema、json_object 或 none
+    public String getResponseFormat() {
+        return responseFormat;
+    }
+
+    public TokenBucket getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public synchronized double getLatencyEwmaMillis() {
+        return latencyEwmaMillis;
+    }
+
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s(%s) - 请求: %d, 失败: %d, 错误率: %.0f%%, 平均延迟: %.0fms, p95: %s, 熔断: %s, 排队: %d",
+            name, model, requestCount, failureCount, errorRate * 100, latencyEwmaMillis,
+            latencySamples >= MIN_SAMPLES_FOR_P95 ? getP95LatencyMillis() + "ms" : "样本不足",
+            circuitBreaker.getState(), rateLimiter.getQueued());
+    }
+}
@@ -0,0 +1,350 @@
+package com.chang1o.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 回复的磁盘缓存。
+ * 键为“模型 + 功能 + 规范化后的提示词”的 SHA-256；提示词已包含用户的健康数据、食谱和库存，
+ * 这些数据一变键就随之变化，因此“食谱变更后失效”不需要额外的失效逻辑，TTL 只兜底时效。
+ * 存储为只追加的日志文件，每行一条：键、过期时间、Base64 编码的回复；
+ * 内存中只保存键到文件偏移的索引，命中时按偏移读取。过期与被覆盖的记录占比过高时整体压缩重写。
+ */
+public class AiResponseCache {
+
+    public enum Feature {
+        HEALTH_ADVICE("健康建议"),
+        RECIPE_RECOMMENDATION("食谱推荐"),
+        SHOPPING_LIST("购物清单"),
+        NUTRITION_ANALYSIS("营养分析");
+
+        private final String description;
+
+        Feature(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        // 建议与分析按自然日有效；推荐与购物清单随数据变化换键，24 小时兜底
+        long expiresAt(long now) {
+            switch (this) {
+                case HEALTH_ADVICE:
+                case NUTRITION_ANALYSIS:
+                    return LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                default:
+                    return now + TimeUnit.HOURS.toMillis(24);
+            }
+        }
+    }
+
+    private static final long COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private final Path path;
+    private final Map<String, Entry> index = new HashMap<>();
+    private final Map<Feature, AtomicLong> hits = new EnumMap<>(Feature.class);
+    private final Map<Feature, AtomicLong> misses = new EnumMap<>(Feature.class);
+    private FileChannel channel;
+    private long liveBytes;
+
+    public AiResponseCache(String path) {
+        this.path = Paths.get(path);
+        for (Feature feature : Feature.values()) {
+            hits.put(feature, new AtomicLong());
+            misses.put(feature, new AtomicLong());
+        }
+        load();
+    }
+
+    public static String fingerprint(String model, Feature feature, String prompt) {
+        String normalized = prompt.trim().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(feature.name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(normalized.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    public synchronized String get(Feature feature, String key) {
+        String value = peek(key);
+        (value != null ? hits : misses).get(feature).incrementAndGet();
+        return value;
+    }
+
+    // 不计入命中统计，供语义缓存按键取回复
+    public synchronized String peek(String key) {
+        Entry entry = channel != null ? index.get(key) : null;
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            if (entry != null) {
+                index.remove(key);
+                liveBytes -= entry.recordLength;
+            }
+            return null;
+        }
+
+        String value = readValue(entry);
+        if (value == null) {
+            index.remove(key);
+            liveBytes -= entry.recordLength;
+        }
+        return value;
+    }
+
+    public synchronized void put(Feature feature, String key, String value) {
+        if (channel == null) {
+            return;
+        }
+
+        long expiresAt = feature.expiresAt(System.currentTimeMillis());
+        String encoded = Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        String prefix = key + "\t" + expiresAt + "\t";
+        byte[] record = (prefix + encoded + "\n").getBytes(StandardCharsets.US_ASCII);
+
+        try {
+            long offset = channel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+
+            Entry previous = index.put(key, new Entry(offset + prefix.length(), encoded.length(), record.length, expiresAt));
+            if (previous != null) {
+                liveBytes -= previous.recordLength;
+            }
+            liveBytes += record.length;
+            compactIfNeeded(offset + record.length);
+        } catch (IOException e) {
+            System.err.println("写入AI回复缓存失败：" + e.getMessage());
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public String getStats() {
+        StringBuilder stats = new StringBuilder();
+        long totalHits = 0;
+        long totalMisses = 0;
+        for (Feature feature : Feature.values()) {
+            long hit = hits.get(feature).get();
+            long miss = misses.get(feature).get();
+            totalHits += hit;
+            totalMisses += miss;
+            if (hit + miss > 0) {
+                stats.append(String.format("  %s - 命中: %d, 未命中: %d, 命中率: %.0f%%%n",
+                    feature.getDescription(), hit, miss, hit * 100.0 / (hit + miss)));
+            }
+        }
+        String summary = String.format("AI回复缓存 - 条目: %d, 命中: %d, 未命中: %d, 命中率: %.0f%%",
+            size(), totalHits, totalMisses, totalHits + totalMisses > 0 ? totalHits * 100.0 / (totalHits + totalMisses) : 0);
+        return stats.length() > 0 ? summary + System.lineSeparator() + stats.toString().stripTrailing() : summary;
+    }
+
+    private String readValue(Entry entry) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(entry.valueLength);
+            long position = entry.valueOffset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    return null;
+                }
+                position += read;
+            }
+            byte[] decoded = Base64.getDecoder().decode(buffer.array());
+            return new String(decoded, StandardCharsets.UTF_8);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("读取AI回复缓存失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    // 文件中超过一半是过期或被覆盖的记录时，只保留仍有效的记录重写文件
+    private void compactIfNeeded(long fileSize) {
+        if (fileSize < COMPACT_MIN_BYTES || liveBytes * 2 > fileSize) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Path compacting = Paths.get(path + ".compacting");
+        Map<String, Entry> compacted = new HashMap<>();
+        long offset = 0;
+
+        try (FileChannel out = FileChannel.open(compacting, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, Entry> item : index.entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.expiresAt <= now) {
+                    continue;
+                }
+
+                ByteBuffer value = ByteBuffer.allocate(entry.valueLength);
+                channel.read(value, entry.valueOffset);
+                value.flip();
+
+                String prefix = item.getKey() + "\t" + entry.expiresAt + "\t";
+                ByteBuffer record = ByteBuffer.allocate(prefix.length() + entry.valueLength + 1);
+                record.put(prefix.getBytes(StandardCharsets.US_ASCII)).put(value).put((byte) '\n');
+                record.flip();
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+
+                compacted.put(item.getKey(), new Entry(offset + prefix.length(), entry.valueLength, record.limit(), entry.expiresAt));
+                offset += record.limit();
+            }
+            out.force(true);
+        } catch (IOException e) {
+            System.err.println("压缩AI回复缓存失败：" + e.getMessage());
+            return;
+        }
+
+        try {
+            channel.close();
+            Files.move(compacting, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            index.clear();
+            index.putAll(compacted);
+            liveBytes = offset;
+        } catch (IOException e) {
+            System.err.println("替换AI回复缓存文件失败：" + e.getMessage());
+        } finally {
+            openChannel();
+        }
+    }
+
+    private void load() {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        } catch (IOException e) {
+            System.err.println("创建AI回复缓存目录失败：" + e.getMessage());
+            return;
+        }
+
+        // 只接受以换行结尾的记录；崩溃时写了一半的末尾记录即使能解析也不索引，并在下面截掉
+        long now = System.currentTimeMillis();
+        long completeEnd = 0;
+        try (InputStream in = Files.exists(path)
+                ? new BufferedInputStream(Files.newInputStream(path))
+                : InputStream.nullInputStream()) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                long recordLength = line.size() + 1;
+                indexRecord(line.toString(StandardCharsets.US_ASCII), completeEnd, recordLength, now);
+                completeEnd += recordLength;
+                line.reset();
+            }
+        } catch (IOException e) {
+            System.err.println("读取AI回复缓存失败：" + e.getMessage());
+        }
+
+        if (!openChannel()) {
+            return;
+        }
+        try {
+            // 截到最后一个完整换行处，后续追加从干净的行首开始
+            if (channel.size() > completeEnd) {
+                channel.truncate(completeEnd);
+            }
+            compactIfNeeded(channel.size());
+        } catch (IOException e) {
+            System.err.println("修复AI回复缓存文件失败：" + e.getMessage());
+        }
+    }
+
+    private void indexRecord(String line, long offset, long recordLength, long now) {
+        String[] parts = line.split("\t", 3);
+        if (parts.length != 3) {
+            return;
+        }
+        try {
+            long expiresAt = Long.parseLong(parts[1]);
+            if (parts[2].length() % 4 != 0) {
+                return;
+            }
+            Base64.getDecoder().decode(parts[2]);
+
+            int valueOffset = parts[0].length() + parts[1].length() + 2;
+            Entry previous = index.remove(parts[0]);
+            if (previous != null) {
+                liveBytes -= previous.recordLength;
+            }
+            if (expiresAt > now) {
+                index.put(parts[0], new Entry(offset + valueOffset, parts[2].length(), recordLength, expiresAt));
+                liveBytes += recordLength;
+            }
+        } catch (IllegalArgumentException e) {
+            // 损坏的记录（过期时间或 Base64 无法解析）跳过，不影响其他记录
+        }
+    }
+
+    private boolean openChannel() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                return true;
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return true;
+        } catch (IOException e) {
+            System.err.println("打开AI回复缓存文件失败：" + e.getMessage());
+            channel = null;
+            return false;
+        }
+    }
+
+    private static class Entry {
+        private final long valueOffset;
+        private final int valueLength;
+        private final long recordLength;
+        private final long expiresAt;
+
+        private Entry(long valueOffset, int valueLength, long recordLength, long expiresAt) {
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordLength = recordLength;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
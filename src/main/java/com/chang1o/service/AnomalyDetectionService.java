@@ -0,0 +1,196 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.AnomalyStateDao;
+import com.chang1o.dao.CheckInSketchDao;
+import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.dao.HealthAlertDao;
+import com.chang1o.model.AnomalyState;
+import com.chang1o.model.CheckInSeries;
+import com.chang1o.model.DailyCheckIn;
+import com.chang1o.model.HealthAlert;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class AnomalyDetectionService {
+
+    public static final String METRIC_MOOD = "mood";
+
+    private static final String[] METRICS = {
+        CheckInSketchDao.METRIC_SLEEP, CheckInSketchDao.METRIC_WATER, CheckInSketchDao.METRIC_EXERCISE, METRIC_MOOD
+    };
+
+    private AnomalyStateDao anomalyStateDao;
+    private HealthAlertDao healthAlertDao;
+    private DailyCheckInDao dailyCheckInDao;
+
+    public AnomalyDetectionService() {
+        this.anomalyStateDao = new AnomalyStateDao();
+        this.healthAlertDao = new HealthAlertDao();
+        this.dailyCheckInDao = new DailyCheckInDao();
+    }
+
+    public List<HealthAlert> processCheckIn(DailyCheckIn checkIn) {
+        List<HealthAlert> alerts = new ArrayList<>();
+        LocalDate date = checkIn.getCheckInDate();
+        Map<String, AnomalyState> states = anomalyStateDao.getStatesByUserId(checkIn.getUserId());
+
+        // 修改或补录更早的日期时，之后每一天的 EWMA/CUSUM 都会变化，只能从头按时间顺序重放
+        for (AnomalyState state : states.values()) {
+            if (state.getLastCheckInDate() != null && date.isBefore(state.getLastCheckInDate())) {
+                List<HealthAlert> replayed = replayHistory(checkIn.getUserId(), date, states, false);
+                return replayed != null ? replayed : alerts;
+            }
+        }
+
+        List<AnomalyState> changed = new ArrayList<>();
+        boolean revised = false;
+        for (String metric : METRICS) {
+            AnomalyState state = states.get(metric);
+            if (state == null) {
+                state = new AnomalyState(checkIn.getUserId(), metric);
+            }
+
+            // 同一天重新打卡：先撤销这一天的旧观测再按新值观测，状态保持常数大小
+            if (date.equals(state.getLastCheckInDate())) {
+                state.revertLastObservation();
+                revised = true;
+            }
+
+            double value = getMetricValue(checkIn, metric);
+            double baseline = state.getMean();
+            int result = state.observe(value, getMinStdDev(metric));
+            state.setLastCheckInDate(date);
+            changed.add(state);
+
+            if (result != AnomalyState.NORMAL) {
+                alerts.add(buildAlert(state, date, result, value, baseline));
+            }
+        }
+
+        anomalyStateDao.saveStates(changed);
+        if (revised) {
+            // 当天已有的提醒按新值重算，不再异常的撤掉
+            healthAlertDao.replaceAlertsFrom(checkIn.getUserId(), date, alerts, false);
+            return alerts;
+        }
+
+        List<HealthAlert> added = new ArrayList<>();
+        for (HealthAlert alert : alerts) {
+            if (healthAlertDao.addAlert(alert)) {
+                added.add(alert);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * 批量导入等绕过 processCheckIn 的写入之后调用：重建统计量，并重算 fromDate 及之后的提醒。
+     * 导入的是历史数据，新出现的提醒直接标为已读，只保留在提醒记录里。
+     */
+    public boolean rebuildStates(int userId, LocalDate fromDate) {
+        return replayHistory(userId, fromDate, anomalyStateDao.getStatesByUserId(userId), true) != null;
+    }
+
+    private List<HealthAlert> replayHistory(int userId, LocalDate fromDate, Map<String, AnomalyState> previous,
+                                            boolean markRead) {
+        CheckInSeries series = dailyCheckInDao.loadCheckInSeries(userId);
+        LocalDate lastDate = series.isEmpty() ? null : series.getDate(series.size() - 1);
+        for (AnomalyState state : previous.values()) {
+            // 读取中途失败会得到被截断的序列，此时保留原状态而不是用残缺历史覆盖
+            if (state.getLastCheckInDate() != null && (lastDate == null || lastDate.isBefore(state.getLastCheckInDate()))) {
+                System.err.println("打卡历史加载不完整，跳过异常检测状态重建");
+                return null;
+            }
+        }
+
+        List<HealthAlert> alerts = new ArrayList<>();
+        if (series.isEmpty()) {
+            return alerts;
+        }
+
+        List<AnomalyState> rebuilt = new ArrayList<>();
+        for (String metric : METRICS) {
+            AnomalyState state = new AnomalyState(userId, metric);
+            double[] values = series.column(getSeriesMetric(metric), 0, series.size());
+            for (int i = 0; i < values.length; i++) {
+                LocalDate date = series.getDate(i);
+                double value = values[i];
+                double baseline = state.getMean();
+                int result = state.observe(value, getMinStdDev(metric));
+                state.setLastCheckInDate(date);
+
+                if (result != AnomalyState.NORMAL && !date.isBefore(fromDate)) {
+                    alerts.add(buildAlert(state, date, result, value, baseline));
+                }
+            }
+            rebuilt.add(state);
+        }
+
+        if (!anomalyStateDao.saveStates(rebuilt) || !healthAlertDao.replaceAlertsFrom(userId, fromDate, alerts, markRead)) {
+            return null;
+        }
+        return alerts;
+    }
+
+    private HealthAlert buildAlert(AnomalyState state, LocalDate date, int result, double value, double baseline) {
+        String direction = result == AnomalyState.LOW ? "low" : "high";
+        return new HealthAlert(state.getUserId(), state.getMetric(), date, direction,
+            value, baseline, buildMessage(state.getMetric(), result, value, baseline));
+    }
+
+    public List<HealthAlert> getUnreadAlerts(int userId) {
+        return healthAlertDao.getUnreadAlerts(userId);
+    }
+
+    public List<HealthAlert> getRecentAlerts(int userId, int days) {
+        return healthAlertDao.getRecentAlerts(userId, days);
+    }
+
+    public boolean markAlertsRead(int userId) {
+        return healthAlertDao.markAllRead(userId);
+    }
+
+    private double getMetricValue(DailyCheckIn checkIn, String metric) {
+        switch (metric) {
+            case CheckInSketchDao.METRIC_SLEEP: return checkIn.getSleepHours();
+            case CheckInSketchDao.METRIC_WATER: return checkIn.getWaterIntake();
+            case CheckInSketchDao.METRIC_EXERCISE: return checkIn.getExerciseMinutes();
+            default: return checkIn.getMoodScore();
+        }
+    }
+
+    private CheckInSeries.Metric getSeriesMetric(String metric) {
+        switch (metric) {
+            case CheckInSketchDao.METRIC_SLEEP: return CheckInSeries.Metric.SLEEP;
+            case CheckInSketchDao.METRIC_WATER: return CheckInSeries.Metric.WATER;
+            case CheckInSketchDao.METRIC_EXERCISE: return CheckInSeries.Metric.EXERCISE;
+            default: return CheckInSeries.Metric.MOOD;
+        }
+    }
+
+    private double getMinStdDev(String metric) {
+        switch (metric) {
+            case CheckInSketchDao.METRIC_SLEEP: return 0.5;
+            case CheckInSketchDao.METRIC_WATER: return 200;
+            case CheckInSketchDao.METRIC_EXERCISE: return 10;
+            default: return 0.5;
+        }
+    }
+
+    private String buildMessage(String metric, int result, double value, double baseline) {
+        String trend = result == AnomalyState.LOW ? "偏低" : "偏高";
+        switch (metric) {
+            case CheckInSketchDao.METRIC_SLEEP:
+                return String.format("睡眠%s：%.1f小时（近期基线%.1f小时）", trend, value, baseline);
+            case CheckInSketchDao.METRIC_WATER:
+                return String.format("饮水%s：%.0f毫升（近期基线%.0f毫升）", trend, value, baseline);
+            case CheckInSketchDao.METRIC_EXERCISE:
+                return String.format("运动%s：%.0f分钟（近期基线%.0f分钟）", trend, value, baseline);
+            default:
+                return String.format("心情%s：%.0f/5（近期基线%.1f/5）", trend, value, baseline);
+        }
+    }
+}
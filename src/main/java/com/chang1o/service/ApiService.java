@@ -5,25 +5,82 @@ import com.chang1o.model.DailyCheckIn;
 import com.chang1o.model.Recipe;
 import com.chang1o.model.RecipeIngredient;
 import com.chang1o.model.PantryItem;
+import com.chang1o.model.HealthAlert;
+import com.chang1o.model.AiPrecomputedResult;
+import com.chang1o.model.RecipeRecommendation;
+import com.chang1o.dao.AiPrecomputedResultDao;
 import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.util.CircuitBreaker;
+import com.chang1o.util.JsonReader;
+import com.chang1o.util.JsonWriter;
+import com.chang1o.util.PromptBuilder;
+import com.chang1o.util.SingleFlight;
+import com.chang1o.util.SseParser;
+import com.chang1o.util.TokenBucket;
+import com.chang1o.util.TokenEstimator;
 
 import java.io.*;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.time.LocalDate;
 
 public class ApiService {
 
-    private static final String API_URL;
-    private static final String API_KEY;
-    private static final String API_MODEL;
+    // 所有已配置的服务商，按健康度与延迟路由，失败时自动切换
+    private static final ProviderRouter ROUTER;
+    private static final String MODEL_FINGERPRINT;
+    // 为 null 表示已通过 api.cache.enabled=false 关闭
+    private static final AiResponseCache RESPONSE_CACHE;
+    private static final SemanticResponseCache SEMANTIC_CACHE;
+    // 相同提示词的并发请求只向服务商发出一次
+    private static final SingleFlight<String, String> IN_FLIGHT = new SingleFlight<>();
+    private static final Duration CONNECT_TIMEOUT;
+    private static final Duration REQUEST_TIMEOUT;
+    // 流式输出按相邻两次收到数据的间隔判定超时，长而正常的回复不会被整体时限截断
+    private static final Duration STREAM_IDLE_TIMEOUT;
+    private static final ScheduledExecutorService STREAM_WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-stream-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final boolean STREAM_ENABLED;
+    private static final boolean STREAM_EXPORT_ENABLED;
+    private static final int PROMPT_TOKEN_BUDGET;
+
+    private static final int EXPIRING_SOON_DAYS = 3;
+    private static final double NO_EXPIRY_PENALTY = 10000;
+    private static final double RELEVANT_INGREDIENT_BONUS = 100000;
+    static final int DEFAULT_ANALYSIS_DAYS = 7;
+    private static final int BENCHMARK_SHOPPING_RECIPES = 3;
+    // 不以任何用户身份发出的调用（夜间预生成）使用这个作用范围，既不查也不写语义缓存
+    private static final int NO_SEMANTIC_SCOPE = 0;
+
+    // 全局共享：复用连接池与 TLS 会话，支持 HTTP/2 多路复用
+    private static final HttpClient HTTP_CLIENT;
+    private static FakeAiServer fakeServer;
+
+    // 每个线程复用一个写入缓冲，长提示词不必反复扩容
+    private static final ThreadLocal<JsonWriter> REQUEST_WRITER = ThreadLocal.withInitial(() -> new JsonWriter(4096));
 
     static {
         Properties props = new Properties();
-        String url = "";
-        String key = "";
-        String model = "";
 
         try (InputStream input = ApiService.class.getClassLoader()
                 .getResourceAsStream("api.properties")) {
@@ -34,89 +91,240 @@ public class ApiService {
             System.err.println("加载API配置文件时出错: " + e.getMessage());
         }
 
-        String envKey = null;
-        String provider = "";
-
-        if ((envKey = System.getenv("KIMI_API_KEY")) != null && !envKey.isEmpty()) {
-            provider = "kimi";
-            url = props.getProperty("kimi.api.url", "https://api.moonshot.cn/v1/chat/completions");
-            model = props.getProperty("kimi.api.model", "kimi-k2");
-        } else if ((envKey = System.getenv("ZHIPU_API_KEY")) != null && !envKey.isEmpty()) {
-            provider = "zhipu";
-            url = props.getProperty("zhipu.api.url", "https://open.bigmodel.cn/api/paas/v4/chat/completions");
-            model = props.getProperty("zhipu.api.model", "glm-4.6");
-        } else if ((envKey = System.getenv("DEEPSEEK_API_KEY")) != null && !envKey.isEmpty()) {
-            provider = "deepseek";
-            url = props.getProperty("deepseek.api.url", "https://api.deepseek.com/chat/completions");
-            model = props.getProperty("deepseek.api.model", "deepseek-chat");
-        } else {
-            provider = "kimi";
-            url = props.getProperty("kimi.api.url", "https://api.moonshot.cn/v1/chat/completions");
-            key = props.getProperty("kimi.api.key", "");
-            model = props.getProperty("kimi.api.model", "kimi-k2");
+        List<AiProvider> providers = loadProviders(props);
+        if (providers.isEmpty()) {
+            System.err.println("警告: API 未配置。请设置配置文件或设置环境变量API KEY");
+            providers.add(createProvider(props, "kimi", ""));
         }
+        ROUTER = new ProviderRouter(providers,
+                Boolean.parseBoolean(props.getProperty("api.hedge.enabled", "true").trim()));
 
-        if (envKey != null) {
-            key = envKey;
+        // 路由可能落到任一服务商，缓存键使用全部已配置模型的组合
+        StringJoiner models = new StringJoiner(",");
+        for (AiProvider provider : providers) {
+            models.add(provider.getName() + "/" + provider.getModel());
         }
+        MODEL_FINGERPRINT = models.toString();
+        RESPONSE_CACHE = Boolean.parseBoolean(props.getProperty("api.cache.enabled", "true").trim())
+                ? new AiResponseCache(props.getProperty("api.cache.path", "data/ai-cache.log").trim())
+                : null;
+        // 语义缓存只索引向量，回复取自精确缓存，因此依赖精确缓存开启
+        SEMANTIC_CACHE = RESPONSE_CACHE != null
+                && Boolean.parseBoolean(props.getProperty("api.semantic.cache.enabled", "true").trim())
+                ? new SemanticResponseCache(props.getProperty("api.semantic.cache.path", "data/ai-semantic.idx").trim(),
+                        MODEL_FINGERPRINT, readFraction(props, "api.semantic.cache.threshold", 0.93),
+                        readFraction(props, "api.semantic.cache.number.tolerance", 0.05),
+                        (int) readPositiveLong(props, "api.semantic.cache.max.entries", 5000))
+                : null;
+
+        CONNECT_TIMEOUT = Duration.ofSeconds(readPositiveLong(props, "api.connect.timeout.seconds", 10));
+        REQUEST_TIMEOUT = Duration.ofSeconds(readPositiveLong(props, "api.request.timeout.seconds", 120));
+        STREAM_IDLE_TIMEOUT = Duration.ofSeconds(readPositiveLong(props, "api.stream.idle.timeout.seconds", 30));
+        STREAM_ENABLED = Boolean.parseBoolean(props.getProperty("api.stream", "true").trim());
+        STREAM_EXPORT_ENABLED = Boolean.parseBoolean(props.getProperty("api.stream.export", "false").trim());
+        PROMPT_TOKEN_BUDGET = (int) readPositiveLong(props, "api.prompt.max.tokens", 2000);
+        HTTP_CLIENT = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
 
-        API_URL = url;
-        API_KEY = key;
-        API_MODEL = model;
+    }
 
-        if (API_KEY.isEmpty() || "YOUR_API_KEY_HERE".equals(API_KEY)) {
-            System.err.println("警告: API 未配置。请设置配置文件或设置环境变量API KEY");
+    /**
+     * 收集所有配置了密钥的服务商：设置了环境变量的优先，其余按 api.provider.order 的顺序
+     * （默认 kimi、zhipu、deepseek）读取配置文件中的密钥。
+     * 开启 api.fake.enabled 时只使用进程内的模拟服务，不会访问任何外部接口。
+     */
+    private static List<AiProvider> loadProviders(Properties props) {
+        if (Boolean.parseBoolean(props.getProperty("api.fake.enabled", "false").trim())) {
+            List<AiProvider> fakes = loadFakeProviders(props);
+            if (!fakes.isEmpty()) {
+                return fakes;
+            }
+        }
+
+        String[] order = props.getProperty("api.provider.order", "kimi,zhipu,deepseek").split(",");
+        List<AiProvider> fromEnv = new ArrayList<>();
+        List<AiProvider> fromFile = new ArrayList<>();
+
+        for (String entry : order) {
+            String name = entry.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty()) {
+                continue;
+            }
+            String envKey = System.getenv(name.toUpperCase(Locale.ROOT) + "_API_KEY");
+            String fileKey = props.getProperty(name + ".api.key", "").trim();
+            if (envKey != null && !envKey.isEmpty()) {
+                fromEnv.add(createProvider(props, name, envKey));
+            } else if (!fileKey.isEmpty() && !"YOUR_API_KEY_HERE".equals(fileKey)) {
+                fromFile.add(createProvider(props, name, fileKey));
+            }
+        }
+
+        fromEnv.addAll(fromFile);
+        return fromEnv;
+    }
+
+    // 多个模拟服务商共用同一个服务端，用于观察路由、对冲与熔断的行为
+    private static List<AiProvider> loadFakeProviders(Properties props) {
+        List<AiProvider> fakes = new ArrayList<>();
+        FakeAiServer server = FakeAiServer.start(props);
+        if (server == null) {
+            return fakes;
+        }
+        fakeServer = server;
+
+        int count = (int) readPositiveLong(props, "api.fake.providers", 1);
+        for (int i = 1; i <= count; i++) {
+            fakes.add(createProvider(props, "fake" + i, server.getUrl(), "fake-key", "fake-model",
+                    AiProvider.RESPONSE_FORMAT_JSON_SCHEMA, createRateLimiter(props, "api.fake", 60000, 1000)));
+        }
+        System.out.println("[提示] 已启用本地模拟AI服务：" + server.getUrl());
+        return fakes;
+    }
+
+    private static AiProvider createProvider(Properties props, String name, String key) {
+        String defaultUrl;
+        String defaultModel;
+        switch (name) {
+            case "zhipu":
+                defaultUrl = "https://open.bigmodel.cn/api/paas/v4/chat/completions";
+                defaultModel = "glm-4.6";
+                break;
+            case "deepseek":
+                defaultUrl = "https://api.deepseek.com/chat/completions";
+                defaultModel = "deepseek-chat";
+                break;
+            case "kimi":
+                defaultUrl = "https://api.moonshot.cn/v1/chat/completions";
+                defaultModel = "kimi-k2";
+                break;
+            default:
+                defaultUrl = "";
+                defaultModel = "";
+                break;
+        }
+        return createProvider(props, name, props.getProperty(name + ".api.url", defaultUrl),
+                key, props.getProperty(name + ".api.model", defaultModel), AiProvider.RESPONSE_FORMAT_JSON_OBJECT,
+                createRateLimiter(props, "api", 30, 5));
+    }
+
+    private static AiProvider createProvider(Properties props, String name, String url, String key, String model,
+                                             String defaultResponseFormat, TokenBucket rateLimiter) {
+        String responseFormat = props.getProperty(name + ".api.response.format", defaultResponseFormat)
+                .trim().toLowerCase(Locale.ROOT);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                (int) readPositiveLong(props, "api.breaker.failure.threshold", 5),
+                TimeUnit.SECONDS.toMillis(readPositiveLong(props, "api.breaker.open.seconds", 30)));
+        return new AiProvider(name, url, key, model, responseFormat, rateLimiter, circuitBreaker);
+    }
+
+    // 模拟服务商使用 api.fake.rate.limit.* 的独立限流，默认足够宽松，基准测试测的是链路而不是本地限流器
+    private static TokenBucket createRateLimiter(Properties props, String prefix, long defaultPerMinute, long defaultBurst) {
+        return new TokenBucket(
+                (int) readPositiveLong(props, prefix + ".rate.limit.per.minute", defaultPerMinute),
+                (int) readPositiveLong(props, prefix + ".rate.limit.burst", defaultBurst),
+                (int) readPositiveLong(props, "api.queue.capacity", 20),
+                TimeUnit.SECONDS.toMillis(readPositiveLong(props, "api.queue.timeout.seconds", 30)));
+    }
+
+    public static String getCacheStats() {
+        return (RESPONSE_CACHE != null ? RESPONSE_CACHE.getStats() : "AI回复缓存已关闭")
+                + System.lineSeparator() + (SEMANTIC_CACHE != null ? SEMANTIC_CACHE.getStats() : "语义缓存已关闭")
+                + System.lineSeparator() + "请求合并 - 已合并重复请求: " + IN_FLIGHT.getCoalescedCount() + " 次";
+    }
+
+    public static List<AiProvider> getProviders() {
+        return ROUTER.rankedProviders();
+    }
+
+    public static boolean isFakeProviderEnabled() {
+        return fakeServer != null;
+    }
+
+    public static long getFakeRequestCount() {
+        return fakeServer != null ? fakeServer.getRequestCount() : 0;
+    }
+
+    public static void stopFakeServer() {
+        if (fakeServer != null) {
+            fakeServer.stop();
         }
     }
 
     private HealthDataService healthDataService;
     private RecipeService recipeService;
     private PantryService pantryService;
+    private AiPrecomputedResultDao precomputedResultDao;
+    private volatile String lastPromptUsage;
 
     public ApiService() {
         this.healthDataService = new HealthDataService();
         this.recipeService = new RecipeService();
         this.pantryService = new PantryService();
+        this.precomputedResultDao = new AiPrecomputedResultDao();
     }
 
     public String generatePersonalizedHealthAdvice(int userId) {
+        return generatePersonalizedHealthAdviceAsync(userId).join();
+    }
+
+    public CompletableFuture<String> generatePersonalizedHealthAdviceAsync(int userId) {
         try {
             UserHealthData healthData = healthDataService.getLatestHealthData(userId);
             List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, 7);
 
             String prompt = buildHealthAdvicePrompt(healthData, recentCheckIns);
 
-            String response = callAIAPI(prompt);
+            String precomputed = findPrecomputed(userId, AiResponseCache.Feature.HEALTH_ADVICE, prompt);
+            if (precomputed != null) {
+                return CompletableFuture.completedFuture(precomputed);
+            }
 
-            return response != null ? response : "抱歉，暂时无法生成个性化建议，请稍后再试。";
+            return callAIAPIAsync(userId, AiResponseCache.Feature.HEALTH_ADVICE, prompt)
+                    .thenApply(response -> response != null ? response : "抱歉，暂时无法生成个性化建议，请稍后再试。");
 
         } catch (Exception e) {
             System.err.println("生成个性化健康建议时发生错误: " + e.getMessage());
-            return "抱歉，生成建议时出现问题，请稍后再试。";
+            return CompletableFuture.completedFuture("抱歉，生成建议时出现问题，请稍后再试。");
         }
     }
 
-    public List<String> generateSmartRecipeRecommendations(int userId) {
+    public List<RecipeRecommendation> generateSmartRecipeRecommendations(int userId) {
+        return generateSmartRecipeRecommendationsAsync(userId).join();
+    }
+
+    public CompletableFuture<List<RecipeRecommendation>> generateSmartRecipeRecommendationsAsync(int userId) {
+        RecipeNameIndex recipeIndex = null;
         try {
+            recipeIndex = recipeService.getRecipeNameIndex(userId);
             UserHealthData healthData = healthDataService.getLatestHealthData(userId);
             List<Recipe> userRecipes = recipeService.getRecipesByUser(userId);
+            List<PantryItem> pantryItems = pantryService.getPantryItemsByUser(userId);
+            List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, 7);
 
-            String prompt = buildRecipeRecommendationPrompt(healthData, userRecipes);
-
-            String response = callAIAPI(prompt);
+            PromptBuilder.Prompt prompt = buildRecipeRecommendationPrompt(healthData, userRecipes, pantryItems, recentCheckIns);
 
-            if (response != null) {
-                return parseRecipeRecommendations(response);
-            }
+            RecipeNameIndex index = recipeIndex;
+            // 解析不出推荐的回复不写入缓存，下次重新请求，而不是一整天都返回默认推荐
+            return callAIAPIAsync(userId, AiResponseCache.Feature.RECIPE_RECOMMENDATION, prompt.getText(), prompt.toString(), true,
+                            response -> !readRecipeRecommendations(response).isEmpty())
+                    .thenApply(response -> response != null ? parseRecipeRecommendations(response, index)
+                            : getDefaultRecipeRecommendations(index));
 
         } catch (Exception e) {
             System.err.println("生成智能食谱推荐时发生错误: " + e.getMessage());
         }
 
-        return getDefaultRecipeRecommendations();
+        return CompletableFuture.completedFuture(getDefaultRecipeRecommendations(recipeIndex));
     }
 
     public String generateSmartShoppingList(int userId, List<Integer> recipeIds) {
+        return generateSmartShoppingListAsync(userId, recipeIds).join();
+    }
+
+    public CompletableFuture<String> generateSmartShoppingListAsync(int userId, List<Integer> recipeIds) {
         try {
             List<PantryItem> pantryItems = pantryService.getPantryItemsByUser(userId);
 
@@ -128,39 +336,215 @@ public class ApiService {
                 }
             }
 
-            String prompt = buildShoppingListPrompt(selectedRecipes, pantryItems);
-
-            String response = callAIAPI(prompt);
+            PromptBuilder.Prompt prompt = buildShoppingListPrompt(selectedRecipes, pantryItems);
 
-            return response != null ? response : "抱歉，暂时无法生成智能购物清单，请稍后再试。";
+            return callAIAPIAsync(userId, AiResponseCache.Feature.SHOPPING_LIST, prompt)
+                    .thenApply(response -> response != null ? response : "抱歉，暂时无法生成智能购物清单，请稍后再试。");
 
         } catch (Exception e) {
             System.err.println("生成智能购物清单时发生错误: " + e.getMessage());
-            return "抱歉，生成购物清单时出现问题，请稍后再试。";
+            return CompletableFuture.completedFuture("抱歉，生成购物清单时出现问题，请稍后再试。");
         }
     }
 
     public String generateNutritionAnalysisReport(int userId, int days) {
+        return generateNutritionAnalysisReportAsync(userId, days).join();
+    }
+
+    public CompletableFuture<String> generateNutritionAnalysisReportAsync(int userId, int days) {
+        try {
+            List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, days);
+            UserHealthData healthData = healthDataService.getLatestHealthData(userId);
+
+            if (recentCheckIns.isEmpty()) {
+                return CompletableFuture.completedFuture("暂无足够的打卡数据进行营养分析，请先进行每日打卡。");
+            }
+
+            String prompt = buildNutritionAnalysisPrompt(healthData, recentCheckIns, days);
+
+            String precomputed = findPrecomputed(userId, AiResponseCache.Feature.NUTRITION_ANALYSIS, prompt);
+            if (precomputed != null) {
+                return CompletableFuture.completedFuture(precomputed);
+            }
+
+            return callAIAPIAsync(userId, AiResponseCache.Feature.NUTRITION_ANALYSIS, prompt)
+                    .thenApply(response -> response != null ? response : "抱歉，暂时无法生成营养分析报告，请稍后再试。");
+
+        } catch (Exception e) {
+            System.err.println("生成营养分析报告时发生错误: " + e.getMessage());
+            return CompletableFuture.completedFuture("抱歉，生成营养分析报告时出现问题，请稍后再试。");
+        }
+    }
+
+    // 最近一次调用的提示词 token 用量，供界面展示
+    public String getLastPromptUsage() {
+        return lastPromptUsage;
+    }
+
+    public static boolean isStreamEnabled() {
+        return STREAM_ENABLED;
+    }
+
+    public static boolean isStreamExportEnabled() {
+        return STREAM_EXPORT_ENABLED;
+    }
+
+    public CompletableFuture<Boolean> streamPersonalizedHealthAdvice(int userId, Consumer<String> onDelta) {
+        try {
+            UserHealthData healthData = healthDataService.getLatestHealthData(userId);
+            List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, 7);
+
+            String prompt = buildHealthAdvicePrompt(healthData, recentCheckIns);
+
+            String precomputed = findPrecomputed(userId, AiResponseCache.Feature.HEALTH_ADVICE, prompt);
+            if (precomputed != null) {
+                onDelta.accept(precomputed);
+                return CompletableFuture.completedFuture(true);
+            }
+
+            return streamAIAPIAsync(userId, AiResponseCache.Feature.HEALTH_ADVICE, prompt, onDelta);
+
+        } catch (Exception e) {
+            System.err.println("生成个性化健康建议时发生错误: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    public CompletableFuture<Boolean> streamSmartShoppingList(int userId, List<Integer> recipeIds, Consumer<String> onDelta) {
+        try {
+            List<PantryItem> pantryItems = pantryService.getPantryItemsByUser(userId);
+
+            List<Recipe> selectedRecipes = new ArrayList<>();
+            for (Integer recipeId : recipeIds) {
+                Recipe recipe = recipeService.getRecipeById(recipeId);
+                if (recipe != null) {
+                    selectedRecipes.add(recipe);
+                }
+            }
+
+            return streamAIAPIAsync(userId, AiResponseCache.Feature.SHOPPING_LIST, buildShoppingListPrompt(selectedRecipes, pantryItems), onDelta);
+
+        } catch (Exception e) {
+            System.err.println("生成智能购物清单时发生错误: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    public CompletableFuture<Boolean> streamNutritionAnalysisReport(int userId, int days, Consumer<String> onDelta) {
         try {
             List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, days);
             UserHealthData healthData = healthDataService.getLatestHealthData(userId);
 
             if (recentCheckIns.isEmpty()) {
-                return "暂无足够的打卡数据进行营养分析，请先进行每日打卡。";
+                onDelta.accept("暂无足够的打卡数据进行营养分析，请先进行每日打卡。");
+                return CompletableFuture.completedFuture(true);
             }
 
             String prompt = buildNutritionAnalysisPrompt(healthData, recentCheckIns, days);
 
-            String response = callAIAPI(prompt);
+            String precomputed = findPrecomputed(userId, AiResponseCache.Feature.NUTRITION_ANALYSIS, prompt);
+            if (precomputed != null) {
+                onDelta.accept(precomputed);
+                return CompletableFuture.completedFuture(true);
+            }
 
-            return response != null ? response : "抱歉，暂时无法生成营养分析报告，请稍后再试。";
+            return streamAIAPIAsync(userId, AiResponseCache.Feature.NUTRITION_ANALYSIS, prompt, onDelta);
 
         } catch (Exception e) {
             System.err.println("生成营养分析报告时发生错误: " + e.getMessage());
-            return "抱歉，生成营养分析报告时出现问题，请稍后再试。";
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * 夜间批处理用：按与实时请求完全相同的方式构造提示词。
+     * 没有健康档案或近期打卡的用户返回 null，不做预生成。
+     */
+    String buildPrecomputePrompt(int userId, AiResponseCache.Feature feature) {
+        UserHealthData healthData = healthDataService.getLatestHealthData(userId);
+        List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, DEFAULT_ANALYSIS_DAYS);
+        if (healthData == null || recentCheckIns.isEmpty()) {
+            return null;
+        }
+
+        switch (feature) {
+            case HEALTH_ADVICE:
+                return buildHealthAdvicePrompt(healthData, recentCheckIns);
+            case NUTRITION_ANALYSIS:
+                return buildNutritionAnalysisPrompt(healthData, recentCheckIns, DEFAULT_ANALYSIS_DAYS);
+            default:
+                throw new IllegalArgumentException("不支持预生成: " + feature);
+        }
+    }
+
+    // 与回复缓存同一指纹：模型配置或提示词任一变化，预生成结果即视为过期
+    static String promptHash(AiResponseCache.Feature feature, String prompt) {
+        return AiResponseCache.fingerprint(MODEL_FINGERPRINT, feature, prompt);
+    }
+
+    // 经过与实时请求相同的精确缓存、合并、限流与熔断，但不走语义缓存：
+    // 预生成结果会以该用户的名义长期保存，只能是针对这份提示词本身的回答，不能是相近提示词的回答
+    CompletableFuture<String> completePromptAsync(AiResponseCache.Feature feature, String prompt) {
+        return callAIAPIAsync(NO_SEMANTIC_SCOPE, feature, prompt);
+    }
+
+    /**
+     * 基准测试用：用该用户的真实数据，经与线上请求相同的构造器生成各功能的提示词。
+     * 没有健康档案或近期打卡的用户返回 null。
+     */
+    String buildBenchmarkPrompt(int userId, AiResponseCache.Feature feature) {
+        UserHealthData healthData = healthDataService.getLatestHealthData(userId);
+        List<DailyCheckIn> recentCheckIns = healthDataService.getRecentCheckIns(userId, DEFAULT_ANALYSIS_DAYS);
+        if (healthData == null || recentCheckIns.isEmpty()) {
+            return null;
+        }
+
+        switch (feature) {
+            case RECIPE_RECOMMENDATION:
+                return buildRecipeRecommendationPrompt(healthData, recipeService.getRecipesByUser(userId),
+                        pantryService.getPantryItemsByUser(userId), recentCheckIns).getText();
+            case SHOPPING_LIST:
+                List<Recipe> userRecipes = recipeService.getRecipesByUser(userId);
+                List<Recipe> selectedRecipes = userRecipes.subList(0, Math.min(BENCHMARK_SHOPPING_RECIPES, userRecipes.size()));
+                return buildShoppingListPrompt(selectedRecipes, pantryService.getPantryItemsByUser(userId)).getText();
+            default:
+                return buildPrecomputePrompt(userId, feature);
         }
     }
 
+    static boolean isStreamingFeature(AiResponseCache.Feature feature) {
+        return feature != AiResponseCache.Feature.RECIPE_RECOMMENDATION;
+    }
+
+    // 基准测试用：经过路由、限流与熔断，但绕过回复缓存与请求合并，每次都真正发出请求；
+    // 食谱推荐与线上一样按结构化输出请求，解析不出推荐的回复按失败计（返回 null）
+    CompletableFuture<String> benchmarkCallAsync(AiResponseCache.Feature feature, String prompt) {
+        boolean structured = feature == AiResponseCache.Feature.RECIPE_RECOMMENDATION;
+        return ROUTER.execute(provider -> postChatCompletionAsync(provider, prompt, structured))
+                .thenApply(response -> !structured || response == null || !readRecipeRecommendations(response).isEmpty()
+                        ? response : null);
+    }
+
+    CompletableFuture<Boolean> benchmarkStreamAsync(String prompt, Consumer<String> onDelta) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        Consumer<String> tracked = delta -> {
+            emitted.set(true);
+            onDelta.accept(delta);
+        };
+        return ROUTER.executeStreaming(provider -> streamChatCompletionAsync(provider, prompt, tracked, new AtomicBoolean()),
+                () -> !emitted.get());
+    }
+
+    private String findPrecomputed(int userId, AiResponseCache.Feature feature, String prompt) {
+        AiPrecomputedResult result = precomputedResultDao.getResult(userId, feature.name());
+        if (result == null || !promptHash(feature, prompt).equals(result.getPromptHash())) {
+            return null;
+        }
+        lastPromptUsage = "提示词约 " + TokenEstimator.estimate(prompt) + " tokens，使用夜间预生成结果（"
+                + result.getGeneratedFor() + "）";
+        return result.getContent();
+    }
+
     private String buildHealthAdvicePrompt(UserHealthData healthData, List<DailyCheckIn> recentCheckIns) {
         StringBuilder prompt = new StringBuilder();
         prompt.append("你是一位专业的营养师和健康顾问，请根据以下用户信息提供个性化的健康建议：\n\n");
@@ -197,6 +581,18 @@ public class ApiService {
             prompt.append("\n");
         }
 
+        if (healthData != null) {
+            List<HealthAlert> alerts = healthDataService.getRecentHealthAlerts(healthData.getUserId(), 14);
+            if (!alerts.isEmpty()) {
+                prompt.append("近14天异常信号：\n");
+                for (int i = 0; i < Math.min(alerts.size(), 5); i++) {
+                    HealthAlert alert = alerts.get(i);
+                    prompt.append("- ").append(alert.getAlertDate()).append(" ").append(alert.getMessage()).append("\n");
+                }
+                prompt.append("\n");
+            }
+        }
+
         prompt.append("请提供：\n");
         prompt.append("1. 针对用户当前状况的具体健康建议\n");
         prompt.append("2. 饮食方面的建议\n");
@@ -208,130 +604,183 @@ public class ApiService {
         return prompt.toString();
     }
 
-    private String buildRecipeRecommendationPrompt(UserHealthData healthData, List<Recipe> userRecipes) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("你是一位专业的营养师，请根据以下用户信息推荐适合的食谱：\n\n");
+    private PromptBuilder.Prompt buildRecipeRecommendationPrompt(UserHealthData healthData, List<Recipe> userRecipes,
+                                                              List<PantryItem> pantryItems, List<DailyCheckIn> recentCheckIns) {
+        PromptBuilder builder = new PromptBuilder(PROMPT_TOKEN_BUDGET);
+        builder.text("你是一位专业的营养师，请根据以下用户信息推荐适合的食谱：\n\n");
 
         if (healthData != null) {
-            prompt.append("用户健康信息：\n");
-            prompt.append("- BMI：").append(String.format("%.1f", healthData.calculateBMI())).append(" (")
+            StringBuilder profile = new StringBuilder();
+            profile.append("用户健康信息：\n");
+            profile.append("- BMI：").append(String.format("%.1f", healthData.calculateBMI())).append(" (")
                     .append(healthData.getBMICategory()).append(")\n");
-            prompt.append("- 每日能量需求：").append(String.format("%.0f", healthData.calculateTDEE())).append(" 卡路里\n");
-            prompt.append("- 性别：").append("M".equals(healthData.getGender()) ? "男" : "女").append("\n");
-            prompt.append("- 年龄：").append(healthData.getAge()).append("岁\n");
-            prompt.append("\n");
+            profile.append("- 每日能量需求：").append(String.format("%.0f", healthData.calculateTDEE())).append(" 卡路里\n");
+            profile.append("- 性别：").append("M".equals(healthData.getGender()) ? "男" : "女").append("\n");
+            profile.append("- 年龄：").append(healthData.getAge()).append("岁\n");
+            profile.append("\n");
+            builder.text(profile.toString());
         }
 
-        prompt.append("用户已有食谱（共").append(userRecipes.size()).append("个）：\n");
-        if (userRecipes.isEmpty()) {
-            prompt.append("- 暂无食谱\n");
-        } else {
-            for (Recipe recipe : userRecipes) {
-                prompt.append("- ").append(recipe.getName());
-                if (recipe.getCategory() != null) {
-                    prompt.append(" (").append(recipe.getCategory().getName()).append(")");
-                }
-                prompt.append("\n");
+        // 临期食材最值得优先用掉，排在最前
+        PromptBuilder.Section expiring = builder.section("即将过期的库存食材（优先利用）：", 30).limit(15);
+        for (PantryItem item : pantryItems) {
+            if (item.getExpiryDate() != null && !item.isExpired() && item.getDaysUntilExpiry() <= EXPIRING_SOON_DAYS) {
+                expiring.add(formatPantryItem(item), -item.getDaysUntilExpiry());
             }
         }
-        prompt.append("\n");
 
-        prompt.append("请推荐：\n");
-        prompt.append("1. 5个适合用户当前健康状况的食谱\n");
-        prompt.append("2. 每个食谱要说明推荐理由\n");
-        prompt.append("3. 考虑营养均衡和卡路里控制\n");
-        prompt.append("4. 食谱要简单易做\n");
-        prompt.append("5. 避免推荐与用户已有食谱重复或过于相似的菜品\n\n");
-        prompt.append("请用中文回答，格式要清晰易读。");
+        PromptBuilder.Section checkIns = builder.section("最近打卡记录：", 20).limit(7);
+        for (DailyCheckIn checkIn : recentCheckIns) {
+            checkIns.add(formatCheckIn(checkIn), checkIn.getCheckInDate().toEpochDay());
+        }
+
+        PromptBuilder.Section recipes = builder.section("用户已有食谱（共" + userRecipes.size() + "个，按常用程度排列）：", 10)
+                .whenEmpty("- 暂无食谱")
+                .maxItemTokens(40);
+        Map<Integer, PantryItem> pantryByIngredient = indexPantryByIngredient(pantryItems);
+        for (Recipe recipe : userRecipes) {
+            String line = "- " + recipe.getName()
+                    + (recipe.getCategory() != null ? " (" + recipe.getCategory().getName() + ")" : "");
+            recipes.add(recipe.getName(), line, scoreRecipe(recipe, pantryByIngredient));
+        }
 
-        return prompt.toString();
+        builder.text("请推荐：\n" +
+                "1. 5个适合用户当前健康状况的食谱\n" +
+                "2. 每个食谱要说明推荐理由\n" +
+                "3. 考虑营养均衡和卡路里控制\n" +
+                "4. 食谱要简单易做，尽量用上即将过期的食材\n" +
+                "5. 避免推荐与用户已有食谱重复或过于相似的菜品\n\n" +
+                "请只输出一个 JSON 对象，不要输出其他文字，格式如下：\n" +
+                "{\"recommendations\": [{\"name\": \"菜名\", \"reason\": \"推荐理由\", " +
+                "\"calories\": 每份估算热量（整数，千卡）, \"ingredients\": [\"主要食材\"]}]}\n" +
+                "菜名使用常见的中文菜名，推荐理由用中文。");
+
+        return builder.build();
     }
 
-    private String buildShoppingListPrompt(List<Recipe> selectedRecipes, List<PantryItem> pantryItems) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("你是一位智能购物助手。\n\n");
+    private PromptBuilder.Prompt buildShoppingListPrompt(List<Recipe> selectedRecipes, List<PantryItem> pantryItems) {
+        PromptBuilder builder = new PromptBuilder(PROMPT_TOKEN_BUDGET);
+        builder.text("你是一位智能购物助手。\n\n");
 
         if (selectedRecipes.isEmpty()) {
-            prompt.append("【任务】根据用户的当前库存情况，生成日常补货建议\n\n");
+            builder.text("【任务】根据用户的当前库存情况，生成日常补货建议\n\n");
 
-            prompt.append("用户当前库存：\n");
-            if (pantryItems.isEmpty()) {
-                prompt.append("- 库存为空\n");
-            } else {
-                for (PantryItem item : pantryItems) {
-                    prompt.append("- ").append(item.getIngredient().getName()).append(" (").append(item.getQuantity())
-                            .append(")");
-                    if (item.getExpiryDate() != null) {
-                        prompt.append(" 过期日期：").append(item.getExpiryDate());
-                    }
-                    prompt.append("\n");
-                }
-            }
-            prompt.append("\n");
+            addPantrySection(builder, pantryItems, Collections.emptySet());
 
-            prompt.append("请提供：\n");
-            prompt.append("1. 分析当前库存状况（充足/缺少/即将过期的食材）\n");
-            prompt.append("2. 推荐需要补充的常用食材和调料\n");
-            prompt.append("3. 建议购买的新鲜食材（肉类、蔬菜、水果等）\n");
-            prompt.append("4. 为每个食材估算合适的购买数量\n");
-            prompt.append("5. 按食材类别分类整理（肉类、蔬菜、调料、主食等）\n");
-            prompt.append("6. 标注优先级（必需/建议/可选）\n");
-            prompt.append("7. 估算大概的总预算\n\n");
-            prompt.append("请用中文回答，格式要清晰实用。");
+            builder.text("请提供：\n" +
+                    "1. 分析当前库存状况（充足/缺少/即将过期的食材）\n" +
+                    "2. 推荐需要补充的常用食材和调料\n" +
+                    "3. 建议购买的新鲜食材（肉类、蔬菜、水果等）\n" +
+                    "4. 为每个食材估算合适的购买数量\n" +
+                    "5. 按食材类别分类整理（肉类、蔬菜、调料、主食等）\n" +
+                    "6. 标注优先级（必需/建议/可选）\n" +
+                    "7. 估算大概的总预算\n\n" +
+                    "请用中文回答，格式要清晰实用。");
 
         } else {
-            prompt.append("【任务】根据用户选择的食谱，生成精确的购物清单\n\n");
+            builder.text("【任务】根据用户选择的食谱，生成精确的购物清单\n\n");
 
-            prompt.append("用户选择的食谱及所需食材：\n");
-            for (Recipe recipe : selectedRecipes) {
-                prompt.append("【").append(recipe.getName()).append("】\n");
+            // 用户选中的食谱是任务本身，优先级最高；按选择顺序排列
+            PromptBuilder.Section recipes = builder.section("用户选择的食谱及所需食材：", 40).maxItemTokens(300);
+            Set<Integer> neededIngredientIds = new HashSet<>();
+            for (int i = 0; i < selectedRecipes.size(); i++) {
+                Recipe recipe = selectedRecipes.get(i);
+                StringBuilder block = new StringBuilder();
+                block.append("【").append(recipe.getName()).append("】\n");
 
                 if (recipe.getIngredients() != null && !recipe.getIngredients().isEmpty()) {
-                    prompt.append("  所需食材：\n");
+                    block.append("  所需食材：");
                     for (RecipeIngredient recipeIngredient : recipe.getIngredients()) {
                         if (recipeIngredient.getIngredient() != null) {
-                            prompt.append("    - ").append(recipeIngredient.getIngredient().getName())
-                                    .append(" (").append(recipeIngredient.getQuantity()).append(")\n");
+                            neededIngredientIds.add(recipeIngredient.getIngredientId());
+                            block.append("\n    - ").append(recipeIngredient.getIngredient().getName())
+                                    .append(" (").append(recipeIngredient.getQuantity()).append(")");
                         }
                     }
                 } else {
-                    prompt.append("  备注：此食谱暂无详细食材清单，请从以下制作步骤中推测：\n");
+                    block.append("  备注：此食谱暂无详细食材清单，请从以下制作步骤中推测：");
                     if (recipe.getInstructions() != null) {
-                        prompt.append("  制作步骤：").append(
-                                recipe.getInstructions().substring(0, Math.min(150, recipe.getInstructions().length())))
-                                .append("...\n");
+                        block.append("\n  制作步骤：").append(recipe.getInstructions());
                     }
                 }
-                prompt.append("\n");
+                recipes.add("recipe:" + recipe.getId(), block.toString(), selectedRecipes.size() - i);
             }
 
-            prompt.append("用户当前库存：\n");
-            if (pantryItems.isEmpty()) {
-                prompt.append("- 库存为空\n");
-            } else {
-                for (PantryItem item : pantryItems) {
-                    prompt.append("- ").append(item.getIngredient().getName()).append(" (").append(item.getQuantity())
-                            .append(")");
-                    if (item.getExpiryDate() != null) {
-                        prompt.append(" 过期日期：").append(item.getExpiryDate());
-                    }
-                    prompt.append("\n");
-                }
+            addPantrySection(builder, pantryItems, neededIngredientIds);
+
+            builder.text("请提供：\n" +
+                    "1. 根据食谱所需的完整食材清单\n" +
+                    "2. 去除用户已有库存的物品（考虑库存数量是否足够）\n" +
+                    "3. 标注需要优先购买的物品（考虑保质期）\n" +
+                    "4. 为每个食材估算合适的购买数量\n" +
+                    "5. 添加必要的基础调料和食材\n" +
+                    "6. 按食材类别分类整理（肉类、蔬菜、调料等）\n" +
+                    "7. 估算大概的总预算\n\n" +
+                    "请用中文回答，格式要清晰实用。");
+        }
+
+        return builder.build();
+    }
+
+    // 与所选食谱相关的库存排最前，其次按过期先后，无保质期的放最后
+    private void addPantrySection(PromptBuilder builder, List<PantryItem> pantryItems, Set<Integer> neededIngredientIds) {
+        PromptBuilder.Section pantry = builder.section("用户当前库存：", 20).whenEmpty("- 库存为空");
+        for (PantryItem item : pantryItems) {
+            double score = item.getExpiryDate() != null ? -item.getDaysUntilExpiry() : -NO_EXPIRY_PENALTY;
+            if (neededIngredientIds.contains(item.getIngredientId())) {
+                score += RELEVANT_INGREDIENT_BONUS;
             }
-            prompt.append("\n");
+            pantry.add(formatPantryItem(item), score);
+        }
+    }
 
-            prompt.append("请提供：\n");
-            prompt.append("1. 根据食谱所需的完整食材清单\n");
-            prompt.append("2. 去除用户已有库存的物品（考虑库存数量是否足够）\n");
-            prompt.append("3. 标注需要优先购买的物品（考虑保质期）\n");
-            prompt.append("4. 为每个食材估算合适的购买数量\n");
-            prompt.append("5. 添加必要的基础调料和食材\n");
-            prompt.append("6. 按食材类别分类整理（肉类、蔬菜、调料等）\n");
-            prompt.append("7. 估算大概的总预算\n\n");
-            prompt.append("请用中文回答，格式要清晰实用。");
+    private String formatPantryItem(PantryItem item) {
+        StringBuilder line = new StringBuilder();
+        line.append("- ").append(item.getIngredient().getName()).append(" (").append(item.getQuantity()).append(")");
+        if (item.getExpiryDate() != null) {
+            line.append(" 过期日期：").append(item.getExpiryDate());
         }
+        return line.toString();
+    }
 
-        return prompt.toString();
+    private String formatCheckIn(DailyCheckIn checkIn) {
+        return String.format("- %s 睡眠%.1f小时 饮水%dml 运动%d分钟 心情%s",
+                checkIn.getCheckInDate(), checkIn.getSleepHours(), checkIn.getWaterIntake(),
+                checkIn.getExerciseMinutes(), checkIn.getMoodDescription());
+    }
+
+    private Map<Integer, PantryItem> indexPantryByIngredient(List<PantryItem> pantryItems) {
+        Map<Integer, PantryItem> index = new HashMap<>();
+        for (PantryItem item : pantryItems) {
+            if (!item.isExpired()) {
+                index.merge(item.getIngredientId(), item, (a, b) ->
+                        b.getExpiryDate() != null && (a.getExpiryDate() == null || b.getExpiryDate().isBefore(a.getExpiryDate())) ? b : a);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 食谱常用程度的估计：系统不记录烹饪次数，以“现有库存能凑齐多少食材”作为近期会做的信号，
+     * 用到临期食材的额外加分，同分时较新创建的食谱靠前。
+     */
+    private double scoreRecipe(Recipe recipe, Map<Integer, PantryItem> pantryByIngredient) {
+        double score = 0;
+        List<RecipeIngredient> ingredients = recipe.getIngredients();
+        if (ingredients != null && !ingredients.isEmpty()) {
+            int available = 0;
+            for (RecipeIngredient ingredient : ingredients) {
+                PantryItem item = pantryByIngredient.get(ingredient.getIngredientId());
+                if (item != null) {
+                    available++;
+                    if (item.getExpiryDate() != null && item.getDaysUntilExpiry() <= EXPIRING_SOON_DAYS) {
+                        score += 5;
+                    }
+                }
+            }
+            score += 10.0 * available / ingredients.size();
+        }
+        return score + recipe.getId() * 1e-9;
     }
 
     private String buildNutritionAnalysisPrompt(UserHealthData healthData, List<DailyCheckIn> checkIns, int days) {
@@ -367,156 +816,521 @@ public class ApiService {
         return prompt.toString();
     }
 
-    private String callAIAPI(String prompt) {
-        try {
-            URL url = new URL(API_URL);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    private CompletableFuture<String> callAIAPIAsync(int userId, AiResponseCache.Feature feature, PromptBuilder.Prompt prompt) {
+        return callAIAPIAsync(userId, feature, prompt.getText(), prompt.toString());
+    }
 
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Authorization", "Bearer " + API_KEY);
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
+    private CompletableFuture<String> callAIAPIAsync(int userId, AiResponseCache.Feature feature, String prompt) {
+        return callAIAPIAsync(userId, feature, prompt, "提示词约 " + TokenEstimator.estimate(prompt) + " tokens");
+    }
 
-            String requestBody = buildRequestBody(prompt);
+    private CompletableFuture<String> callAIAPIAsync(int userId, AiResponseCache.Feature feature, String prompt, String usage) {
+        return callAIAPIAsync(userId, feature, prompt, usage, false, response -> true);
+    }
 
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+    // structured 为 true 时按服务商配置附带 response_format，要求模型直接输出 JSON；
+    // userId 决定语义缓存的作用范围，相似问题只在同一用户的历史回答里查找；cacheable 不通过的回复照常返回但不写入缓存
+    private CompletableFuture<String> callAIAPIAsync(int userId, AiResponseCache.Feature feature, String prompt, String usage,
+                                                     boolean structured, Predicate<String> cacheable) {
+        String fingerprint = AiResponseCache.fingerprint(MODEL_FINGERPRINT, feature, prompt);
+        String cacheKey = RESPONSE_CACHE != null ? fingerprint : null;
+        if (cacheKey != null) {
+            String cached = RESPONSE_CACHE.get(feature, cacheKey);
+            if (cached != null) {
+                lastPromptUsage = usage + "，命中缓存";
+                return CompletableFuture.completedFuture(cached);
+            }
+            String similar = findSimilarResponse(userId, feature, prompt, usage);
+            if (similar != null) {
+                return CompletableFuture.completedFuture(similar);
             }
+        }
 
-            int responseCode = conn.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine.trim());
+        lastPromptUsage = usage;
+        return IN_FLIGHT.execute(fingerprint, () -> ROUTER.execute(provider -> postChatCompletionAsync(provider, prompt, structured))
+                .thenApply(response -> {
+                    if (response != null && cacheKey != null && cacheable.test(response)) {
+                        storeResponse(userId, feature, prompt, cacheKey, response);
                     }
-                    return parseApiResponse(response.toString());
-                }
-            } else {
-                System.err.println("API调用失败，响应码：" + responseCode);
-                return null;
-            }
+                    return response;
+                }));
+    }
 
-        } catch (Exception e) {
-            System.err.println("调用API时发生错误: " + e.getMessage());
+    // 精确缓存未命中时，复用事实最接近的已回答提示词的回复
+    private String findSimilarResponse(int userId, AiResponseCache.Feature feature, String prompt, String usage) {
+        if (SEMANTIC_CACHE == null || userId == NO_SEMANTIC_SCOPE) {
             return null;
         }
+        SemanticResponseCache.Match match = SEMANTIC_CACHE.lookup(userId, feature, prompt, RESPONSE_CACHE::peek);
+        if (match == null) {
+            return null;
+        }
+        lastPromptUsage = usage + String.format("，命中相似问题缓存（相似度 %.2f）", match.getSimilarity());
+        return match.getResponse();
     }
 
-    private String buildRequestBody(String prompt) {
-        return "{\n" +
-                "  \"model\": \"" + API_MODEL + "\",\n" +
-                "  \"messages\": [\n" +
-                "    {\n" +
-                "      \"role\": \"user\",\n" +
-                "      \"content\": \"" + escapeJson(prompt) + "\"\n" +
-                "    }\n" +
-                "  ],\n" +
-                "  \"temperature\": 0.7,\n" +
-                "  \"max_tokens\": 8000\n" +
-                "}";
+    private static void storeResponse(int userId, AiResponseCache.Feature feature, String prompt, String cacheKey,
+                                      String response) {
+        RESPONSE_CACHE.put(feature, cacheKey, response);
+        if (SEMANTIC_CACHE != null && userId != NO_SEMANTIC_SCOPE) {
+            SEMANTIC_CACHE.add(userId, feature, prompt, cacheKey);
+        }
     }
 
-    private String parseApiResponse(String response) {
+    private String cacheKey(AiResponseCache.Feature feature, String prompt) {
+        return RESPONSE_CACHE != null ? AiResponseCache.fingerprint(MODEL_FINGERPRINT, feature, prompt) : null;
+    }
+
+    // 429 时读取 Retry-After（秒），缺省暂停 5 秒
+    private static void handleRateLimited(AiProvider provider, HttpResponse<?> response) {
+        long retryAfterMillis = TimeUnit.SECONDS.toMillis(5);
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        if (header.isPresent()) {
+            try {
+                retryAfterMillis = TimeUnit.SECONDS.toMillis(Math.max(1, Long.parseLong(header.get().trim())));
+            } catch (NumberFormatException e) {
+                // HTTP 日期格式的 Retry-After 不常见，按缺省处理
+            }
+        }
+        System.err.println(provider.getName() + " 触发限流，暂停 " + retryAfterMillis / 1000 + " 秒");
+        provider.recordRateLimited(retryAfterMillis);
+    }
+
+    private CompletableFuture<String> postChatCompletionAsync(AiProvider provider, String prompt, boolean structured) {
+        HttpRequest request;
         try {
-            if (response.contains("\"content\":\"")) {
-                int startIndex = response.indexOf("\"content\":\"") + 11;
-
-                StringBuilder content = new StringBuilder();
-                boolean inEscape = false;
-
-                for (int i = startIndex; i < response.length(); i++) {
-                    char c = response.charAt(i);
-
-                    if (inEscape) {
-                        switch (c) {
-                            case 'n':
-                                content.append('\n');
-                                break;
-                            case 'r':
-                                content.append('\r');
-                                break;
-                            case 't':
-                                content.append('\t');
-                                break;
-                            case '\\':
-                                content.append('\\');
-                                break;
-                            case '"':
-                                content.append('"');
-                                break;
-                            default:
-                                content.append(c);
-                                break;
-                        }
-                        inEscape = false;
-                    } else if (c == '\\') {
-                        inEscape = true;
-                    } else if (c == '"') {
-                        return content.toString();
-                    } else {
-                        content.append(c);
+            request = HttpRequest.newBuilder(URI.create(provider.getUrl()))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Authorization", "Bearer " + provider.getApiKey())
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(buildRequestBody(provider, prompt, false, structured), StandardCharsets.UTF_8))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("API地址配置无效: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // HttpRequest.timeout 只约束到响应头为止，orTimeout 兜住响应体读取阶段
+        CompletableFuture<HttpResponse<String>> exchange =
+                HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        CompletableFuture<String> result = exchange
+                .orTimeout(REQUEST_TIMEOUT.toMillis() + CONNECT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(response -> {
+                    if (response.statusCode() == 200) {
+                        return parseApiResponse(response.body());
                     }
-                }
+                    if (response.statusCode() == 429) {
+                        handleRateLimited(provider, response);
+                        return (String) null;
+                    }
+                    System.err.println(provider.getName() + " API调用失败，响应码：" + response.statusCode());
+                    return (String) null;
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("调用" + provider.getName() + " API时发生错误: " + cause);
+                    return null;
+                });
+
+        // 对冲落败时路由器取消 result；只有取消 sendAsync 直接返回的 future 才会中止底层连接，不再继续计费
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
 
-                return content.toString();
+    private CompletableFuture<Boolean> streamAIAPIAsync(int userId, AiResponseCache.Feature feature, PromptBuilder.Prompt prompt,
+                                                        Consumer<String> onDelta) {
+        return streamAIAPIAsync(userId, feature, prompt.getText(), prompt.toString(), onDelta);
+    }
+
+    private CompletableFuture<Boolean> streamAIAPIAsync(int userId, AiResponseCache.Feature feature, String prompt,
+                                                        Consumer<String> onDelta) {
+        return streamAIAPIAsync(userId, feature, prompt, "提示词约 " + TokenEstimator.estimate(prompt) + " tokens", onDelta);
+    }
+
+    // 还没有任何内容输出时才允许换服务商重试；只有完整收到的回复才写入缓存
+    private CompletableFuture<Boolean> streamAIAPIAsync(int userId, AiResponseCache.Feature feature, String prompt, String usage,
+                                                        Consumer<String> onDelta) {
+        String cacheKey = cacheKey(feature, prompt);
+        if (cacheKey != null) {
+            String cached = RESPONSE_CACHE.get(feature, cacheKey);
+            if (cached == null) {
+                cached = findSimilarResponse(userId, feature, prompt, usage);
+            } else {
+                lastPromptUsage = usage + "，命中缓存";
+            }
+            if (cached != null) {
+                onDelta.accept(cached);
+                return CompletableFuture.completedFuture(true);
             }
-            return response;
-        } catch (Exception e) {
-            System.err.println("解析API响应时发生错误: " + e.getMessage());
-            e.printStackTrace();
-            return response;
         }
+
+        lastPromptUsage = usage;
+        AtomicBoolean emitted = new AtomicBoolean();
+        AtomicBoolean completed = new AtomicBoolean();
+        StringBuilder collected = new StringBuilder();
+        Consumer<String> tracked = delta -> {
+            emitted.set(true);
+            if (cacheKey != null) {
+                collected.append(delta);
+            }
+            onDelta.accept(delta);
+        };
+
+        return ROUTER.executeStreaming(provider -> {
+                    collected.setLength(0);
+                    return streamChatCompletionAsync(provider, prompt, tracked, completed);
+                }, () -> !emitted.get())
+                .thenApply(success -> {
+                    if (success && completed.get() && cacheKey != null) {
+                        storeResponse(userId, feature, prompt, cacheKey, collected.toString());
+                    }
+                    return success;
+                });
     }
 
-    private String escapeJson(String input) {
-        if (input == null)
-            return "";
-        return input.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    private CompletableFuture<Boolean> streamChatCompletionAsync(AiProvider provider, String prompt, Consumer<String> onDelta,
+                                                                 AtomicBoolean completed) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(provider.getUrl()))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Authorization", "Bearer " + provider.getApiKey())
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(buildRequestBody(provider, prompt, true, false), StandardCharsets.UTF_8))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("API地址配置无效: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+
+        AtomicReference<Stream<String>> body = new AtomicReference<>();
+        AtomicBoolean receivedDelta = new AtomicBoolean();
+        AtomicLong lastActivity = new AtomicLong(System.nanoTime());
+
+        CompletableFuture<Boolean> future = HTTP_CLIENT
+                .sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenApply(response -> {
+                    try (Stream<String> lines = response.body()) {
+                        lastActivity.set(System.nanoTime());
+                        body.set(lines);
+                        if (response.statusCode() == 429) {
+                            handleRateLimited(provider, response);
+                            return false;
+                        }
+                        if (response.statusCode() != 200) {
+                            System.err.println(provider.getName() + " API调用失败，响应码：" + response.statusCode());
+                            return false;
+                        }
+
+                        AtomicBoolean done = new AtomicBoolean();
+                        JsonReader reader = new JsonReader("");
+                        SseParser parser = new SseParser(event -> {
+                            if ("[DONE]".equals(event)) {
+                                done.set(true);
+                                return;
+                            }
+                            String delta = parseStreamDelta(reader, event);
+                            if (delta != null && !delta.isEmpty()) {
+                                receivedDelta.set(true);
+                                onDelta.accept(delta);
+                            }
+                        });
+
+                        // 逐行消费，只保留当前事件的缓冲，不累积整段回复
+                        lines.takeWhile(line -> !done.get())
+                                .peek(line -> lastActivity.set(System.nanoTime()))
+                                .forEach(parser::feedLine);
+                        parser.finish();
+                        // 只有收到 [DONE] 才算完整；服务端中途断开时流也会正常结束，这种回复不能当作完整答案
+                        if (!done.get()) {
+                            System.err.println(provider.getName() + " 流式输出未收到结束标记，回复不完整");
+                            return false;
+                        }
+                        completed.set(true);
+                        return receivedDelta.get();
+                    }
+                });
+
+        // 响应头之前由 HttpRequest.timeout 约束；开始接收后，超过空闲时限没有新数据就关闭响应流
+        long idleNanos = STREAM_IDLE_TIMEOUT.toNanos();
+        long checkMillis = Math.max(100, STREAM_IDLE_TIMEOUT.toMillis() / 4);
+        ScheduledFuture<?> watchdog = STREAM_WATCHDOG.scheduleAtFixedRate(() -> {
+            Stream<String> lines = body.get();
+            if (lines != null && System.nanoTime() - lastActivity.get() > idleNanos) {
+                future.completeExceptionally(new TimeoutException(
+                        "超过 " + STREAM_IDLE_TIMEOUT.getSeconds() + " 秒未收到新内容"));
+                lines.close();
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+
+        // 中断或超时后关闭响应流，让仍在读取的线程尽快退出；不完整的输出一律按失败上报
+        return future
+                .whenComplete((result, e) -> {
+                    watchdog.cancel(false);
+                    Stream<String> lines = body.get();
+                    if (e != null && lines != null) {
+                        lines.close();
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("流式调用" + provider.getName() + " API时发生错误: " + cause);
+                    return false;
+                });
     }
 
-    private List<String> parseRecipeRecommendations(String response) {
-        List<String> recommendations = new ArrayList<>();
-        String[] lines = response.split("\n");
+    private String buildRequestBody(AiProvider provider, String prompt, boolean stream, boolean structured) {
+        JsonWriter writer = REQUEST_WRITER.get().reset();
+        writer.beginObject()
+                .name("model").value(provider.getModel())
+                .name("messages").beginArray()
+                    .beginObject()
+                        .name("role").value("user")
+                        .name("content").value(prompt == null ? "" : prompt)
+                    .endObject()
+                .endArray()
+                .name("temperature").value(0.7)
+                .name("max_tokens").value(8000)
+                .name("stream").value(stream);
+
+        if (structured) {
+            switch (provider.getResponseFormat()) {
+                case AiProvider.RESPONSE_FORMAT_JSON_SCHEMA:
+                    writer.name("response_format");
+                    writeRecommendationSchema(writer);
+                    break;
+                case AiProvider.RESPONSE_FORMAT_JSON_OBJECT:
+                    writer.name("response_format").beginObject().name("type").value("json_object").endObject();
+                    break;
+                default:
+                    // 不支持结构化输出的服务商只依靠提示词中的格式说明
+                    break;
+            }
+        }
+        return writer.endObject().toString();
+    }
 
-        boolean inRecipeList = false;
-        for (String line : lines) {
-            line = line.trim();
+    private static void writeRecommendationSchema(JsonWriter writer) {
+        writer.beginObject()
+                .name("type").value("json_schema")
+                .name("json_schema").beginObject()
+                    .name("name").value("recipe_recommendations")
+                    .name("strict").value(true)
+                    .name("schema").beginObject()
+                        .name("type").value("object")
+                        .name("properties").beginObject()
+                            .name("recommendations").beginObject()
+                                .name("type").value("array")
+                                .name("items").beginObject()
+                                    .name("type").value("object")
+                                    .name("properties").beginObject()
+                                        .name("name").beginObject().name("type").value("string").endObject()
+                                        .name("reason").beginObject().name("type").value("string").endObject()
+                                        .name("calories").beginObject().name("type").value("integer").endObject()
+                                        .name("ingredients").beginObject()
+                                            .name("type").value("array")
+                                            .name("items").beginObject().name("type").value("string").endObject()
+                                        .endObject()
+                                    .endObject()
+                                    .name("required").beginArray()
+                                        .value("name").value("reason").value("calories").value("ingredients")
+                                    .endArray()
+                                    .name("additionalProperties").value(false)
+                                .endObject()
+                            .endObject()
+                        .endObject()
+                        .name("required").beginArray().value("recommendations").endArray()
+                        .name("additionalProperties").value(false)
+                    .endObject()
+                .endObject()
+                .endObject();
+    }
 
-            if (line.matches("^\\d+[.)].*") && line.length() > 3) {
-                recommendations.add(line);
-                inRecipeList = true;
-            } else if (inRecipeList && !line.isEmpty() && !line.startsWith("请") && !line.startsWith("推荐理由")) {
-                if (line.length() > 5) {
-                    recommendations.add("  " + line);
+    // 按路径定位 choices[0].message.content，reasoning_content 等同级字段会被跳过
+    private String parseApiResponse(String response) {
+        String content = JsonReader.readString(response, "choices", 0, "message", "content");
+        if (content == null) {
+            String error = JsonReader.readString(response, "error", "message");
+            System.err.println(error != null ? "API返回错误: " + error : "API响应中缺少回复内容");
+        }
+        return content;
+    }
+
+    // 一次遍历同时找 choices[0].delta.content 和 error.message；reader 由调用方按流复用
+    private String parseStreamDelta(JsonReader reader, String event) {
+        try {
+            reader.reset(event);
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                return null;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("choices".equals(name)) {
+                    return reader.seek(0, "delta", "content") ? reader.nextStringOrNull() : null;
                 }
+                if ("error".equals(name)) {
+                    String error = reader.seek("message") ? reader.nextStringOrNull() : null;
+                    if (error != null) {
+                        System.err.println("API流式响应返回错误: " + error);
+                    }
+                    return null;
+                }
+                reader.skipValue();
             }
+        } catch (IllegalStateException e) {
+            // 与 JsonReader.readString 一致，无法解析的事件按没有内容处理
         }
+        return null;
+    }
 
+    /**
+     * 解析结构化推荐：{"recommendations": [{"name", "reason", "calories", "ingredients"}]}。
+     * 部分模型会在 JSON 外包一层代码块，只取第一个 { 到最后一个 } 之间的内容；
+     * 菜名通过食谱库索引对应回食谱ID。
+     */
+    private List<RecipeRecommendation> parseRecipeRecommendations(String response, RecipeNameIndex index) {
+        List<RecipeRecommendation> recommendations = readRecipeRecommendations(response);
         if (recommendations.isEmpty()) {
-            return getDefaultRecipeRecommendations();
+            System.err.println("AI回复中没有可用的食谱推荐，使用默认推荐");
+            return getDefaultRecipeRecommendations(index);
         }
 
+        linkToRecipes(recommendations, index);
         return recommendations;
     }
 
-    private List<String> getDefaultRecipeRecommendations() {
-        List<String> defaults = new ArrayList<>();
-        defaults.add("1. 清蒸鲈鱼 - 低脂高蛋白，适合控制体重");
-        defaults.add("2. 番茄鸡蛋面 - 营养均衡，制作简单");
-        defaults.add("3. 蒜蓉西兰花 - 富含维生素，健康蔬菜");
-        defaults.add("4. 红枣银耳汤 - 美容养颜，滋补养生");
-        defaults.add("5. 香菇鸡肉粥 - 易消化，营养丰富");
+    // 回复不是预期的 JSON 或其中没有带菜名的推荐时返回空列表
+    private List<RecipeRecommendation> readRecipeRecommendations(String response) {
+        List<RecipeRecommendation> recommendations = new ArrayList<>();
+        int start = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+
+        try {
+            JsonReader reader = new JsonReader(start >= 0 && end > start ? response.subSequence(start, end + 1) : "");
+            if (reader.seek("recommendations") && reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    RecipeRecommendation recommendation = readRecommendation(reader);
+                    if (recommendation.getName() != null && !recommendation.getName().isBlank()) {
+                        recommendations.add(recommendation);
+                    }
+                }
+            }
+        } catch (IllegalStateException e) {
+            System.err.println("解析食谱推荐失败: " + e.getMessage());
+        }
+        return recommendations;
+    }
+
+    private RecipeRecommendation readRecommendation(JsonReader reader) {
+        RecipeRecommendation recommendation = new RecipeRecommendation();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    String name = reader.nextStringOrNull();
+                    recommendation.setName(name != null ? name.trim() : null);
+                    break;
+                case "reason":
+                    recommendation.setReason(reader.nextStringOrNull());
+                    break;
+                case "calories":
+                    recommendation.setCalories(readCalories(reader));
+                    break;
+                case "ingredients":
+                    if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String ingredient = reader.nextStringOrNull();
+                        if (ingredient != null && !ingredient.isBlank()) {
+                            recommendation.addIngredient(ingredient.trim());
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return recommendation;
+    }
+
+    // 没有 JSON Schema 约束的模型偶尔把热量写成 "约350千卡"，取其中的数字
+    private int readCalories(JsonReader reader) {
+        switch (reader.peek()) {
+            case NUMBER:
+                return (int) Math.max(0, Math.round(reader.nextDouble()));
+            case STRING:
+                String digits = reader.nextString().replaceAll("[^0-9]", "");
+                try {
+                    return digits.isEmpty() ? 0 : Integer.parseInt(digits);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            default:
+                reader.skipValue();
+                return 0;
+        }
+    }
+
+    private void linkToRecipes(List<RecipeRecommendation> recommendations, RecipeNameIndex index) {
+        if (index == null) {
+            return;
+        }
+        for (RecipeRecommendation recommendation : recommendations) {
+            Recipe recipe = index.match(recommendation.getName());
+            if (recipe != null) {
+                recommendation.setRecipeId(recipe.getId());
+            }
+        }
+    }
+
+    private List<RecipeRecommendation> getDefaultRecipeRecommendations(RecipeNameIndex index) {
+        List<RecipeRecommendation> defaults = new ArrayList<>();
+        defaults.add(new RecipeRecommendation("清蒸鲈鱼", "低脂高蛋白，适合控制体重", 0));
+        defaults.add(new RecipeRecommendation("番茄鸡蛋面", "营养均衡，制作简单", 0));
+        defaults.add(new RecipeRecommendation("蒜蓉西兰花", "富含维生素，健康蔬菜", 0));
+        defaults.add(new RecipeRecommendation("红枣银耳汤", "美容养颜，滋补养生", 0));
+        defaults.add(new RecipeRecommendation("香菇鸡肉粥", "易消化，营养丰富", 0));
+        linkToRecipes(defaults, index);
         return defaults;
     }
 
+    private static long readPositiveLong(Properties props, String name, long defaultValue) {
+        try {
+            long value = Long.parseLong(props.getProperty(name, String.valueOf(defaultValue)).trim());
+            return value > 0 ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("配置项 " + name + " 无效，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static double readFraction(Properties props, String name, double defaultValue) {
+        try {
+            double value = Double.parseDouble(props.getProperty(name, String.valueOf(defaultValue)).trim());
+            return value > 0 && value <= 1 ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            System.err.println("配置项 " + name + " 无效，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     private String getActivityLevelDescription(String activityLevel) {
         switch (activityLevel) {
             case "sedentary":
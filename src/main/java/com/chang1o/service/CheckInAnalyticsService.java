@@ -0,0 +1,106 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.model.CheckInSeries;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CheckInAnalyticsService {
+
+    private static final int MAX_CACHED_SERIES = 64;
+
+    // 按访问顺序淘汰的 LRU，只保留最近使用的若干用户的序列
+    private static final Map<Integer, CheckInSeries> SERIES_CACHE =
+        new LinkedHashMap<Integer, CheckInSeries>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CheckInSeries> eldest) {
+                return size() > MAX_CACHED_SERIES;
+            }
+        };
+
+    // 每次失效加一，由 SERIES_CACHE 的锁保护
+    private static long invalidations;
+
+    private DailyCheckInDao dailyCheckInDao;
+
+    public CheckInAnalyticsService() {
+        this.dailyCheckInDao = new DailyCheckInDao();
+    }
+
+    public CheckInSeries getSeries(int userId) {
+        long generation;
+        synchronized (SERIES_CACHE) {
+            CheckInSeries cached = SERIES_CACHE.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            generation = invalidations;
+        }
+
+        // 在锁外流式加载，一个用户的加载不会阻塞其他用户的查询
+        CheckInSeries loaded = dailyCheckInDao.loadCheckInSeries(userId);
+        synchronized (SERIES_CACHE) {
+            // 加载期间发生过失效说明读到的可能是旧数据，只返回给本次调用，不放入缓存
+            if (generation != invalidations) {
+                return loaded;
+            }
+            CheckInSeries existing = SERIES_CACHE.putIfAbsent(userId, loaded);
+            return existing != null ? existing : loaded;
+        }
+    }
+
+    public static void invalidate(int userId) {
+        synchronized (SERIES_CACHE) {
+            SERIES_CACHE.remove(userId);
+            invalidations++;
+        }
+    }
+
+    public TrendReport getTrendReport(int userId, int recentCount) {
+        CheckInSeries series = getSeries(userId);
+        if (series.size() < 2) {
+            return null;
+        }
+
+        return new TrendReport(
+            series.size(),
+            series.trendPerDay(CheckInSeries.Metric.SLEEP, recentCount) * 7,
+            series.trendPerDay(CheckInSeries.Metric.WATER, recentCount) * 7,
+            series.trendPerDay(CheckInSeries.Metric.EXERCISE, recentCount) * 7,
+            series.correlation(CheckInSeries.Metric.SLEEP, CheckInSeries.Metric.MOOD),
+            series.correlation(CheckInSeries.Metric.EXERCISE, CheckInSeries.Metric.MOOD),
+            series.correlation(CheckInSeries.Metric.WATER, CheckInSeries.Metric.MOOD)
+        );
+    }
+
+    public static class TrendReport {
+        private int sampleCount;
+        private double sleepTrendPerWeek;
+        private double waterTrendPerWeek;
+        private double exerciseTrendPerWeek;
+        private double sleepMoodCorrelation;
+        private double exerciseMoodCorrelation;
+        private double waterMoodCorrelation;
+
+        public TrendReport(int sampleCount, double sleepTrendPerWeek, double waterTrendPerWeek,
+                           double exerciseTrendPerWeek, double sleepMoodCorrelation,
+                           double exerciseMoodCorrelation, double waterMoodCorrelation) {
+            this.sampleCount = sampleCount;
+            this.sleepTrendPerWeek = sleepTrendPerWeek;
+            this.waterTrendPerWeek = waterTrendPerWeek;
+            this.exerciseTrendPerWeek = exerciseTrendPerWeek;
+            this.sleepMoodCorrelation = sleepMoodCorrelation;
+            this.exerciseMoodCorrelation = exerciseMoodCorrelation;
+            this.waterMoodCorrelation = waterMoodCorrelation;
+        }
+
+        public int getSampleCount() { return sampleCount; }
+        public double getSleepTrendPerWeek() { return sleepTrendPerWeek; }
+        public double getWaterTrendPerWeek() { return waterTrendPerWeek; }
+        public double getExerciseTrendPerWeek() { return exerciseTrendPerWeek; }
+        public double getSleepMoodCorrelation() { return sleepMoodCorrelation; }
+        public double getExerciseMoodCorrelation() { return exerciseMoodCorrelation; }
+        public double getWaterMoodCorrelation() { return waterMoodCorrelation; }
+    }
+}
@@ -0,0 +1,288 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.model.DailyCheckIn;
+import com.chang1o.util.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class CheckInImportService {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_REJECTS = 20;
+    // 导入会整行覆盖已有打卡，缺任何一项都无法判断该保留原值还是清空，直接拒绝
+    private static final String[] REQUIRED_FIELDS = {"mood", "sleep_hours", "water_intake", "exercise_minutes"};
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final DailyCheckInDao dailyCheckInDao;
+    private final HealthDataService healthDataService;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final JsonReader jsonReader = new JsonReader("");
+
+    public CheckInImportService() {
+        this.dailyCheckInDao = new DailyCheckInDao();
+        this.healthDataService = new HealthDataService();
+        this.anomalyDetectionService = new AnomalyDetectionService();
+    }
+
+    public ImportResult importCheckIns(int userId, String filePath) {
+        ImportResult result = new ImportResult();
+        Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path)) {
+            result.fail("文件不存在：" + filePath);
+            return result;
+        }
+
+        boolean jsonLines = filePath.toLowerCase(Locale.ROOT).endsWith(".jsonl")
+            || filePath.toLowerCase(Locale.ROOT).endsWith(".json");
+        List<DailyCheckIn> chunk = new ArrayList<>(CHUNK_SIZE);
+        LocalDate earliestDate = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String[] header = null;
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                // Excel 导出的 UTF-8 文件带 BOM，不去掉的话首个表头匹配不上 date，所有行都会因缺日期被拒绝
+                if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+                    line = line.substring(1);
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                Map<String, String> fields;
+                if (jsonLines) {
+                    fields = parseJsonLine(line);
+                } else if (header == null) {
+                    header = splitCsvLine(line).toArray(new String[0]);
+                    for (int i = 0; i < header.length; i++) {
+                        header[i] = header[i].trim().toLowerCase(Locale.ROOT);
+                    }
+                    continue;
+                } else {
+                    fields = toFieldMap(header, splitCsvLine(line));
+                }
+
+                result.rowsRead++;
+                if (fields == null) {
+                    result.reject(lineNumber, "无法解析该行");
+                    continue;
+                }
+
+                DailyCheckIn checkIn = toCheckIn(userId, fields, lineNumber, result);
+                if (checkIn == null) {
+                    continue;
+                }
+
+                if (earliestDate == null || checkIn.getCheckInDate().isBefore(earliestDate)) {
+                    earliestDate = checkIn.getCheckInDate();
+                }
+                chunk.add(checkIn);
+                if (chunk.size() >= CHUNK_SIZE && !flushChunk(chunk, result)) {
+                    break;
+                }
+            }
+
+            if (!result.failed) {
+                flushChunk(chunk, result);
+            }
+        } catch (IOException e) {
+            result.fail("读取文件失败：" + e.getMessage());
+        }
+
+        if (result.imported > 0) {
+            dailyCheckInDao.rebuildDerivedState(userId);
+            CheckInAnalyticsService.invalidate(userId);
+            anomalyDetectionService.rebuildStates(userId, earliestDate);
+        }
+
+        result.finish();
+        return result;
+    }
+
+    private boolean flushChunk(List<DailyCheckIn> chunk, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return true;
+        }
+
+        int written = dailyCheckInDao.upsertCheckInsBatch(chunk);
+        chunk.clear();
+        if (written < 0) {
+            result.fail("写入数据库失败，已导入的批次保留，可修正后重新导入");
+            return false;
+        }
+
+        result.imported += written;
+        result.chunks++;
+        return true;
+    }
+
+    private DailyCheckIn toCheckIn(int userId, Map<String, String> fields, int lineNumber, ImportResult result) {
+        List<String> missing = new ArrayList<>();
+        for (String field : REQUIRED_FIELDS) {
+            String value = fields.get(field);
+            if (value == null || value.trim().isEmpty()) {
+                missing.add(field);
+            }
+        }
+        if (!missing.isEmpty()) {
+            result.reject(lineNumber, "缺少必填字段：" + String.join(", ", missing));
+            return null;
+        }
+
+        LocalDate date;
+        String mood = fields.get("mood").trim().toLowerCase(Locale.ROOT);
+        double sleepHours;
+        int waterIntake;
+        int exerciseMinutes;
+
+        try {
+            date = LocalDate.parse(fields.getOrDefault("date", fields.getOrDefault("check_in_date", "")).trim());
+            sleepHours = Double.parseDouble(fields.get("sleep_hours").trim());
+            waterIntake = (int) Math.round(Double.parseDouble(fields.get("water_intake").trim()));
+            exerciseMinutes = (int) Math.round(Double.parseDouble(fields.get("exercise_minutes").trim()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            result.reject(lineNumber, "日期或数值格式错误");
+            return null;
+        }
+
+        if (date.isAfter(LocalDate.now())) {
+            result.reject(lineNumber, "日期不能晚于今天");
+            return null;
+        }
+
+        HealthDataService.ValidationResult validation =
+            healthDataService.validateCheckInInput(mood, sleepHours, waterIntake, exerciseMinutes);
+        if (!validation.isValid()) {
+            result.reject(lineNumber, validation.getMessage());
+            return null;
+        }
+
+        String notes = fields.get("notes");
+        return new DailyCheckIn(userId, date, mood, sleepHours, waterIntake, exerciseMinutes,
+            notes != null && !notes.isEmpty() ? notes : null);
+    }
+
+    private Map<String, String> toFieldMap(String[] header, List<String> values) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.size(); i++) {
+            fields.put(header[i], values.get(i));
+        }
+        return fields;
+    }
+
+    private List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    // 只取一层扁平字段：{"date":"2024-01-01","sleep_hours":7.5,...}，嵌套值与 null 忽略
+    private Map<String, String> parseJsonLine(String line) {
+        Map<String, String> fields = new HashMap<>();
+        try {
+            JsonReader reader = jsonReader.reset(line);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName().toLowerCase(Locale.ROOT);
+                JsonReader.Token token = reader.peek();
+                if (token == JsonReader.Token.STRING || token == JsonReader.Token.NUMBER
+                        || token == JsonReader.Token.BOOLEAN) {
+                    fields.put(name, reader.nextString().trim());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+        return fields;
+    }
+
+    public static class ImportResult {
+        private final long startNanos = System.nanoTime();
+        private int rowsRead;
+        private int imported;
+        private int rejected;
+        private int chunks;
+        private long elapsedMillis;
+        private boolean failed;
+        private String errorMessage;
+        private final List<String> rejectSamples = new ArrayList<>();
+
+        private void reject(int lineNumber, String reason) {
+            rejected++;
+            if (rejectSamples.size() < MAX_REPORTED_REJECTS) {
+                rejectSamples.add("第" + lineNumber + "行：" + reason);
+            }
+        }
+
+        private void fail(String message) {
+            failed = true;
+            errorMessage = message;
+        }
+
+        private void finish() {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        public int getRowsRead() { return rowsRead; }
+        public int getImported() { return imported; }
+        public int getRejected() { return rejected; }
+        public int getChunks() { return chunks; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isFailed() { return failed; }
+        public String getErrorMessage() { return errorMessage; }
+        public List<String> getRejectSamples() { return rejectSamples; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis > 0 ? rowsRead * 1000.0 / elapsedMillis : rowsRead;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("打卡导入 - 读取: %d行, 导入: %d条, 拒绝: %d条, 批次: %d, 耗时: %dms, 吞吐: %.0f行/秒",
+                rowsRead, imported, rejected, chunks, elapsedMillis, getRowsPerSecond());
+        }
+    }
+}
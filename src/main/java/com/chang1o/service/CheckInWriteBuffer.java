@@ -0,0 +1,433 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.model.CheckInDelta;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CheckInWriteBuffer {
+
+    private static final String DEFAULT_LOG_PATH = "data/checkin-buffer.log";
+    private static final int DEFAULT_MAX_PENDING = 200;
+    private static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 5;
+    // 每次打开日志写入时先写一行批次号，之后的增量都属于这一段
+    private static final String BATCH_HEADER = "#batch\t";
+
+    private static CheckInWriteBuffer instance;
+
+    private final DailyCheckInDao dailyCheckInDao;
+    private final Path logPath;
+    private final Path flushingPath;
+    private final int maxPending;
+    private final long flushIntervalSeconds;
+
+    private final Object flushLock = new Object();
+    private Map<String, CheckInDelta> pending = new LinkedHashMap<>();
+    private FileChannel logChannel;
+    private boolean recovered;
+    // 恢复时发现已提交、但派生状态可能还没来得及刷新的增量，由下一次刷写补刷
+    private List<CheckInDelta> committedUnrefreshed = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    private CheckInWriteBuffer() {
+        this.dailyCheckInDao = new DailyCheckInDao();
+        String configuredPath = System.getenv("CHECKIN_BUFFER_LOG");
+        this.logPath = Paths.get(configuredPath == null || configuredPath.isEmpty() ? DEFAULT_LOG_PATH : configuredPath);
+        this.flushingPath = Paths.get(logPath + ".flushing");
+        this.maxPending = readIntEnv("CHECKIN_BUFFER_MAX_PENDING", DEFAULT_MAX_PENDING);
+        this.flushIntervalSeconds = readIntEnv("CHECKIN_BUFFER_FLUSH_SECONDS", (int) DEFAULT_FLUSH_INTERVAL_SECONDS);
+    }
+
+    public static synchronized CheckInWriteBuffer getInstance() {
+        if (instance == null) {
+            instance = new CheckInWriteBuffer();
+        }
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        recovered = recoverFromLog();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkin-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, 0, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        flush();
+        synchronized (this) {
+            closeLog();
+        }
+    }
+
+    public boolean recordWaterIntake(int userId, int milliliters) {
+        return record(new CheckInDelta(userId, LocalDate.now(), milliliters, 0, null, null));
+    }
+
+    public boolean recordExercise(int userId, int minutes) {
+        return record(new CheckInDelta(userId, LocalDate.now(), 0, minutes, null, null));
+    }
+
+    public boolean recordSleep(int userId, double hours) {
+        return record(new CheckInDelta(userId, LocalDate.now(), 0, 0, hours, null));
+    }
+
+    public boolean record(CheckInDelta delta) {
+        boolean flushNow;
+        synchronized (this) {
+            // 先落盘再入内存，写日志失败则拒绝这次记录
+            if (!appendToLog(delta)) {
+                return false;
+            }
+            mergePending(pending, delta);
+            flushNow = pending.size() >= maxPending;
+        }
+
+        if (flushNow) {
+            ScheduledExecutorService current = scheduler;
+            if (current != null) {
+                current.execute(this::flushQuietly);
+            } else {
+                flush();
+            }
+        }
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public int flush() {
+        synchronized (flushLock) {
+            Map<String, CheckInDelta> snapshot;
+            Set<String> batchIds;
+            synchronized (this) {
+                // 启动时数据库不可用、无法判断哪些日志段已提交，先补做恢复再刷写
+                if (!recovered && !(recovered = recoverFromLog())) {
+                    return -1;
+                }
+            }
+            refreshCommitted();
+
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                if (!rotateLog()) {
+                    return -1;
+                }
+                try {
+                    batchIds = new TreeSet<>(readSegments(flushingPath).keySet());
+                } catch (IOException e) {
+                    System.err.println("读取打卡缓冲日志失败：" + e.getMessage());
+                    return -1;
+                }
+                snapshot = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            List<CheckInDelta> deltas = new ArrayList<>(snapshot.values());
+            int result = dailyCheckInDao.applyCheckInDeltas(deltas, batchIds);
+            if (result == DailyCheckInDao.DELTAS_FAILED) {
+                synchronized (this) {
+                    Map<String, CheckInDelta> restored = snapshot;
+                    for (CheckInDelta newer : pending.values()) {
+                        mergePending(restored, newer);
+                    }
+                    pending = restored;
+                }
+                return -1;
+            }
+            if (result == DailyCheckInDao.DELTAS_ALREADY_APPLIED) {
+                // 上次提交其实已成功（只是没来得及确认），按数据库记录剔除已提交的日志段后重建内存中的增量
+                synchronized (this) {
+                    recovered = recoverFromLog();
+                }
+                refreshCommitted();
+                return -1;
+            }
+
+            try {
+                Files.deleteIfExists(flushingPath);
+            } catch (IOException e) {
+                System.err.println("清理打卡缓冲日志失败：" + e.getMessage());
+            }
+
+            refreshDerivedState(deltas);
+            return deltas.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("打卡缓冲刷写异常：" + e.getMessage());
+        }
+    }
+
+    private void refreshCommitted() {
+        List<CheckInDelta> committed;
+        synchronized (this) {
+            committed = committedUnrefreshed;
+            committedUnrefreshed = new ArrayList<>();
+        }
+        refreshDerivedState(committed);
+    }
+
+    private void refreshDerivedState(List<CheckInDelta> deltas) {
+        Map<Integer, Set<LocalDate>> datesByUser = new HashMap<>();
+        for (CheckInDelta delta : deltas) {
+            datesByUser.computeIfAbsent(delta.getUserId(), id -> new TreeSet<>()).add(delta.getCheckInDate());
+        }
+
+        for (Map.Entry<Integer, Set<LocalDate>> entry : datesByUser.entrySet()) {
+            dailyCheckInDao.refreshDerivedState(entry.getKey(), entry.getValue());
+            CheckInAnalyticsService.invalidate(entry.getKey());
+        }
+    }
+
+    private static void mergePending(Map<String, CheckInDelta> target, CheckInDelta delta) {
+        String key = delta.getUserId() + "@" + delta.getCheckInDate();
+        CheckInDelta existing = target.get(key);
+        if (existing == null) {
+            CheckInDelta copy = new CheckInDelta(delta.getUserId(), delta.getCheckInDate());
+            copy.merge(delta);
+            target.put(key, copy);
+        } else {
+            existing.merge(delta);
+        }
+    }
+
+    private boolean appendToLog(CheckInDelta delta) {
+        String header = "";
+        try {
+            if (logChannel == null) {
+                Path parent = logPath.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                header = BATCH_HEADER + UUID.randomUUID() + "\n";
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap((header + delta.toLogLine() + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            logChannel.force(false);
+            return true;
+        } catch (IOException e) {
+            System.err.println("写入打卡缓冲日志失败：" + e.getMessage());
+            closeLog();
+            return false;
+        }
+    }
+
+    // 把当前日志并入 .flushing，.flushing 始终覆盖尚未确认提交的所有增量
+    private boolean rotateLog() {
+        closeLog();
+        try {
+            if (!Files.exists(logPath)) {
+                return true;
+            }
+            if (Files.exists(flushingPath)) {
+                Files.write(flushingPath, Files.readAllBytes(logPath), StandardOpenOption.APPEND);
+                Files.delete(logPath);
+            } else {
+                Files.move(logPath, flushingPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("轮转打卡缓冲日志失败：" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 从 .flushing 和当前日志重建未提交的增量。数据库里已记录批次号的日志段已经提交过，直接丢弃并从 .flushing 中剔除，
+     * 重放因此是幂等的。无法查询数据库时返回 false，内存和文件都不动，等下次刷写再试。
+     */
+    private boolean recoverFromLog() {
+        Map<String, List<CheckInDelta>> flushingSegments;
+        Map<String, List<CheckInDelta>> logSegments;
+        try {
+            flushingSegments = readSegments(flushingPath);
+            logSegments = readSegments(logPath);
+        } catch (IOException e) {
+            System.err.println("读取打卡缓冲日志失败：" + e.getMessage());
+            return false;
+        }
+
+        Set<String> batchIds = new TreeSet<>(flushingSegments.keySet());
+        batchIds.addAll(logSegments.keySet());
+        Set<String> applied = dailyCheckInDao.getAppliedFlushBatches(batchIds);
+        if (applied == null) {
+            return false;
+        }
+
+        // 日志并入 .flushing 后、删除前崩溃时同一段会出现两次，保留记录较多的那份
+        Map<String, List<CheckInDelta>> segments = new LinkedHashMap<>(flushingSegments);
+        for (Map.Entry<String, List<CheckInDelta>> entry : logSegments.entrySet()) {
+            List<CheckInDelta> existing = segments.get(entry.getKey());
+            if (existing == null || existing.size() < entry.getValue().size()) {
+                segments.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<String, CheckInDelta> restored = new LinkedHashMap<>();
+        List<CheckInDelta> committed = new ArrayList<>();
+        int replayed = 0;
+        for (Map.Entry<String, List<CheckInDelta>> entry : segments.entrySet()) {
+            if (applied.contains(entry.getKey())) {
+                committed.addAll(entry.getValue());
+                continue;
+            }
+            for (CheckInDelta delta : entry.getValue()) {
+                mergePending(restored, delta);
+                replayed++;
+            }
+        }
+
+        if (!applied.isEmpty() && !pruneFlushing(flushingSegments.keySet(), applied)) {
+            return false;
+        }
+        pending = restored;
+        committedUnrefreshed.addAll(committed);
+
+        if (replayed > 0) {
+            System.out.println("已从缓冲日志恢复 " + replayed + " 条未提交的打卡增量");
+        }
+        return true;
+    }
+
+    // 按批次号分段读取；日志每次打开都先写批次行，不在任何批次下的记录视为损坏
+    private static Map<String, List<CheckInDelta>> readSegments(Path path) throws IOException {
+        Map<String, List<CheckInDelta>> segments = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return segments;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String batchId = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith(BATCH_HEADER)) {
+                    batchId = line.substring(BATCH_HEADER.length());
+                    segments.computeIfAbsent(batchId, id -> new ArrayList<>());
+                    continue;
+                }
+                if (batchId == null) {
+                    System.err.println("跳过没有批次号的缓冲日志记录：" + line);
+                    continue;
+                }
+                try {
+                    segments.get(batchId).add(CheckInDelta.fromLogLine(line));
+                } catch (IllegalArgumentException | java.time.DateTimeException e) {
+                    // 崩溃时可能留下半行，跳过即可
+                    System.err.println("跳过损坏的缓冲日志记录：" + line);
+                }
+            }
+        }
+        return segments;
+    }
+
+    // 重写 .flushing，只保留尚未提交的段；全部已提交则删除
+    private boolean pruneFlushing(Set<String> flushingIds, Set<String> applied) {
+        boolean touched = false;
+        for (String batchId : flushingIds) {
+            touched |= applied.contains(batchId);
+        }
+        if (!touched) {
+            return true;
+        }
+
+        try {
+            StringBuilder kept = new StringBuilder();
+            boolean keep = true;
+            for (String line : Files.readAllLines(flushingPath, StandardCharsets.UTF_8)) {
+                if (line.startsWith(BATCH_HEADER)) {
+                    keep = !applied.contains(line.substring(BATCH_HEADER.length()));
+                }
+                if (keep && !line.isEmpty()) {
+                    kept.append(line).append('\n');
+                }
+            }
+
+            if (kept.length() == 0) {
+                Files.deleteIfExists(flushingPath);
+            } else {
+                Path rewriting = Paths.get(flushingPath + ".tmp");
+                Files.write(rewriting, kept.toString().getBytes(StandardCharsets.UTF_8));
+                Files.move(rewriting, flushingPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("清理打卡缓冲日志失败：" + e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeLog() {
+        if (logChannel != null) {
+            try {
+                logChannel.close();
+            } catch (IOException e) {
+                System.err.println("关闭打卡缓冲日志失败：" + e.getMessage());
+            }
+            logChannel = null;
+        }
+    }
+
+    private static int readIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
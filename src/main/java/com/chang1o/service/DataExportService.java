@@ -357,6 +357,12 @@ public class DataExportService {
         writer.write("</div>\n");
     }
 
+    public String createAiExportPath(String kind, int userId) {
+        ensureExportDirectoryExists();
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        return EXPORT_DIR + "ai_" + kind + "_" + userId + "_" + timestamp + ".txt";
+    }
+
     private void ensureExportDirectoryExists() {
         File dir = new File(EXPORT_DIR);
         if (!dir.exists()) {
@@ -0,0 +1,222 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.ExpiryNoticeDao;
+import com.chang1o.dao.JobWatermarkDao;
+import com.chang1o.dao.PantryDao;
+import com.chang1o.model.ExpiryNotice;
+import com.chang1o.model.JobWatermark;
+import com.chang1o.model.PantryItem;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExpirySweepService {
+
+    public static final String JOB_NAME = "pantry_expiry_sweep";
+
+    private static final int DEFAULT_HORIZON_DAYS = 7;
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int DEFAULT_WORKERS = 4;
+
+    private final PantryDao pantryDao;
+    private final ExpiryNoticeDao expiryNoticeDao;
+    private final JobWatermarkDao jobWatermarkDao;
+
+    private final int horizonDays;
+    private final int pageSize;
+    private final int workers;
+
+    private ScheduledExecutorService scheduler;
+    private volatile SweepMetrics lastMetrics;
+
+    public ExpirySweepService() {
+        this(DEFAULT_HORIZON_DAYS, DEFAULT_PAGE_SIZE, DEFAULT_WORKERS);
+    }
+
+    public ExpirySweepService(int horizonDays, int pageSize, int workers) {
+        this.pantryDao = new PantryDao();
+        this.expiryNoticeDao = new ExpiryNoticeDao();
+        this.jobWatermarkDao = new JobWatermarkDao();
+        this.horizonDays = horizonDays;
+        this.pageSize = pageSize;
+        this.workers = Math.max(1, workers);
+    }
+
+    public SweepMetrics runSweep() {
+        LocalDate today = LocalDate.now();
+        LocalDate endDate = today.plusDays(horizonDays);
+
+        JobWatermark watermark = jobWatermarkDao.getWatermark(JOB_NAME);
+        if (watermark == null || !today.equals(watermark.getRunDate()) || watermark.getLastDate() == null) {
+            watermark = new JobWatermark(JOB_NAME, today, today, 0);
+        }
+
+        SweepMetrics metrics = new SweepMetrics();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "expiry-sweep-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            while (true) {
+                List<PantryItem> page = pantryDao.getItemsByExpiryRange(
+                    today, endDate, watermark.getLastDate(), watermark.getLastId(), pageSize);
+
+                if (page == null) {
+                    metrics.failed = true;
+                    break;
+                }
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                metrics.rowsScanned.addAndGet(page.size());
+                metrics.pages.incrementAndGet();
+
+                if (!processPage(pool, page, today, metrics)) {
+                    metrics.failed = true;
+                    break;
+                }
+
+                PantryItem last = page.get(page.size() - 1);
+                watermark.setLastDate(last.getExpiryDate());
+                watermark.setLastId(last.getId());
+                jobWatermarkDao.saveWatermark(watermark);
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 水位只用于续跑被中断的巡检；跑完后归零，同一天后续的巡检重新扫描整个窗口，
+        // 否则之后新加入的库存会落在水位之前被跳过。提醒按 (pantry_id, expiry_date) 去重，重扫不会重复提醒
+        if (!metrics.failed) {
+            jobWatermarkDao.saveWatermark(new JobWatermark(JOB_NAME, today, today, 0));
+        }
+
+        metrics.finish();
+        lastMetrics = metrics;
+        return metrics;
+    }
+
+    private boolean processPage(ExecutorService pool, List<PantryItem> page, LocalDate today, SweepMetrics metrics) {
+        List<List<ExpiryNotice>> shards = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            shards.add(new ArrayList<>());
+        }
+
+        for (PantryItem item : page) {
+            int daysLeft = (int) (item.getExpiryDate().toEpochDay() - today.toEpochDay());
+            ExpiryNotice notice = new ExpiryNotice(item.getUserId(), item.getId(), item.getIngredientId(),
+                item.getExpiryDate(), daysLeft);
+            shards.get(Math.floorMod(item.getUserId(), workers)).add(notice);
+        }
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (List<ExpiryNotice> shard : shards) {
+            if (!shard.isEmpty()) {
+                futures.add(pool.submit(() -> expiryNoticeDao.addNoticesBatch(shard)));
+            }
+        }
+
+        boolean success = true;
+        for (Future<Integer> future : futures) {
+            try {
+                int written = future.get();
+                if (written < 0) {
+                    success = false;
+                } else {
+                    metrics.noticesWritten.addAndGet(written);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                System.err.println("过期巡检分片执行失败：" + e.getCause().getMessage());
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    public synchronized void startPeriodicSweep(long intervalMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-sweep-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runSweep();
+            } catch (Exception e) {
+                System.err.println("过期巡检任务异常：" + e.getMessage());
+            }
+        }, 0, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stopPeriodicSweep() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public SweepMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    public List<ExpiryNotice> getUnreadNotices(int userId) {
+        return expiryNoticeDao.getUnreadNotices(userId);
+    }
+
+    public boolean markNoticesRead(int userId) {
+        return expiryNoticeDao.markAllRead(userId);
+    }
+
+    public static class SweepMetrics {
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong rowsScanned = new AtomicLong();
+        private final AtomicLong noticesWritten = new AtomicLong();
+        private final AtomicLong pages = new AtomicLong();
+        private volatile long elapsedMillis;
+        private volatile boolean failed;
+
+        private void finish() {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        public long getRowsScanned() { return rowsScanned.get(); }
+        public long getNoticesWritten() { return noticesWritten.get(); }
+        public long getPages() { return pages.get(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isFailed() { return failed; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis > 0 ? rowsScanned.get() * 1000.0 / elapsedMillis : rowsScanned.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("过期巡检 - 扫描: %d行, 新提醒: %d条, 分页: %d, 耗时: %dms, 吞吐: %.0f行/秒%s",
+                getRowsScanned(), getNoticesWritten(), getPages(), elapsedMillis, getRowsPerSecond(),
+                failed ? " (中断，下次从水位继续)" : "");
+        }
+    }
+}
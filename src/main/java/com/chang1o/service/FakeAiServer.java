@@ -0,0 +1,333 @@
+package com.chang1o.service;
+
+import com.chang1o.util.JsonReader;
+import com.chang1o.util.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的 OpenAI 兼容 chat/completions 模拟服务，用于无网络环境下压测与基准测试 AI 链路。
+ * 由 api.fake.* 配置：延迟分布（固定、均匀、对数正态）、流式分块、429/500 注入与预置回复。
+ * 每个请求的随机数由种子和请求序号派生，同样的配置和请求数得到同样的延迟与故障序列。
+ */
+public class FakeAiServer {
+
+    private static final String CHAT_PATH = "/v1/chat/completions";
+    private static final String RESPONSE_SEPARATOR = "---";
+
+    private final HttpServer server;
+    private final String latencyDistribution;
+    private final long latencyMillis;
+    private final double latencySpread;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final long retryAfterSeconds;
+    private final int chunkChars;
+    private final long chunkDelayMillis;
+    private final long seed;
+    private final List<String> cannedResponses;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private FakeAiServer(Properties props) throws IOException {
+        this.latencyDistribution = props.getProperty("api.fake.latency", "lognormal").trim().toLowerCase(Locale.ROOT);
+        this.latencyMillis = readLong(props, "api.fake.latency.ms", 800);
+        this.latencySpread = readDouble(props, "api.fake.latency.spread", 0.5);
+        this.errorRate = readDouble(props, "api.fake.error.rate", 0);
+        this.rateLimitRate = readDouble(props, "api.fake.rate.limit.rate", 0);
+        this.retryAfterSeconds = Math.max(1, readLong(props, "api.fake.retry.after.seconds", 1));
+        this.chunkChars = (int) Math.max(1, readLong(props, "api.fake.stream.chunk.chars", 8));
+        this.chunkDelayMillis = readLong(props, "api.fake.stream.chunk.delay.ms", 30);
+        this.seed = readLong(props, "api.fake.seed", 42);
+        this.cannedResponses = loadResponses(props.getProperty("api.fake.responses", "").trim());
+
+        int port = (int) readLong(props, "api.fake.port", 0);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(CHAT_PATH, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-ai-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    // 启动失败返回 null，由调用方回退到真实服务商配置
+    public static FakeAiServer start(Properties props) {
+        try {
+            FakeAiServer fake = new FakeAiServer(props);
+            // HttpServer 的分发线程继承启动线程的守护属性，从守护线程启动才不会阻止进程退出
+            Thread starter = new Thread(fake.server::start, "fake-ai-server-start");
+            starter.setDaemon(true);
+            starter.start();
+            starter.join();
+            return fake;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("启动本地模拟AI服务失败：" + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort() + CHAT_PATH;
+    }
+
+    public long getRequestCount() {
+        return sequence.get();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, errorBody("仅支持 POST"));
+                return;
+            }
+
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            String model = JsonReader.readString(body, "model");
+            String prompt = JsonReader.readString(body, "messages", 0, "content");
+            boolean stream = readStreamFlag(body);
+            boolean structured = hasResponseFormat(body);
+
+            long requestId = sequence.incrementAndGet();
+            SplittableRandom random = new SplittableRandom(seed + requestId * 0x9E3779B97F4A7C15L);
+
+            double roll = random.nextDouble();
+            if (roll < rateLimitRate) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                sendJson(exchange, 429, errorBody("模拟限流"));
+                return;
+            }
+
+            sleep(sampleLatency(random));
+            if (roll < rateLimitRate + errorRate) {
+                sendJson(exchange, 500, errorBody("模拟服务端错误"));
+                return;
+            }
+
+            String content = pickResponse(prompt, structured);
+            if (stream) {
+                sendStream(exchange, requestId, model, content);
+            } else {
+                sendJson(exchange, 200, completionBody(requestId, model, content));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private long sampleLatency(SplittableRandom random) {
+        switch (latencyDistribution) {
+            case "fixed":
+                return latencyMillis;
+            case "uniform":
+                return Math.round(latencyMillis * (1 + latencySpread * (2 * random.nextDouble() - 1)));
+            default:
+                // 中位数为 latency.ms，spread 是对数标准差，越大长尾越重
+                return Math.round(latencyMillis * Math.exp(latencySpread * random.nextGaussian()));
+        }
+    }
+
+    private String pickResponse(String prompt, boolean structured) {
+        // 结构化请求必须返回可解析的推荐 JSON，预置回复只用于纯文本请求
+        if (structured) {
+            return recommendationsJson();
+        }
+        String text = prompt == null ? "" : prompt;
+        if (!cannedResponses.isEmpty()) {
+            return cannedResponses.get(Math.floorMod(text.hashCode(), cannedResponses.size()));
+        }
+        if (text.contains("购物")) {
+            return "【需要购买】\n1. 鸡胸肉 500g\n2. 西兰花 2颗\n3. 糙米 1kg\n\n【库存已有】\n- 鸡蛋、橄榄油";
+        }
+        if (text.contains("食谱")) {
+            return "1. 番茄炒蛋\n   推荐理由：食材齐全，做法简单\n2. 清蒸鲈鱼\n   推荐理由：高蛋白低脂肪\n3. 蔬菜沙拉\n   推荐理由：补充膳食纤维";
+        }
+        return "根据您近期的数据，整体状况良好。\n1. 保持每天7-8小时睡眠\n2. 每日饮水不少于1500ml\n3. 每周进行150分钟中等强度运动";
+    }
+
+    // 请求带 response_format 时按食谱推荐的结构返回 JSON
+    private String recommendationsJson() {
+        JsonWriter writer = new JsonWriter(512).beginObject().name("recommendations").beginArray();
+        writeRecommendation(writer, "番茄炒蛋", "食材齐全，做法简单", 320, "番茄", "鸡蛋");
+        writeRecommendation(writer, "清蒸鲈鱼", "高蛋白低脂肪", 280, "鲈鱼", "葱", "姜");
+        writeRecommendation(writer, "蔬菜沙拉", "补充膳食纤维", 150, "生菜", "黄瓜", "圣女果");
+        return writer.endArray().endObject().toString();
+    }
+
+    private static void writeRecommendation(JsonWriter writer, String name, String reason, int calories, String... ingredients) {
+        writer.beginObject()
+                .name("name").value(name)
+                .name("reason").value(reason)
+                .name("calories").value(calories)
+                .name("ingredients").beginArray();
+        for (String ingredient : ingredients) {
+            writer.value(ingredient);
+        }
+        writer.endArray().endObject();
+    }
+
+    private void sendStream(HttpExchange exchange, long requestId, String model, String content) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        JsonWriter writer = new JsonWriter(256);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int start = 0; start < content.length(); start += chunkChars) {
+                if (start > 0) {
+                    sleep(chunkDelayMillis);
+                }
+                String delta = content.substring(start, Math.min(content.length(), start + chunkChars));
+                writer.reset().beginObject()
+                        .name("id").value("fake-" + requestId)
+                        .name("object").value("chat.completion.chunk")
+                        .name("model").value(model == null ? "" : model)
+                        .name("choices").beginArray()
+                            .beginObject()
+                                .name("index").value(0)
+                                .name("delta").beginObject().name("content").value(delta).endObject()
+                            .endObject()
+                        .endArray()
+                        .endObject();
+                out.write(("data: " + writer + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String completionBody(long requestId, String model, String content) {
+        return new JsonWriter(content.length() + 256).beginObject()
+                .name("id").value("fake-" + requestId)
+                .name("object").value("chat.completion")
+                .name("model").value(model == null ? "" : model)
+                .name("choices").beginArray()
+                    .beginObject()
+                        .name("index").value(0)
+                        .name("message").beginObject()
+                            .name("role").value("assistant")
+                            .name("content").value(content)
+                        .endObject()
+                        .name("finish_reason").value("stop")
+                    .endObject()
+                .endArray()
+                .endObject()
+                .toString();
+    }
+
+    private String errorBody(String message) {
+        return new JsonWriter(128).beginObject()
+                .name("error").beginObject().name("message").value(message).endObject()
+                .endObject()
+                .toString();
+    }
+
+    private void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static boolean readStreamFlag(String body) {
+        try {
+            JsonReader reader = new JsonReader(body);
+            return reader.seek("stream") && reader.peek() == JsonReader.Token.BOOLEAN && reader.nextBoolean();
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasResponseFormat(String body) {
+        try {
+            return new JsonReader(body).seek("response_format");
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 预置回复文件为 UTF-8 文本，条目之间用单独一行 --- 分隔，按提示词哈希固定选取
+    private static List<String> loadResponses(String path) {
+        List<String> responses = new ArrayList<>();
+        if (path.isEmpty()) {
+            return responses;
+        }
+
+        try {
+            StringBuilder current = new StringBuilder();
+            for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+                if (RESPONSE_SEPARATOR.equals(line.trim())) {
+                    addResponse(responses, current);
+                } else {
+                    current.append(line).append('\n');
+                }
+            }
+            addResponse(responses, current);
+        } catch (IOException e) {
+            System.err.println("读取模拟回复文件失败，使用内置回复：" + e.getMessage());
+        }
+        return responses;
+    }
+
+    private static void addResponse(List<String> responses, StringBuilder current) {
+        String response = current.toString().strip();
+        if (!response.isEmpty()) {
+            responses.add(response);
+        }
+        current.setLength(0);
+    }
+
+    private static long readLong(Properties props, String name, long defaultValue) {
+        try {
+            return Math.max(0, Long.parseLong(props.getProperty(name, String.valueOf(defaultValue)).trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double readDouble(Properties props, String name, double defaultValue) {
+        try {
+            return Math.max(0, Double.parseDouble(props.getProperty(name, String.valueOf(defaultValue)).trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
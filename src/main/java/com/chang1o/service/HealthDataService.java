@@ -4,6 +4,11 @@ import com.chang1o.dao.UserHealthDataDao;
 import com.chang1o.dao.DailyCheckInDao;
 import com.chang1o.model.UserHealthData;
 import com.chang1o.model.DailyCheckIn;
+import com.chang1o.model.CheckInStreak;
+import com.chang1o.model.CheckInBitmap;
+import com.chang1o.model.HealthAlert;
+import com.chang1o.model.WeightTrend;
+import com.chang1o.util.TDigest;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -12,10 +17,12 @@ public class HealthDataService {
 
     private UserHealthDataDao healthDataDao;
     private DailyCheckInDao dailyCheckInDao;
+    private AnomalyDetectionService anomalyDetectionService;
 
     public HealthDataService() {
         this.healthDataDao = new UserHealthDataDao();
         this.dailyCheckInDao = new DailyCheckInDao();
+        this.anomalyDetectionService = new AnomalyDetectionService();
     }
 
     public HealthDataResult saveHealthData(int userId, double weight, double height, int age,
@@ -30,7 +37,9 @@ public class HealthDataService {
         UserHealthData healthData = new UserHealthData(userId, weight, height, age, gender, activityLevel, targetWeight);
 
         boolean success;
-        if (existingData != null) {
+        // 同一天内覆盖当天记录，跨天追加新记录以保留体重历史
+        if (existingData != null && existingData.getCreatedAt() != null
+                && existingData.getCreatedAt().toLocalDate().equals(LocalDate.now())) {
             healthData.setId(existingData.getId());
             success = healthDataDao.updateHealthData(healthData);
         } else {
@@ -52,6 +61,14 @@ public class HealthDataService {
         return healthDataDao.getHealthDataByUserId(userId);
     }
 
+    public WeightTrend getWeightTrend(int userId) {
+        return healthDataDao.getWeightTrend(userId);
+    }
+
+    public List<String> getBMIHistory(int userId, int maxPoints) {
+        return healthDataDao.getBMIHistory(userId, maxPoints);
+    }
+
     public String getHealthReport(int userId) {
         UserHealthData healthData = healthDataDao.getLatestHealthDataByUserId(userId);
         if (healthData == null) {
@@ -87,6 +104,29 @@ public class HealthDataService {
             report.append("\n");
         }
 
+        WeightTrend trend = healthDataDao.getWeightTrend(userId);
+        if (trend != null && trend.hasTrend()) {
+            report.append("📈 体重趋势:\n");
+            report.append("  近期变化: ").append(String.format("%+.2f", trend.getSlopePerWeek())).append("kg/周\n");
+            if (healthData.getTargetWeight() > 0 && Math.abs(healthData.getWeightDifference()) >= 0.5) {
+                LocalDate targetDate = trend.projectTargetDate(healthData.getTargetWeight());
+                if (targetDate != null) {
+                    report.append("  预计达到目标体重: ").append(targetDate).append("\n");
+                } else {
+                    report.append("  按当前趋势暂无法达到目标体重\n");
+                }
+            }
+
+            List<String> bmiHistory = healthDataDao.getBMIHistory(userId, 6);
+            if (bmiHistory.size() > 1) {
+                report.append("  BMI历史:\n");
+                for (String record : bmiHistory) {
+                    report.append("    ").append(record).append("\n");
+                }
+            }
+            report.append("\n");
+        }
+
         report.append("💡 健康建议:\n");
         report.append(generateHealthAdvice(healthData)).append("\n");
 
@@ -102,19 +142,17 @@ public class HealthDataService {
         }
 
         LocalDate today = LocalDate.now();
-        DailyCheckIn existingCheckIn = dailyCheckInDao.getCheckInByUserIdAndDate(userId, today);
-
         DailyCheckIn checkIn = new DailyCheckIn(userId, today, mood, sleepHours, waterIntake, exerciseMinutes, notes);
 
-        boolean success;
-        if (existingCheckIn != null) {
-            checkIn.setId(existingCheckIn.getId());
-            success = dailyCheckInDao.updateCheckIn(checkIn);
-        } else {
-            success = dailyCheckInDao.addCheckIn(checkIn);
-        }
+        int upsertResult = dailyCheckInDao.upsertCheckIn(checkIn);
+        boolean success = upsertResult != DailyCheckInDao.UPSERT_FAILED;
 
         if (success) {
+            // 内容与已保存的完全相同时没有新的观测，不必触碰分析缓存和异常检测状态
+            if (upsertResult != DailyCheckInDao.UPSERT_UNCHANGED) {
+                CheckInAnalyticsService.invalidate(userId);
+                anomalyDetectionService.processCheckIn(checkIn);
+            }
             int consecutiveDays = dailyCheckInDao.getConsecutiveCheckInDays(userId);
             String message = "打卡成功！连续打卡" + consecutiveDays + "天";
             return new CheckInResult(true, checkIn, message);
@@ -143,6 +181,34 @@ public class HealthDataService {
         return dailyCheckInDao.getConsecutiveCheckInDays(userId);
     }
 
+    public CheckInStreak getCheckInStreak(int userId) {
+        return dailyCheckInDao.getCheckInStreak(userId);
+    }
+
+    public CheckInBitmap getCheckInBitmap(int userId) {
+        return dailyCheckInDao.getCheckInBitmap(userId);
+    }
+
+    public TDigest getCheckInDistribution(int userId, String metric) {
+        return dailyCheckInDao.getCheckInSketch(userId, metric);
+    }
+
+    public TDigest getPopulationDistribution(String metric) {
+        return dailyCheckInDao.getPopulationSketch(metric);
+    }
+
+    public List<HealthAlert> getUnreadHealthAlerts(int userId) {
+        return anomalyDetectionService.getUnreadAlerts(userId);
+    }
+
+    public List<HealthAlert> getRecentHealthAlerts(int userId, int days) {
+        return anomalyDetectionService.getRecentAlerts(userId, days);
+    }
+
+    public boolean markHealthAlertsRead(int userId) {
+        return anomalyDetectionService.markAlertsRead(userId);
+    }
+
     private String generateHealthAdvice(UserHealthData healthData) {
         StringBuilder advice = new StringBuilder();
         double bmi = healthData.calculateBMI();
@@ -218,7 +284,7 @@ public class HealthDataService {
         return new ValidationResult(true, "验证通过");
     }
 
-    private ValidationResult validateCheckInInput(String mood, double sleepHours, int waterIntake, int exerciseMinutes) {
+    ValidationResult validateCheckInInput(String mood, double sleepHours, int waterIntake, int exerciseMinutes) {
         String[] validMoods = {"great", "good", "normal", "bad", "terrible"};
         boolean validMood = false;
 
@@ -296,7 +362,7 @@ public class HealthDataService {
         }
     }
 
-    private static class ValidationResult {
+    static class ValidationResult {
         private boolean valid;
         private String message;
 
@@ -12,10 +12,12 @@ public class PantryService {
 
     private PantryDao pantryDao;
     private IngredientDao ingredientDao;
+    private boolean consolidateOnInsert;
 
     public PantryService() {
         this.pantryDao = new PantryDao();
         this.ingredientDao = new IngredientDao();
+        this.consolidateOnInsert = "true".equalsIgnoreCase(System.getenv("PANTRY_CONSOLIDATE_ON_INSERT"));
     }
 
     public PantryResult addPantryItem(int userId, String ingredientName, String quantity, LocalDate expiryDate) {
@@ -38,6 +40,15 @@ public class PantryService {
 
         if (success) {
             newItem.setIngredient(ingredient);
+            // 新记录的 id 最大，合并时不会被保留；被合并后返回保留下来的那一行
+            if (consolidateOnInsert && pantryDao.consolidatePantry(userId) > 0
+                    && pantryDao.getPantryItemById(newItem.getId()) == null) {
+                PantryItem mergedItem = pantryDao.getMergeTarget(newItem);
+                if (mergedItem != null) {
+                    mergedItem.setIngredient(ingredient);
+                }
+                return new PantryResult(true, mergedItem, "库存物品添加成功，已与同类库存合并！");
+            }
             return new PantryResult(true, newItem, "库存物品添加成功！");
         } else {
             return new PantryResult(false, null, "库存物品添加失败，请稍后重试");
@@ -132,6 +143,21 @@ public class PantryService {
         return !getExpiringItems(userId, days).isEmpty();
     }
 
+    public int consolidatePantry(int userId) {
+        return pantryDao.consolidatePantry(userId);
+    }
+
+    public int consolidateAllPantries() {
+        int totalRemoved = 0;
+        for (int userId : pantryDao.getUserIdsWithDuplicateItems()) {
+            int removed = pantryDao.consolidatePantry(userId);
+            if (removed > 0) {
+                totalRemoved += removed;
+            }
+        }
+        return totalRemoved;
+    }
+
     private ValidationResult validatePantryInput(String ingredientName, String quantity) {
         if (ingredientName == null || ingredientName.trim().isEmpty()) {
             return new ValidationResult(false, "原料名称不能为空");
@@ -0,0 +1,168 @@
+package com.chang1o.service;
+
+import com.chang1o.dao.DailyCheckInDao;
+import com.chang1o.model.PopulationStats;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+public class PopulationAnalyticsService {
+
+    private static final int DEFAULT_PARTITION_USERS = 2000;
+    private static final long IDLE_WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private final DailyCheckInDao dailyCheckInDao;
+    private final int partitionUsers;
+    private final int parallelism;
+
+    public PopulationAnalyticsService() {
+        this(DEFAULT_PARTITION_USERS, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PopulationAnalyticsService(int partitionUsers, int parallelism) {
+        this.dailyCheckInDao = new DailyCheckInDao();
+        this.partitionUsers = Math.max(1, partitionUsers);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public PopulationReport generateReport() {
+        long startNanos = System.nanoTime();
+        LocalDate asOfDate = LocalDate.now();
+
+        int[] range = dailyCheckInDao.getCheckInUserIdRange();
+        if (range == null) {
+            return new PopulationReport(new PopulationStats(asOfDate), 0, false, 0);
+        }
+
+        // 独立线程池，不占用公共 ForkJoinPool；叶子分区的 JDBC 读取通过 ManagedBlocker 声明为阻塞，
+        // 允许补偿线程继续拆分与合并，线程总数封顶为并行度的两倍，以限制同时打开的数据库连接
+        ForkJoinPool pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+            false, parallelism, parallelism * 2, 1, p -> true, IDLE_WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        try {
+            PartitionTask task = new PartitionTask(range[0], range[1], asOfDate);
+            PopulationStats stats = pool.invoke(task);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            return new PopulationReport(stats, task.partitions, task.failed, elapsedMillis);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // 按 user_id 区间二分，叶子分区各自流式读取并累加，合并时只合并固定大小的累加器
+    private class PartitionTask extends RecursiveTask<PopulationStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final int startUserId;
+        private final int endUserId;
+        private final LocalDate asOfDate;
+        private int partitions;
+        private boolean failed;
+
+        PartitionTask(int startUserId, int endUserId, LocalDate asOfDate) {
+            this.startUserId = startUserId;
+            this.endUserId = endUserId;
+            this.asOfDate = asOfDate;
+        }
+
+        @Override
+        protected PopulationStats compute() {
+            if ((long) endUserId - startUserId < partitionUsers) {
+                PartitionRead read = new PartitionRead(startUserId, endUserId, new PopulationStats(asOfDate));
+                try {
+                    ForkJoinPool.managedBlock(read);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    read.failed = true;
+                }
+                failed = read.failed;
+                partitions = 1;
+                return read.stats;
+            }
+
+            int middle = (int) (((long) startUserId + endUserId) >>> 1);
+            PartitionTask left = new PartitionTask(startUserId, middle, asOfDate);
+            PartitionTask right = new PartitionTask(middle + 1, endUserId, asOfDate);
+            left.fork();
+            PopulationStats stats = right.compute().merge(left.join());
+            partitions = left.partitions + right.partitions;
+            failed = left.failed || right.failed;
+            return stats;
+        }
+    }
+
+    private class PartitionRead implements ForkJoinPool.ManagedBlocker {
+        private final int startUserId;
+        private final int endUserId;
+        private final PopulationStats stats;
+        private boolean done;
+        private boolean failed;
+
+        PartitionRead(int startUserId, int endUserId, PopulationStats stats) {
+            this.startUserId = startUserId;
+            this.endUserId = endUserId;
+            this.stats = stats;
+        }
+
+        @Override
+        public boolean block() {
+            failed = !dailyCheckInDao.accumulatePopulationStats(startUserId, endUserId, stats);
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    public static class PopulationReport {
+        private final PopulationStats stats;
+        private final int partitions;
+        private final boolean failed;
+        private final long elapsedMillis;
+
+        public PopulationReport(PopulationStats stats, int partitions, boolean failed, long elapsedMillis) {
+            this.stats = stats;
+            this.partitions = partitions;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public PopulationStats getStats() { return stats; }
+        public int getPartitions() { return partitions; }
+        public boolean isFailed() { return failed; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        @Override
+        public String toString() {
+            String[] moodNames = {"很差", "不好", "一般", "不错", "很好"};
+            StringBuilder report = new StringBuilder();
+            report.append("=== 全站健康统计（截至 ").append(stats.getAsOfDate()).append("） ===\n");
+            report.append(String.format("用户数：%d，打卡次数：%d%n", stats.getUserCount(), stats.getCheckInCount()));
+            report.append(String.format("平均健康评分：%.1f/100%n", stats.getAvgHealthScore()));
+            report.append(String.format("平均睡眠：%.1f小时，平均饮水：%.0f毫升，平均运动：%.0f分钟%n",
+                stats.getAvgSleepHours(), stats.getAvgWaterIntake(), stats.getAvgExerciseMinutes()));
+
+            report.append("心情分布：");
+            for (int score = 5; score >= 1; score--) {
+                long count = stats.getMoodCount(score);
+                double percent = stats.getCheckInCount() > 0 ? count * 100.0 / stats.getCheckInCount() : 0;
+                report.append(String.format("%s %.1f%%  ", moodNames[score - 1], percent));
+            }
+            report.append("\n\n");
+
+            report.append(String.format("%-10s%8s%10s%10s%12s%n", "首次打卡", "用户数", "打卡率", "平均评分", "30天活跃率"));
+            for (PopulationStats.CohortStats cohort : stats.getCohorts().values()) {
+                report.append(String.format("%-12s%10d%11.1f%%%12.1f%13.1f%%%n", cohort.getMonth(), cohort.getUsers(),
+                    cohort.getAvgCheckInRate() * 100, cohort.getAvgHealthScore(), cohort.getRetentionRate() * 100));
+            }
+
+            report.append(String.format("%n分区：%d，耗时：%dms%s", partitions, elapsedMillis,
+                failed ? "（部分分区读取失败，结果不完整）" : ""));
+            return report.toString();
+        }
+    }
+}
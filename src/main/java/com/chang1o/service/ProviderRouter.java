@@ -0,0 +1,287 @@
+package com.chang1o.service;
+
+import com.chang1o.util.CircuitBreaker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * 在多个大模型服务商之间路由请求。
+ * 按健康度与延迟排序选择首选服务商；调用失败或超时立即转移到下一个；
+ * 开启对冲时，若首选服务商超过其 p95 延迟仍未返回，再向下一个服务商发出同样的请求，
+ * 先返回者胜出，另一路的 HTTP 请求被中止。只有约 5% 的慢请求会触发对冲，额外成本有限。
+ * 每次发出请求前先经过该服务商的熔断器与令牌桶：熔断中或排队已满的服务商直接跳过，
+ * 这类本地拒绝不计入服务商的错误率。
+ */
+public class ProviderRouter {
+
+    private final List<AiProvider> providers;
+    private final boolean hedgeEnabled;
+    private final ScheduledExecutorService hedgeTimer;
+
+    public ProviderRouter(List<AiProvider> providers, boolean hedgeEnabled) {
+        this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public List<AiProvider> getProviders() {
+        return providers;
+    }
+
+    // 健康的排前面，同组内按打分排序；排序稳定，同分时保持配置顺序
+    public List<AiProvider> rankedProviders() {
+        List<AiProvider> ranked = new ArrayList<>(providers);
+        ranked.sort(Comparator.comparing((AiProvider p) -> !p.isHealthy())
+            .thenComparingDouble(AiProvider::getRoutingScore));
+        return ranked;
+    }
+
+    /**
+     * 执行一次非流式调用。call 对失败返回 null（而不是异常完成）；
+     * 所有服务商都失败时结果为 null。
+     */
+    public CompletableFuture<String> execute(Function<AiProvider, CompletableFuture<String>> call) {
+        List<AiProvider> candidates = permittedProviders();
+        if (candidates.isEmpty()) {
+            System.err.println("所有AI服务商均处于熔断状态，请稍后再试");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Execution execution = new Execution(candidates, call);
+        execution.launchNext();
+
+        if (hedgeEnabled && execution.candidates.size() > 1) {
+            long hedgeDelay = execution.candidates.get(0).getP95LatencyMillis();
+            if (hedgeDelay > 0) {
+                hedgeTimer.schedule(execution::hedge, hedgeDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        return execution.result;
+    }
+
+    /**
+     * 流式调用只做顺序故障转移，不做对冲：两路同时输出会让内容交错。
+     * 一旦已有内容输出给用户（canRetry 返回 false），就不再切换服务商。
+     */
+    public CompletableFuture<Boolean> executeStreaming(Function<AiProvider, CompletableFuture<Boolean>> call,
+                                                       BooleanSupplier canRetry) {
+        List<AiProvider> candidates = permittedProviders();
+        if (candidates.isEmpty()) {
+            System.err.println("所有AI服务商均处于熔断状态，请稍后再试");
+            return CompletableFuture.completedFuture(false);
+        }
+        return streamFrom(candidates, 0, call, canRetry);
+    }
+
+    private List<AiProvider> permittedProviders() {
+        List<AiProvider> permitted = rankedProviders();
+        permitted.removeIf(provider -> !provider.getCircuitBreaker().isCallPermitted());
+        return permitted;
+    }
+
+    /**
+     * 先占用熔断器名额，再从令牌桶取令牌（可能排队），最后才真正发出请求。
+     * 熔断拒绝、排队满或排队超时时返回异常完成的 future，调用方据此跳过该服务商。
+     * 返回的 future 被取消（对冲落败）时归还熔断器名额：落败请求的结果不再计入健康度，
+     * 若它占着半开状态的探测名额又不归还，熔断器将永远停在半开。
+     * 取消同时传递给 call 返回的 future，由它中止底层的 HTTP 请求；派生的 future 不会把取消向上游传递。
+     */
+    private static <T> CompletableFuture<T> dispatch(AiProvider provider, BooleanSupplier abandoned,
+                                                     Function<AiProvider, CompletableFuture<T>> call) {
+        CircuitBreaker breaker = provider.getCircuitBreaker();
+        if (!breaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException(provider.getName() + " 已熔断"));
+        }
+
+        CompletableFuture<T> attempt = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> request = new AtomicReference<>();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                breaker.releasePermission();
+            }
+        };
+        attempt.whenComplete((response, error) -> {
+            if (attempt.isCancelled()) {
+                release.run();
+                CompletableFuture<T> sent = request.get();
+                if (sent != null) {
+                    sent.cancel(true);
+                }
+            }
+        });
+
+        provider.getRateLimiter().acquire().whenComplete((granted, error) -> {
+            if (error != null || abandoned.getAsBoolean() || attempt.isDone()) {
+                release.run();
+                attempt.completeExceptionally(error != null ? error : new CancellationException("请求已由其他服务商完成"));
+                return;
+            }
+            CompletableFuture<T> sent = call.apply(provider);
+            request.set(sent);
+            // 发出请求的同时被取消：上面的回调可能没看到 request，这里补一次
+            if (attempt.isCancelled()) {
+                sent.cancel(true);
+            }
+            sent.whenComplete((response, failure) -> {
+                if (failure != null) {
+                    attempt.completeExceptionally(failure);
+                } else {
+                    attempt.complete(response);
+                }
+            });
+        });
+        return attempt;
+    }
+
+    private static String describeRejection(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "排队超时";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private CompletableFuture<Boolean> streamFrom(List<AiProvider> candidates, int index,
+                                                  Function<AiProvider, CompletableFuture<Boolean>> call,
+                                                  BooleanSupplier canRetry) {
+        if (index >= candidates.size()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        AiProvider provider = candidates.get(index);
+        long start = System.nanoTime();
+        return dispatch(provider, () -> false, call).handle((success, error) -> {
+            if (error != null) {
+                System.err.println("服务商 " + provider.getName() + " 暂不可用（" + describeRejection(error) + "）");
+                return streamFrom(candidates, index + 1, call, canRetry);
+            }
+            if (Boolean.TRUE.equals(success)) {
+                provider.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return CompletableFuture.completedFuture(true);
+            }
+            provider.recordFailure();
+            if (!canRetry.getAsBoolean()) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (index + 1 < candidates.size()) {
+                System.err.println("服务商 " + provider.getName() + " 调用失败，切换到 " + candidates.get(index + 1).getName());
+            }
+            return streamFrom(candidates, index + 1, call, canRetry);
+        }).thenCompose(future -> future);
+    }
+
+    private static class Execution {
+        private final List<AiProvider> candidates;
+        private final Function<AiProvider, CompletableFuture<String>> call;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final List<CompletableFuture<String>> attempts = new ArrayList<>();
+        private int nextIndex;
+        private int inFlight;
+
+        private Execution(List<AiProvider> candidates, Function<AiProvider, CompletableFuture<String>> call) {
+            this.candidates = candidates;
+            this.call = call;
+        }
+
+        // 首选服务商仍在处理且没有其他尝试时，向下一个服务商发出对冲请求
+        private void hedge() {
+            synchronized (this) {
+                if (result.isDone() || nextIndex != 1 || inFlight != 1) {
+                    return;
+                }
+            }
+            launchNext();
+        }
+
+        private void launchNext() {
+            AiProvider provider;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                if (nextIndex >= candidates.size()) {
+                    if (inFlight == 0) {
+                        result.complete(null);
+                    }
+                    return;
+                }
+                provider = candidates.get(nextIndex++);
+                inFlight++;
+            }
+
+            long start = System.nanoTime();
+            CompletableFuture<String> attempt = dispatch(provider, result::isDone, call);
+            synchronized (this) {
+                attempts.add(attempt);
+            }
+
+            attempt.whenComplete((response, error) -> {
+                if (attempt.isCancelled()) {
+                    return;
+                }
+                if (error != null && !result.isDone()) {
+                    System.err.println("服务商 " + provider.getName() + " 暂不可用（" + describeRejection(error) + "）");
+                }
+                if (error == null && response != null) {
+                    provider.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    if (result.complete(response)) {
+                        cancelOthers(attempt);
+                    }
+                    return;
+                }
+
+                if (error == null) {
+                    provider.recordFailure();
+                }
+                boolean failOver;
+                AiProvider fallback = null;
+                synchronized (this) {
+                    inFlight--;
+                    // 还有对冲中的请求在跑就先等它，避免同时打出更多请求
+                    failOver = inFlight == 0;
+                    if (failOver && nextIndex < candidates.size()) {
+                        fallback = candidates.get(nextIndex);
+                    }
+                }
+                if (failOver) {
+                    if (fallback != null) {
+                        System.err.println("服务商 " + provider.getName() + " 调用失败，切换到 " + fallback.getName());
+                    }
+                    launchNext();
+                }
+            });
+        }
+
+        private void cancelOthers(CompletableFuture<String> winner) {
+            List<CompletableFuture<String>> others;
+            synchronized (this) {
+                others = new ArrayList<>(attempts);
+            }
+            for (CompletableFuture<String> other : others) {
+                if (other != winner) {
+                    other.cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.chang1o.service;
+
+import com.chang1o.model.Recipe;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按名称把 AI 推荐的菜名对应回食谱库。
+ * 名称先去掉空白和标点再比较；没有完全相同的名称时，取推荐名中包含的最长食谱名，
+ * 例如“家常番茄炒蛋”对应到“番茄炒蛋”。同名食谱优先对应当前用户自己的。
+ */
+public class RecipeNameIndex {
+
+    // 太短的名称（如“粥”）做包含匹配容易误配，只参与完全匹配
+    private static final int MIN_CONTAINS_LENGTH = 2;
+
+    private final Map<String, Recipe> byName = new HashMap<>();
+
+    public RecipeNameIndex(List<Recipe> recipes, int preferredUserId) {
+        for (Recipe recipe : recipes) {
+            String key = normalize(recipe.getName());
+            if (key.isEmpty()) {
+                continue;
+            }
+            Recipe existing = byName.get(key);
+            if (existing == null || (existing.getUserId() != preferredUserId && recipe.getUserId() == preferredUserId)) {
+                byName.put(key, recipe);
+            }
+        }
+    }
+
+    public Recipe match(String name) {
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        Recipe exact = byName.get(key);
+        if (exact != null) {
+            return exact;
+        }
+
+        Recipe best = null;
+        int bestLength = 0;
+        for (Map.Entry<String, Recipe> entry : byName.entrySet()) {
+            String candidate = entry.getKey();
+            if (candidate.length() < MIN_CONTAINS_LENGTH || candidate.length() <= bestLength) {
+                continue;
+            }
+            if (key.contains(candidate)) {
+                best = entry.getValue();
+                bestLength = candidate.length();
+            }
+        }
+        return best;
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(name.length());
+        name.codePoints()
+            .filter(Character::isLetterOrDigit)
+            .map(Character::toLowerCase)
+            .forEach(normalized::appendCodePoint);
+        return normalized.toString();
+    }
+}
@@ -131,6 +131,11 @@ public class RecipeService {
         return recipes;
     }
 
+    // 只需要名称做匹配，不加载食材明细
+    public RecipeNameIndex getRecipeNameIndex(int userId) {
+        return new RecipeNameIndex(recipeDao.getAllRecipes(), userId);
+    }
+
     public RecipeResult addRecipeWithIngredients(String name, String instructions, int categoryId, int userId, List<RecipeIngredient> ingredients) {
         ValidationResult validation = validateRecipeInput(name, instructions, categoryId);
         if (!validation.isValid()) {
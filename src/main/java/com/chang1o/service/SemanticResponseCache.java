@@ -0,0 +1,409 @@
+package com.chang1o.service;
+
+import com.chang1o.util.NgramVectorizer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AI 回复的语义缓存，挂在精确缓存之后：精确键未命中时，找事实最接近的已回答提示词，复用它的回复。
+ * 提示词中的指令模板对同一功能都一样，只取其中的事实行（列表项、【】标记行和以冒号结尾的小标题），
+ * 排序后用字符 n-gram 哈希向量表示，食谱换了顺序、指标略有变化的提示词向量几乎相同。
+ * 近邻查找用随机超平面 LSH：每张表取若干个超平面的符号拼成桶号，任一张表同桶即为候选，
+ * 再按余弦相似度精确比较，超过阈值才算命中。
+ * 字符 n-gram 对“换了一种食材”“统计天数从 7 变成 30”这类改动同样不敏感，所以向量只用来找候选，复用前还要求：
+ * 同一用户；事实骨架（数值替换为占位符、日期原样保留）完全一致；每个数值与缓存条目的相对差都在容差之内。
+ * 也就是说只有同一用户、同样的条目、指标只是小幅波动时才复用回复。
+ * 这里只保存向量与精确缓存的键，回复本身仍由 AiResponseCache 存储；索引以追加方式写入磁盘，启动时重建。
+ */
+public class SemanticResponseCache {
+
+    private static final int DIMENSIONS = 1024;
+    private static final int TABLES = 10;
+    private static final int BITS_PER_TABLE = 8;
+    private static final long HYPERPLANE_SEED = 20240611L;
+    // 日期（2024-06-11）两侧紧邻连字符，不当作可浮动的数值，留在骨架里必须完全一致
+    private static final Pattern NUMBER = Pattern.compile("(?<![0-9.\\-])[0-9]+(\\.[0-9]+)?(?![0-9.\\-])");
+
+    private final NgramVectorizer vectorizer = new NgramVectorizer(DIMENSIONS, 2, 3);
+    private final float[][][] hyperplanes = new float[TABLES][BITS_PER_TABLE][DIMENSIONS];
+    private final List<Map<Long, List<Entry>>> tables = new ArrayList<>();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final Path path;
+    private final String namespace;
+    private final double threshold;
+    private final double numberTolerance;
+    private final int maxEntries;
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private BufferedWriter writer;
+
+    public SemanticResponseCache(String path, String modelFingerprint, double threshold, double numberTolerance,
+                                 int maxEntries) {
+        this.path = Paths.get(path);
+        this.namespace = Integer.toHexString(modelFingerprint.hashCode());
+        this.threshold = threshold;
+        this.numberTolerance = numberTolerance;
+        this.maxEntries = maxEntries;
+
+        Random random = new Random(HYPERPLANE_SEED);
+        for (float[][] table : hyperplanes) {
+            for (float[] plane : table) {
+                for (int i = 0; i < DIMENSIONS; i++) {
+                    plane[i] = (float) random.nextGaussian();
+                }
+            }
+        }
+        for (int i = 0; i < TABLES; i++) {
+            tables.add(new HashMap<>());
+        }
+        load();
+    }
+
+    /**
+     * 返回最相近且回复仍在精确缓存中的答案；responses 按精确缓存键取回复，取不到说明已过期或被压缩掉，
+     * 对应的索引项随之移除。
+     */
+    public synchronized Match lookup(int userId, AiResponseCache.Feature feature, String prompt,
+                                     Function<String, String> responses) {
+        lookups.incrementAndGet();
+        String facts = extractFacts(prompt);
+        float[] vector = vectorizer.vectorize(facts);
+        int skeleton = skeletonHash(facts);
+        double[] numbers = extractNumbers(facts);
+        long now = System.currentTimeMillis();
+
+        Entry best = null;
+        double bestSimilarity = threshold;
+        List<Entry> expired = new ArrayList<>();
+        for (int t = 0; t < TABLES; t++) {
+            List<Entry> bucket = tables.get(t).get(bucketKey(userId, feature, signature(t, vector)));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry candidate : bucket) {
+                if (candidate.expiresAt <= now) {
+                    expired.add(candidate);
+                    continue;
+                }
+                if (candidate == best || candidate.skeleton != skeleton || !numbersClose(numbers, candidate.numbers)) {
+                    continue;
+                }
+                double similarity = NgramVectorizer.cosine(vector, candidate.vector);
+                if (similarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        for (Entry entry : expired) {
+            remove(entry);
+        }
+
+        if (best == null) {
+            return null;
+        }
+        String response = responses.apply(best.cacheKey);
+        if (response == null) {
+            remove(best);
+            return null;
+        }
+        hits.incrementAndGet();
+        return new Match(response, bestSimilarity);
+    }
+
+    public synchronized void add(int userId, AiResponseCache.Feature feature, String prompt, String cacheKey) {
+        String facts = extractFacts(prompt);
+        Entry entry = new Entry(userId, feature, cacheKey, vectorizer.vectorize(facts), skeletonHash(facts),
+            extractNumbers(facts), feature.expiresAt(System.currentTimeMillis()));
+        index(entry);
+        append(entry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public String getStats() {
+        long total = lookups.get();
+        long hit = hits.get();
+        return String.format("语义缓存 - 条目: %d, 查询: %d, 命中: %d, 命中率: %.0f%%, 相似度阈值: %.2f, 数值容差: %.0f%%",
+            size(), total, hit, total > 0 ? hit * 100.0 / total : 0, threshold, numberTolerance * 100);
+    }
+
+    // 只保留描述用户数据的行，排序后与模板措辞、条目先后无关
+    static String extractFacts(String prompt) {
+        List<String> facts = new ArrayList<>();
+        for (String line : prompt.split("\n")) {
+            String trimmed = line.trim().replaceAll("\\s+", " ");
+            if (trimmed.startsWith("-") || trimmed.startsWith("【") || trimmed.endsWith("：")) {
+                facts.add(trimmed);
+            }
+        }
+        if (facts.isEmpty()) {
+            return prompt.trim().replaceAll("\\s+", " ");
+        }
+        facts.sort(null);
+        return String.join("\n", facts);
+    }
+
+    static int skeletonHash(String facts) {
+        return NUMBER.matcher(facts).replaceAll("#").hashCode();
+    }
+
+    static double[] extractNumbers(String facts) {
+        List<Double> numbers = new ArrayList<>();
+        Matcher matcher = NUMBER.matcher(facts);
+        while (matcher.find()) {
+            numbers.add(Double.parseDouble(matcher.group()));
+        }
+        double[] values = new double[numbers.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = numbers.get(i);
+        }
+        return values;
+    }
+
+    // 骨架相同保证个数与位置一一对应；0 与非 0 之间（如运动 0 分钟与 60 分钟）永远不算接近
+    private boolean numbersClose(double[] a, double[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (Math.abs(a[i] - b[i]) > numberTolerance * Math.max(Math.abs(a[i]), Math.abs(b[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int signature(int table, float[] vector) {
+        int signature = 0;
+        for (int bit = 0; bit < BITS_PER_TABLE; bit++) {
+            float[] plane = hyperplanes[table][bit];
+            double dot = 0;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                dot += plane[i] * vector[i];
+            }
+            if (dot >= 0) {
+                signature |= 1 << bit;
+            }
+        }
+        return signature;
+    }
+
+    private static long bucketKey(int userId, AiResponseCache.Feature feature, int signature) {
+        return (long) userId << 32 | feature.ordinal() << BITS_PER_TABLE | signature;
+    }
+
+    private void index(Entry entry) {
+        Entry previous = entries.remove(entry.key());
+        if (previous != null) {
+            unbucket(previous);
+        }
+        entries.put(entry.key(), entry);
+        for (int t = 0; t < TABLES; t++) {
+            entry.buckets[t] = bucketKey(entry.userId, entry.feature, signature(t, entry.vector));
+            tables.get(t).computeIfAbsent(entry.buckets[t], key -> new ArrayList<>()).add(entry);
+        }
+
+        // 超出容量时淘汰最早加入的条目
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (entries.size() > maxEntries && oldest.hasNext()) {
+            Entry evicted = oldest.next();
+            oldest.remove();
+            unbucket(evicted);
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key(), entry)) {
+            unbucket(entry);
+        }
+    }
+
+    private void unbucket(Entry entry) {
+        for (int t = 0; t < TABLES; t++) {
+            List<Entry> bucket = tables.get(t).get(entry.buckets[t]);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    tables.get(t).remove(entry.buckets[t]);
+                }
+            }
+        }
+    }
+
+    // 每行：命名空间、用户、功能、过期时间、事实骨架哈希、数值（逗号分隔）、精确缓存键、量化为 int8 的向量（Base64）
+    private void append(Entry entry) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(format(entry));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("写入语义缓存索引失败：" + e.getMessage());
+        }
+    }
+
+    private String format(Entry entry) {
+        // 按最大分量缩放到 int8，读回后重新归一化，缩放比例不影响余弦
+        float maxAbs = 0;
+        for (float value : entry.vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        byte[] quantized = new byte[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS && maxAbs > 0; i++) {
+            quantized[i] = (byte) Math.round(entry.vector[i] / maxAbs * 127);
+        }
+        StringBuilder numbers = new StringBuilder();
+        for (double number : entry.numbers) {
+            numbers.append(numbers.length() > 0 ? "," : "").append(number);
+        }
+        return namespace + "\t" + entry.userId + "\t" + entry.feature.name() + "\t" + entry.expiresAt + "\t" + entry.skeleton
+            + "\t" + numbers + "\t" + entry.cacheKey + "\t" + Base64.getEncoder().encodeToString(quantized);
+    }
+
+    private Entry parse(String line, long now) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length != 8 || !namespace.equals(parts[0])) {
+            return null;
+        }
+        try {
+            int userId = Integer.parseInt(parts[1]);
+            long expiresAt = Long.parseLong(parts[3]);
+            int skeleton = Integer.parseInt(parts[4]);
+            double[] numbers = parts[5].isEmpty() ? new double[0]
+                : Arrays.stream(parts[5].split(",")).mapToDouble(Double::parseDouble).toArray();
+            byte[] quantized = Base64.getDecoder().decode(parts[7]);
+            if (expiresAt <= now || quantized.length != DIMENSIONS) {
+                return null;
+            }
+
+            float[] vector = new float[DIMENSIONS];
+            double norm = 0;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = quantized[i];
+                norm += vector[i] * vector[i];
+            }
+            if (norm == 0) {
+                return null;
+            }
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] *= scale;
+            }
+            return new Entry(userId, AiResponseCache.Feature.valueOf(parts[2]), parts[6], vector, skeleton, numbers, expiresAt);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void load() {
+        long now = System.currentTimeMillis();
+        int lines = 0;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(path)) {
+                try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines++;
+                        Entry entry = parse(line, now);
+                        if (entry != null) {
+                            index(entry);
+                        }
+                    }
+                }
+            }
+
+            // 过期、被覆盖或属于其他模型配置的行超过一半时重写文件
+            if (lines > 0 && entries.size() * 2 < lines) {
+                Path compacting = Paths.get(path + ".compacting");
+                try (BufferedWriter out = Files.newBufferedWriter(compacting, StandardCharsets.US_ASCII)) {
+                    for (Entry entry : entries.values()) {
+                        out.write(format(entry));
+                        out.newLine();
+                    }
+                }
+                Files.move(compacting, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            writer = Files.newBufferedWriter(path, StandardCharsets.US_ASCII,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("加载语义缓存索引失败，仅在内存中使用：" + e.getMessage());
+        }
+    }
+
+    public static class Match {
+        private final String response;
+        private final double similarity;
+
+        private Match(String response, double similarity) {
+            this.response = response;
+            this.similarity = similarity;
+        }
+
+        public String getResponse() {
+            return response;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+
+    private static class Entry {
+        private final int userId;
+        private final AiResponseCache.Feature feature;
+        private final String cacheKey;
+        private final float[] vector;
+        private final int skeleton;
+        private final double[] numbers;
+        private final long expiresAt;
+        private final long[] buckets = new long[TABLES];
+
+        private Entry(int userId, AiResponseCache.Feature feature, String cacheKey, float[] vector, int skeleton,
+                      double[] numbers, long expiresAt) {
+            this.userId = userId;
+            this.feature = feature;
+            this.cacheKey = cacheKey;
+            this.vector = vector;
+            this.skeleton = skeleton;
+            this.numbers = numbers;
+            this.expiresAt = expiresAt;
+        }
+
+        // 相同提示词的精确缓存键对所有用户相同，语义索引按用户各存一份
+        private String key() {
+            return userId + "@" + cacheKey;
+        }
+    }
+}
@@ -70,6 +70,7 @@ public class MenuManager {
     System.out.println("  4. 删除库存食品");
     System.out.println("  5. 检查即将过期食品");
     System.out.println("  6. 查看已过期食品");
+    System.out.println("  7. 合并重复库存");
     System.out.println("  0. 返回主菜单");
     System.out.println();
     ConsoleUI.showSeparator();
@@ -82,10 +83,14 @@ public class MenuManager {
     System.out.println("  [健康数据管理]");
     System.out.println("    1. 管理健康数据");
     System.out.println("    2. 每日打卡");
+    System.out.println("    7. 快速记录饮水/运动");
+    System.out.println("    8. 导入历史打卡（CSV/JSONL）");
     System.out.println();
     System.out.println("  [健康报告]");
     System.out.println("    3. 查看健康报告");
     System.out.println("    4. 健康统计分析");
+    System.out.println("    5. 年度打卡日历");
+    System.out.println("    6. 趋势与相关性分析");
     System.out.println();
     System.out.println("    0. 返回主菜单");
     System.out.println();
@@ -101,6 +106,7 @@ public class MenuManager {
     System.out.println("  2. 智能食谱推荐");
     System.out.println("  3. 智能购物清单");
     System.out.println("  4. 营养分析报告");
+    System.out.println("  5. AI服务商与缓存状态");
     System.out.println("  0. 返回主菜单");
     System.out.println();
     ConsoleUI.showSeparator();
@@ -91,6 +91,24 @@ public class DBUtil {
        }
    }
 
+   // 返回真实受影响行数而非匹配行数，INSERT ... ON DUPLICATE KEY UPDATE 据此区分插入(1)、更新(2)、未变化(0)
+   public Connection getAffectedRowsConnection() throws SQLException {
+       if (!isInitialized) {
+           loadConfiguration();
+       }
+
+       Properties props = new Properties();
+       props.setProperty("user", DB_USERNAME);
+       props.setProperty("password", DB_PASSWORD);
+       props.setProperty("useAffectedRows", "true");
+
+       try {
+           return DriverManager.getConnection(DB_URL, props);
+       } catch (SQLException e) {
+           throw new SQLException("数据库连接失败");
+       }
+   }
+
    public static void closeConnection(Connection conn){
         if (conn != null){
             try{
@@ -0,0 +1,401 @@
+package com.chang1o.util;
+
+public class JsonReader {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int MAX_DEPTH = 64;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private final boolean[] objectScopes = new boolean[MAX_DEPTH];
+    private CharSequence in;
+    private int pos;
+    private int depth;
+    private boolean expectName;
+
+    public JsonReader(CharSequence in) {
+        reset(in);
+    }
+
+    // 复用同一个 reader 及其字符串缓冲解析下一段输入
+    public JsonReader reset(CharSequence in) {
+        this.in = in;
+        this.pos = 0;
+        this.depth = 0;
+        this.expectName = false;
+        return this;
+    }
+
+    public Token peek() {
+        skipSeparators();
+        if (pos >= in.length()) {
+            return Token.END_DOCUMENT;
+        }
+
+        char c = in.charAt(pos);
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '}': return Token.END_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case ']': return Token.END_ARRAY;
+            case '"': return expectName ? Token.NAME : Token.STRING;
+            case 't':
+            case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw syntaxError("意外的字符 '" + c + "'");
+        }
+    }
+
+    public void beginObject() {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(true);
+        expectName = true;
+    }
+
+    public void endObject() {
+        expect(Token.END_OBJECT);
+        pos++;
+        depth--;
+        afterValue();
+    }
+
+    public void beginArray() {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(false);
+        expectName = false;
+    }
+
+    public void endArray() {
+        expect(Token.END_ARRAY);
+        pos++;
+        depth--;
+        afterValue();
+    }
+
+    public boolean hasNext() {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() {
+        expect(Token.NAME);
+        String name = readString();
+        skipWhitespace();
+        if (pos >= in.length() || in.charAt(pos) != ':') {
+            throw syntaxError("缺少 ':'");
+        }
+        pos++;
+        expectName = false;
+        return name;
+    }
+
+    public boolean nextNameEquals(String expected) {
+        expect(Token.NAME);
+        int start = pos + 1;
+        int length = expected.length();
+        boolean plain = start + length < in.length() && in.charAt(start + length) == '"';
+        for (int i = 0; plain && i < length; i++) {
+            char c = in.charAt(start + i);
+            plain = c == expected.charAt(i) && c != '\\';
+        }
+        if (plain) {
+            pos = start + length + 1;
+            skipWhitespace();
+            if (pos >= in.length() || in.charAt(pos) != ':') {
+                throw syntaxError("缺少 ':'");
+            }
+            pos++;
+            expectName = false;
+            return true;
+        }
+        return expected.equals(nextName());
+    }
+
+    public String nextString() {
+        Token token = peek();
+        if (token == Token.NUMBER || token == Token.BOOLEAN) {
+            String literal = readLiteral();
+            afterValue();
+            return literal;
+        }
+        expect(Token.STRING);
+        String value = readString();
+        afterValue();
+        return value;
+    }
+
+    public double nextDouble() {
+        Token token = peek();
+        String literal = token == Token.STRING ? readString() : readLiteral();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("期望数字");
+        }
+        afterValue();
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw syntaxError("无效的数字 " + literal);
+        }
+    }
+
+    public long nextLong() {
+        double value = nextDouble();
+        if (value != Math.rint(value)) {
+            throw syntaxError("期望整数");
+        }
+        return (long) value;
+    }
+
+    public boolean nextBoolean() {
+        expect(Token.BOOLEAN);
+        String literal = readLiteral();
+        afterValue();
+        if ("true".equals(literal)) {
+            return true;
+        }
+        if ("false".equals(literal)) {
+            return false;
+        }
+        throw syntaxError("无效的布尔值 " + literal);
+    }
+
+    public void nextNull() {
+        expect(Token.NULL);
+        String literal = readLiteral();
+        if (!"null".equals(literal)) {
+            throw syntaxError("无效的字面量 " + literal);
+        }
+        afterValue();
+    }
+
+    public void skipValue() {
+        int nested = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    nested++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    nested++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    nested--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    nested--;
+                    break;
+                case NAME:
+                    skipString();
+                    skipWhitespace();
+                    pos++;
+                    expectName = false;
+                    break;
+                case STRING:
+                    skipString();
+                    afterValue();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("意外的输入结束");
+                default:
+                    readLiteral();
+                    afterValue();
+                    break;
+            }
+        } while (nested > 0);
+    }
+
+    /**
+     * 按路径取字符串值，不构建 DOM。路径元素为 String（对象键）或 Integer（数组下标），
+     * 例如 readString(json, "choices", 0, "message", "content")。路径不存在或值为 null 时返回 null。
+     */
+    public static String readString(CharSequence json, Object... path) {
+        try {
+            JsonReader reader = new JsonReader(json);
+            return reader.seek(path) ? reader.nextStringOrNull() : null;
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    public boolean seek(Object... path) {
+        for (Object step : path) {
+            if (step instanceof Integer) {
+                if (peek() != Token.BEGIN_ARRAY) {
+                    return false;
+                }
+                beginArray();
+                for (int i = 0; i < (Integer) step; i++) {
+                    if (!hasNext()) {
+                        return false;
+                    }
+                    skipValue();
+                }
+                if (!hasNext()) {
+                    return false;
+                }
+            } else {
+                if (peek() != Token.BEGIN_OBJECT) {
+                    return false;
+                }
+                beginObject();
+                boolean found = false;
+                while (hasNext()) {
+                    if (nextNameEquals((String) step)) {
+                        found = true;
+                        break;
+                    }
+                    skipValue();
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public String nextStringOrNull() {
+        Token token = peek();
+        if (token == Token.NULL) {
+            nextNull();
+            return null;
+        }
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            skipValue();
+            return null;
+        }
+        return nextString();
+    }
+
+    private void afterValue() {
+        skipWhitespace();
+        expectName = false;
+        if (pos < in.length() && in.charAt(pos) == ',') {
+            pos++;
+            expectName = depth > 0 && objectScopes[depth - 1];
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == MAX_DEPTH) {
+            throw syntaxError("嵌套层级过深");
+        }
+        objectScopes[depth++] = object;
+    }
+
+    private void expect(Token expected) {
+        Token actual = peek();
+        if (actual != expected) {
+            throw syntaxError("期望 " + expected + "，实际为 " + actual);
+        }
+    }
+
+    private void skipSeparators() {
+        skipWhitespace();
+    }
+
+    private void skipWhitespace() {
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private String readLiteral() {
+        int start = pos;
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                break;
+            }
+            pos++;
+        }
+        return in.subSequence(start, pos).toString();
+    }
+
+    private void skipString() {
+        pos++;
+        while (pos < in.length()) {
+            char c = in.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+        throw syntaxError("字符串未闭合");
+    }
+
+    private String readString() {
+        int start = ++pos;
+        while (pos < in.length()) {
+            char c = in.charAt(pos);
+            if (c == '"') {
+                String value = in.subSequence(start, pos).toString();
+                pos++;
+                return value;
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+
+        buffer.setLength(0);
+        buffer.append(in, start, pos);
+        while (pos < in.length()) {
+            char c = in.charAt(pos++);
+            if (c == '"') {
+                return buffer.toString();
+            }
+            if (c != '\\') {
+                buffer.append(c);
+                continue;
+            }
+            if (pos >= in.length()) {
+                break;
+            }
+            char escaped = in.charAt(pos++);
+            switch (escaped) {
+                case 'n': buffer.append('\n'); break;
+                case 'r': buffer.append('\r'); break;
+                case 't': buffer.append('\t'); break;
+                case 'b': buffer.append('\b'); break;
+                case 'f': buffer.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > in.length()) {
+                        throw syntaxError("无效的 unicode 转义");
+                    }
+                    try {
+                        buffer.append((char) Integer.parseInt(in.subSequence(pos, pos + 4).toString(), 16));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("无效的 unicode 转义");
+                    }
+                    pos += 4;
+                    break;
+                default: buffer.append(escaped); break;
+            }
+        }
+        throw syntaxError("字符串未闭合");
+    }
+
+    private IllegalStateException syntaxError(String message) {
+        return new IllegalStateException("JSON 解析错误（位置 " + pos + "）：" + message);
+    }
+}
@@ -0,0 +1,72 @@
+package com.chang1o.util;
+
+/**
+ * 字符 n-gram 哈希向量化：把文本中每个长度为 minN..maxN 的字符片段哈希到固定维度，
+ * 按哈希的符号位加减 1，最后做 L2 归一化。两个向量的点积即余弦相似度。
+ * 不依赖外部模型，对字符级的小改动（数字微调、语序调换）不敏感，适合判断“几乎相同的问题”。
+ */
+public class NgramVectorizer {
+
+    private final int dimensions;
+    private final int minN;
+    private final int maxN;
+
+    public NgramVectorizer(int dimensions, int minN, int maxN) {
+        this.dimensions = dimensions;
+        this.minN = Math.max(1, minN);
+        this.maxN = Math.max(this.minN, maxN);
+    }
+
+    public float[] vectorize(String text) {
+        float[] vector = new float[dimensions];
+        int[] codePoints = text.codePoints().toArray();
+
+        for (int n = minN; n <= maxN; n++) {
+            for (int start = 0; start + n <= codePoints.length; start++) {
+                int hash = hash(codePoints, start, n);
+                int index = (hash & 0x7FFFFFFF) % dimensions;
+                vector[index] += (hash >>> 31) == 0 ? 1 : -1;
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    // 输入须为 vectorize 的结果（已归一化）
+    public static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    // FNV-1a 累积后用 murmur3 的 fmix32 打散，片段长度参与种子，避免不同 n 的片段集中在同一位置
+    private static int hash(int[] codePoints, int start, int length) {
+        int hash = 0x811C9DC5 ^ length;
+        for (int i = start; i < start + length; i++) {
+            hash ^= codePoints[i];
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
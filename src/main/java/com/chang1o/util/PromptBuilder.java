@@ -0,0 +1,251 @@
+package com.chang1o.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 按 token 预算拼装提示词。
+ * 固定文本（角色设定、任务说明、输出要求）总是保留；数据段落按优先级依次装填，
+ * 段内条目按相关度从高到低取，重复条目只保留相关度最高的一条，
+ * 放不下的条目被省略并在段尾注明省略数量，段落最终仍按声明顺序输出。
+ */
+public class PromptBuilder {
+
+    private static final int MIN_TRUNCATED_TOKENS = 16;
+    private static final String ELLIPSIS = "…";
+
+    private final int budget;
+    private final List<Object> parts = new ArrayList<>();
+
+    public PromptBuilder(int budget) {
+        this.budget = budget;
+    }
+
+    public PromptBuilder text(String text) {
+        parts.add(text);
+        return this;
+    }
+
+    public Section section(String header, int priority) {
+        Section section = new Section(header, priority);
+        parts.add(section);
+        return section;
+    }
+
+    public Prompt build() {
+        int remaining = budget;
+        List<Section> sections = new ArrayList<>();
+        for (Object part : parts) {
+            if (part instanceof Section) {
+                sections.add((Section) part);
+            } else {
+                remaining -= TokenEstimator.estimate((String) part);
+            }
+        }
+
+        sections.sort(Comparator.comparingInt((Section s) -> s.priority).reversed());
+        int omitted = 0;
+        for (Section section : sections) {
+            remaining = section.fill(remaining);
+            omitted += section.omitted;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Section) {
+                ((Section) part).render(text);
+            } else {
+                text.append((String) part);
+            }
+        }
+
+        String prompt = text.toString();
+        return new Prompt(prompt, TokenEstimator.estimate(prompt), budget, omitted);
+    }
+
+    public static class Section {
+        private final String header;
+        private final int priority;
+        private final List<Item> items = new ArrayList<>();
+        private final Set<String> keys = new HashSet<>();
+        private String emptyText;
+        private int maxItems = Integer.MAX_VALUE;
+        private int maxItemTokens = Integer.MAX_VALUE;
+
+        private final List<String> included = new ArrayList<>();
+        private boolean headerIncluded;
+        private boolean noteIncluded;
+        private int omitted;
+
+        private Section(String header, int priority) {
+            this.header = header;
+            this.priority = priority;
+        }
+
+        public Section whenEmpty(String emptyText) {
+            this.emptyText = emptyText;
+            return this;
+        }
+
+        public Section limit(int maxItems) {
+            this.maxItems = maxItems;
+            return this;
+        }
+
+        public Section maxItemTokens(int maxItemTokens) {
+            this.maxItemTokens = maxItemTokens;
+            return this;
+        }
+
+        public Section add(String text, double score) {
+            return add(text, text, score);
+        }
+
+        // 同一 key 重复出现时保留相关度较高的那条
+        public Section add(String key, String text, double score) {
+            String normalized = key.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            if (keys.add(normalized)) {
+                items.add(new Item(normalized, text, score));
+                return this;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                Item existing = items.get(i);
+                if (existing.key.equals(normalized) && existing.score < score) {
+                    items.set(i, new Item(normalized, text, score));
+                }
+            }
+            return this;
+        }
+
+        private int fill(int remaining) {
+            int headerTokens = TokenEstimator.estimate(header);
+            if (items.isEmpty()) {
+                if (emptyText != null) {
+                    int cost = headerTokens + TokenEstimator.estimate(emptyText);
+                    if (cost <= remaining) {
+                        headerIncluded = true;
+                        included.add(emptyText);
+                        remaining -= cost;
+                    }
+                }
+                return remaining;
+            }
+
+            items.sort(Comparator.comparingDouble((Item item) -> item.score).reversed());
+            for (Item item : items) {
+                if (included.size() >= maxItems) {
+                    break;
+                }
+
+                String text = clip(item.text, maxItemTokens);
+                int cost = TokenEstimator.estimate(text) + (headerIncluded ? 0 : headerTokens);
+                if (cost > remaining) {
+                    // 预算仅够一部分时截断当前条目，太短的残片没有意义则直接跳过
+                    int available = remaining - (headerIncluded ? 0 : headerTokens);
+                    if (available < MIN_TRUNCATED_TOKENS) {
+                        continue;
+                    }
+                    text = clip(text, available);
+                    cost = TokenEstimator.estimate(text) + (headerIncluded ? 0 : headerTokens);
+                }
+
+                headerIncluded = true;
+                included.add(text);
+                remaining -= cost;
+            }
+
+            omitted = items.size() - included.size();
+            if (omitted > 0) {
+                String note = omittedNote();
+                int cost = TokenEstimator.estimate(note) + (headerIncluded ? 0 : headerTokens);
+                if (cost <= remaining) {
+                    headerIncluded = true;
+                    noteIncluded = true;
+                    remaining -= cost;
+                }
+            }
+            return remaining;
+        }
+
+        private void render(StringBuilder out) {
+            if (!headerIncluded) {
+                return;
+            }
+            out.append(header).append("\n");
+            for (String text : included) {
+                out.append(text).append("\n");
+            }
+            if (noteIncluded) {
+                out.append(omittedNote()).append("\n");
+            }
+            out.append("\n");
+        }
+
+        private String omittedNote() {
+            return "- （另有" + omitted + "项因篇幅省略）";
+        }
+
+        private static String clip(String text, int maxTokens) {
+            if (maxTokens == Integer.MAX_VALUE || TokenEstimator.estimate(text) <= maxTokens) {
+                return text;
+            }
+
+            // 二分查找能放进预算的最长前缀
+            int budget = maxTokens - TokenEstimator.estimate(ELLIPSIS);
+            int low = 0;
+            int high = text.length();
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (TokenEstimator.estimate(text.subSequence(0, mid)) <= budget) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (low > 0 && Character.isHighSurrogate(text.charAt(low - 1))) {
+                low--;
+            }
+            return text.substring(0, low) + ELLIPSIS;
+        }
+    }
+
+    private static class Item {
+        private final String key;
+        private final String text;
+        private final double score;
+
+        private Item(String key, String text, double score) {
+            this.key = key;
+            this.text = text;
+            this.score = score;
+        }
+    }
+
+    public static class Prompt {
+        private final String text;
+        private final int tokens;
+        private final int budget;
+        private final int omittedItems;
+
+        private Prompt(String text, int tokens, int budget, int omittedItems) {
+            this.text = text;
+            this.tokens = tokens;
+            this.budget = budget;
+            this.omittedItems = omittedItems;
+        }
+
+        public String getText() { return text; }
+        public int getTokens() { return tokens; }
+        public int getBudget() { return budget; }
+        public int getOmittedItems() { return omittedItems; }
+
+        @Override
+        public String toString() {
+            return String.format("提示词约 %d tokens（预算 %d，省略 %d 项）", tokens, budget, omittedItems);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.chang1o.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 合并同一个键上并发进行中的调用：第一个调用者真正执行，
+ * 其余调用者共享它的结果，调用完成后键被移除，之后的请求重新执行。
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            // 返回副本，调用方取消不会影响其他共享者
+            return existing.thenApply(value -> value);
+        }
+
+        CompletableFuture<V> actual;
+        try {
+            actual = call.get();
+        } catch (RuntimeException e) {
+            actual = CompletableFuture.failedFuture(e);
+        }
+
+        actual.whenComplete((value, error) -> {
+            inFlight.remove(key, promise);
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(value);
+            }
+        });
+        return promise.thenApply(value -> value);
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
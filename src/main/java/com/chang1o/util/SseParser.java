@@ -0,0 +1,55 @@
+package com.chang1o.util;
+
+import java.util.function.Consumer;
+
+public class SseParser {
+
+    private final Consumer<String> onEvent;
+    private final StringBuilder data = new StringBuilder();
+    private boolean hasData;
+
+    public SseParser(Consumer<String> onEvent) {
+        this.onEvent = onEvent;
+    }
+
+    // 按 text/event-stream 规范逐行喂入：空行分隔事件，多个 data 行以换行拼接
+    public void feedLine(String line) {
+        if (line.isEmpty()) {
+            dispatch();
+            return;
+        }
+        if (line.charAt(0) == ':') {
+            return;
+        }
+
+        int colon = line.indexOf(':');
+        String field = colon >= 0 ? line.substring(0, colon) : line;
+        if (!"data".equals(field)) {
+            return;
+        }
+
+        String value = colon >= 0 ? line.substring(colon + 1) : "";
+        if (value.startsWith(" ")) {
+            value = value.substring(1);
+        }
+        if (hasData) {
+            data.append('\n');
+        }
+        data.append(value);
+        hasData = true;
+    }
+
+    public void finish() {
+        dispatch();
+    }
+
+    private void dispatch() {
+        if (!hasData) {
+            return;
+        }
+        String event = data.toString();
+        data.setLength(0);
+        hasData = false;
+        onEvent.accept(event);
+    }
+}
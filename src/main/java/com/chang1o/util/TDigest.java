@@ -0,0 +1,203 @@
+package com.chang1o.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class TDigest {
+
+    private static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+
+    private final double[] bufferValues;
+    private final double[] bufferWeights;
+    private int bufferCount;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression * Math.PI / 2) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferValues = new double[capacity * 5];
+        this.bufferWeights = new double[capacity * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (bufferCount == bufferValues.length) {
+            compress();
+        }
+        bufferValues[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            if (bufferCount == bufferValues.length) {
+                compress();
+            }
+            bufferValues[bufferCount] = other.means[i];
+            bufferWeights[bufferCount] = other.weights[i];
+            bufferCount++;
+        }
+        totalWeight += other.totalWeight;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public double quantile(double q) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidCount == 1 || q <= 0) {
+            return q <= 0 ? min : means[0];
+        }
+        if (q >= 1) {
+            return max;
+        }
+
+        double index = q * totalWeight;
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (index < cumulative + gap) {
+                double fraction = (index - cumulative) / gap;
+                return means[i] + (means[i + 1] - means[i]) * fraction;
+            }
+            cumulative += gap;
+        }
+
+        int last = centroidCount - 1;
+        double tail = weights[last] / 2;
+        double fraction = Math.min(1, (index - cumulative) / tail);
+        return means[last] + (max - means[last]) * fraction;
+    }
+
+    public long size() {
+        return Math.round(totalWeight);
+    }
+
+    public boolean isEmpty() {
+        return totalWeight == 0;
+    }
+
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+
+        int count = centroidCount + bufferCount;
+        double[] values = new double[count];
+        double[] valueWeights = new double[count];
+        System.arraycopy(means, 0, values, 0, centroidCount);
+        System.arraycopy(weights, 0, valueWeights, 0, centroidCount);
+        System.arraycopy(bufferValues, 0, values, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, valueWeights, centroidCount, bufferCount);
+        bufferCount = 0;
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double total = 0;
+        for (double w : valueWeights) {
+            total += w;
+        }
+
+        centroidCount = 0;
+        double mergedWeight = 0;
+        double currentMean = values[order[0]];
+        double currentWeight = valueWeights[order[0]];
+        double kLeft = scale(0);
+
+        for (int i = 1; i < count; i++) {
+            int idx = order[i];
+            double proposed = mergedWeight + currentWeight + valueWeights[idx];
+            if (scale(proposed / total) - kLeft <= 1) {
+                currentWeight += valueWeights[idx];
+                currentMean += (values[idx] - currentMean) * valueWeights[idx] / currentWeight;
+            } else {
+                appendCentroid(currentMean, currentWeight);
+                mergedWeight += currentWeight;
+                kLeft = scale(mergedWeight / total);
+                currentMean = values[idx];
+                currentWeight = valueWeights[idx];
+            }
+        }
+        appendCentroid(currentMean, currentWeight);
+    }
+
+    private void appendCentroid(double mean, double weight) {
+        if (centroidCount == means.length) {
+            means = Arrays.copyOf(means, centroidCount * 2);
+            weights = Arrays.copyOf(weights, centroidCount * 2);
+        }
+        means[centroidCount] = mean;
+        weights[centroidCount] = weight;
+        centroidCount++;
+    }
+
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(28 + centroidCount * 8);
+        buffer.putFloat((float) compression);
+        buffer.putDouble(isEmpty() ? 0 : min);
+        buffer.putDouble(isEmpty() ? 0 : max);
+        buffer.putInt(centroidCount);
+        for (int i = 0; i < centroidCount; i++) {
+            buffer.putFloat((float) means[i]);
+            buffer.putFloat((float) weights[i]);
+        }
+        return buffer.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest(buffer.getFloat());
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            digest.appendCentroid(buffer.getFloat(), buffer.getFloat());
+            digest.totalWeight += digest.weights[i];
+        }
+        if (count > 0) {
+            digest.min = min;
+            digest.max = max;
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,136 @@
+package com.chang1o.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步令牌桶限流。
+ * 有令牌时 acquire 立即完成；没有令牌时进入有界等待队列，按令牌补充速度依次放行；
+ * 队列已满或等待超时则以 RejectedExecutionException / TimeoutException 失败，由调用方快速降级。
+ */
+public class TokenBucket {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-bucket");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int permitsPerMinute;
+    private final double capacity;
+    private final double tokensPerNano;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private boolean drainScheduled;
+
+    public TokenBucket(int permitsPerMinute, int burst, int maxQueued, long maxWaitMillis) {
+        this.permitsPerMinute = permitsPerMinute;
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> waiter;
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            if (waiters.isEmpty() && now >= pausedUntilNanos && tokens >= 1) {
+                tokens -= 1;
+                return CompletableFuture.completedFuture(null);
+            }
+
+            waiters.removeIf(CompletableFuture::isDone);
+            if (waiters.size() >= maxQueued) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("请求排队已满"));
+            }
+
+            waiter = new CompletableFuture<>();
+            waiters.addLast(waiter);
+            scheduleDrain(now);
+        }
+        return waiter.orTimeout(maxWaitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 服务端返回 429 时清空令牌并暂停到 Retry-After 之后
+    public synchronized void pause(long millis) {
+        long now = System.nanoTime();
+        tokens = 0;
+        lastRefillNanos = now;
+        pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(millis));
+        if (!waiters.isEmpty()) {
+            scheduleDrain(now);
+        }
+    }
+
+    public synchronized int getQueued() {
+        waiters.removeIf(CompletableFuture::isDone);
+        return waiters.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d次/分钟，突发%d，排队上限%d，最长等待%dms",
+                permitsPerMinute, (int) capacity, maxQueued, maxWaitMillis);
+    }
+
+    private void drain() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            long now = System.nanoTime();
+            refill(now);
+            while (!waiters.isEmpty() && now >= pausedUntilNanos && tokens >= 1) {
+                CompletableFuture<Void> waiter = waiters.pollFirst();
+                if (!waiter.isDone()) {
+                    tokens -= 1;
+                    granted.add(waiter);
+                }
+            }
+            if (!waiters.isEmpty()) {
+                scheduleDrain(now);
+            }
+        }
+
+        // 在锁外唤醒，后续阶段不持有限流器的锁
+        for (CompletableFuture<Void> waiter : granted) {
+            if (!waiter.complete(null)) {
+                synchronized (this) {
+                    tokens = Math.min(capacity, tokens + 1);
+                }
+            }
+        }
+    }
+
+    private void scheduleDrain(long now) {
+        if (drainScheduled) {
+            return;
+        }
+        long untilToken = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        long delay = Math.max(untilToken, pausedUntilNanos - now);
+        drainScheduled = true;
+        SCHEDULER.schedule(this::drain, Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.chang1o.util;
+
+/**
+ * 本地近似的 token 估算，不依赖任何分词器词表。
+ * 规则参照常见 BPE 分词器对中英文混合文本的切分：
+ * 每个中日韩字符按 1 个 token，连续英文字母约 4 个字符 1 个 token，
+ * 连续数字约 3 位 1 个 token，其余标点符号各按 1 个 token，空白不计。
+ * 估算结果偏保守（略高于实际），用于控制提示词预算足够。
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int letterRun = 0;
+        int digitRun = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (isAsciiLetter(c)) {
+                tokens += runTokens(digitRun, 3);
+                digitRun = 0;
+                letterRun++;
+                continue;
+            }
+            if (c >= '0' && c <= '9') {
+                tokens += runTokens(letterRun, 4);
+                letterRun = 0;
+                digitRun++;
+                continue;
+            }
+
+            tokens += runTokens(letterRun, 4) + runTokens(digitRun, 3);
+            letterRun = 0;
+            digitRun = 0;
+
+            if (Character.isWhitespace(c) || Character.isLowSurrogate(c)) {
+                continue;
+            }
+            tokens++;
+        }
+
+        return tokens + runTokens(letterRun, 4) + runTokens(digitRun, 3);
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int runTokens(int run, int charsPerToken) {
+        return (run + charsPerToken - 1) / charsPerToken;
+    }
+}
@@ -69,6 +69,8 @@ CREATE TABLE pantry (
     quantity VARCHAR(50) COMMENT 'Quantity',
     expiry_date DATE COMMENT 'Expiry Date',
     
+    INDEX idx_pantry_expiry (expiry_date, id),
+    
     FOREIGN KEY (user_id)
         REFERENCES users(id)
         ON DELETE CASCADE,
@@ -134,4 +136,199 @@ CREATE TABLE daily_check_in (
     FOREIGN KEY (user_id)
         REFERENCES users(id)
         ON DELETE CASCADE
-) COMMENT='Daily Check-in Table';
\ No newline at end of file
+) COMMENT='Daily Check-in Table';
+-- ------------------------------------------------------
+-- Table structure for `pantry_expiry_notice`
+-- ------------------------------------------------------
+CREATE TABLE pantry_expiry_notice (
+    id INT PRIMARY KEY AUTO_INCREMENT COMMENT 'Notice ID',
+    user_id INT NOT NULL COMMENT 'User ID',
+    pantry_id INT NOT NULL COMMENT 'Pantry ID',
+    ingredient_id INT NOT NULL COMMENT 'Ingredient ID',
+    expiry_date DATE NOT NULL COMMENT 'Expiry Date',
+    days_left INT NOT NULL COMMENT 'Days Left When Swept',
+    is_read BOOLEAN NOT NULL DEFAULT FALSE COMMENT 'Read Flag',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT 'Created At',
+
+    UNIQUE KEY unique_pantry_expiry (pantry_id, expiry_date),
+    INDEX idx_notice_user_read (user_id, is_read),
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE,
+    FOREIGN KEY (pantry_id)
+        REFERENCES pantry(id)
+        ON DELETE CASCADE
+) COMMENT='Pantry Expiry Notice Table';
+
+-- ------------------------------------------------------
+-- Table structure for `job_watermark`
+-- ------------------------------------------------------
+CREATE TABLE job_watermark (
+    job_name VARCHAR(64) PRIMARY KEY COMMENT 'Job Name',
+    run_date DATE COMMENT 'Run Date',
+    last_date DATE COMMENT 'Cursor Date',
+    last_id INT NOT NULL DEFAULT 0 COMMENT 'Cursor ID',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At'
+) COMMENT='Background Job Watermark Table';
+
+-- ------------------------------------------------------
+-- Table structure for `check_in_flush_batch`
+-- ------------------------------------------------------
+CREATE TABLE check_in_flush_batch (
+    batch_id CHAR(36) PRIMARY KEY COMMENT 'Buffer Log Segment ID',
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT 'Applied At',
+
+    INDEX idx_flush_batch_applied (applied_at)
+) COMMENT='Applied Check-in Buffer Batch Table';
+
+-- ------------------------------------------------------
+-- Table structure for `check_in_streak`
+-- ------------------------------------------------------
+CREATE TABLE check_in_streak (
+    user_id INT PRIMARY KEY COMMENT 'User ID',
+    current_streak INT NOT NULL DEFAULT 0 COMMENT 'Streak Ending At Last Check-in',
+    longest_streak INT NOT NULL DEFAULT 0 COMMENT 'Longest Streak',
+    last_check_in_date DATE COMMENT 'Last Check-in Date',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At',
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Check-in Streak Table';
+
+-- ------------------------------------------------------
+-- Table structure for `check_in_bitmap`
+-- ------------------------------------------------------
+CREATE TABLE check_in_bitmap (
+    user_id INT PRIMARY KEY COMMENT 'User ID',
+    base_day INT NOT NULL COMMENT 'Epoch Day Of Bit 0',
+    bits MEDIUMBLOB NOT NULL COMMENT 'One Bit Per Day',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At',
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Check-in Day Bitmap Table';
+
+-- ------------------------------------------------------
+-- Table structure for `check_in_rollup`
+-- ------------------------------------------------------
+CREATE TABLE check_in_rollup (
+    user_id INT NOT NULL COMMENT 'User ID',
+    check_in_date DATE NOT NULL COMMENT 'Check-in Date',
+    cum_count INT NOT NULL COMMENT 'Cumulative Check-in Count',
+    cum_sleep DECIMAL(12,1) NOT NULL COMMENT 'Cumulative Sleep Hours',
+    cum_water BIGINT NOT NULL COMMENT 'Cumulative Water Intake (ml)',
+    cum_exercise BIGINT NOT NULL COMMENT 'Cumulative Exercise Minutes',
+    cum_mood BIGINT NOT NULL COMMENT 'Cumulative Mood Score',
+    cum_score BIGINT NOT NULL COMMENT 'Cumulative Health Score',
+
+    PRIMARY KEY (user_id, check_in_date),
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Check-in Prefix Sum Rollup Table';
+
+-- ------------------------------------------------------
+-- Table structure for `check_in_sketch`
+-- ------------------------------------------------------
+CREATE TABLE check_in_sketch (
+    user_id INT NOT NULL COMMENT 'User ID',
+    metric VARCHAR(20) NOT NULL COMMENT 'Metric (sleep/water/exercise)',
+    sketch BLOB NOT NULL COMMENT 'Serialized t-digest',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At',
+
+    PRIMARY KEY (user_id, metric),
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Check-in Quantile Sketch Table';
+
+-- ------------------------------------------------------
+-- Table structure for `check_in_anomaly_state`
+-- ------------------------------------------------------
+CREATE TABLE check_in_anomaly_state (
+    user_id INT NOT NULL COMMENT 'User ID',
+    metric VARCHAR(20) NOT NULL COMMENT 'Metric (sleep/water/exercise/mood)',
+    ewma_mean DOUBLE NOT NULL DEFAULT 0 COMMENT 'Exponentially Weighted Mean',
+    ewma_variance DOUBLE NOT NULL DEFAULT 0 COMMENT 'Exponentially Weighted Variance',
+    cusum_low DOUBLE NOT NULL DEFAULT 0 COMMENT 'Lower CUSUM Statistic',
+    cusum_high DOUBLE NOT NULL DEFAULT 0 COMMENT 'Upper CUSUM Statistic',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT 'Observed Samples',
+    last_check_in_date DATE COMMENT 'Last Processed Check-in Date',
+    prev_ewma_mean DOUBLE NOT NULL DEFAULT 0 COMMENT 'Mean Before The Last Observation',
+    prev_ewma_variance DOUBLE NOT NULL DEFAULT 0 COMMENT 'Variance Before The Last Observation',
+    prev_cusum_low DOUBLE NOT NULL DEFAULT 0 COMMENT 'Lower CUSUM Before The Last Observation',
+    prev_cusum_high DOUBLE NOT NULL DEFAULT 0 COMMENT 'Upper CUSUM Before The Last Observation',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At',
+
+    PRIMARY KEY (user_id, metric),
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Check-in Anomaly Detector State Table';
+
+-- ------------------------------------------------------
+-- Table structure for `health_alert`
+-- ------------------------------------------------------
+CREATE TABLE health_alert (
+    id INT AUTO_INCREMENT PRIMARY KEY COMMENT 'Alert ID',
+    user_id INT NOT NULL COMMENT 'User ID',
+    metric VARCHAR(20) NOT NULL COMMENT 'Metric (sleep/water/exercise/mood)',
+    alert_date DATE NOT NULL COMMENT 'Check-in Date That Raised The Alert',
+    direction ENUM('low', 'high') NOT NULL COMMENT 'Deviation Direction',
+    observed_value DOUBLE NOT NULL COMMENT 'Observed Value',
+    baseline_value DOUBLE NOT NULL COMMENT 'Baseline Mean Before The Check-in',
+    message VARCHAR(200) NOT NULL COMMENT 'Alert Message',
+    is_read BOOLEAN DEFAULT FALSE COMMENT 'Is Read',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT 'Created At',
+
+    UNIQUE KEY unique_user_metric_date (user_id, metric, alert_date),
+    INDEX idx_alert_user_date (user_id, alert_date),
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Health Alert Table';
+
+-- ------------------------------------------------------
+-- Table structure for `weight_trend_stats`
+-- ------------------------------------------------------
+CREATE TABLE weight_trend_stats (
+    user_id INT PRIMARY KEY COMMENT 'User ID',
+    origin_day INT NOT NULL COMMENT 'Epoch Day Of The First Sample (x = 0)',
+    last_day INT NOT NULL COMMENT 'Epoch Day Of The Latest Sample',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT 'n',
+    sum_x DOUBLE NOT NULL DEFAULT 0 COMMENT 'Sum Of Day Offsets',
+    sum_y DOUBLE NOT NULL DEFAULT 0 COMMENT 'Sum Of Weights',
+    sum_xy DOUBLE NOT NULL DEFAULT 0 COMMENT 'Sum Of Day Offset * Weight',
+    sum_xx DOUBLE NOT NULL DEFAULT 0 COMMENT 'Sum Of Squared Day Offsets',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At',
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Weight Trend Regression Sums Table';
+
+-- ------------------------------------------------------
+-- Table structure for `ai_precomputed_result`
+-- ------------------------------------------------------
+CREATE TABLE ai_precomputed_result (
+    user_id INT NOT NULL COMMENT 'User ID',
+    feature VARCHAR(32) NOT NULL COMMENT 'AI Feature',
+    prompt_hash CHAR(64) NOT NULL COMMENT 'SHA-256 Of Model And Prompt',
+    content MEDIUMTEXT NOT NULL COMMENT 'Generated Content',
+    generated_for DATE NOT NULL COMMENT 'Batch Run Date',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT 'Created At',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT 'Updated At',
+
+    PRIMARY KEY (user_id, feature),
+
+    FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) COMMENT='Nightly Precomputed AI Result Table';